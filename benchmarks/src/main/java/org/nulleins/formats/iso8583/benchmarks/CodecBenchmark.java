@@ -0,0 +1,99 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.types.BCD;
+import org.nulleins.formats.iso8583.types.Bitmap;
+import org.nulleins.formats.iso8583.types.MTI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Micro-benchmarks of the codecs used for every message: BCD, bitmap and MTI
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CodecBenchmark {
+  private long number = 5432818929192L;
+  private String digits = "000000032000";
+  private byte[] packed = BCD.valueOf(5432818929192L);
+  private final byte[] unpacked = new byte[14];
+  private String hexBitmap = "F238000108A180000000004000000000";
+  private byte[] binaryBitmap = {
+      (byte) 0xf2, 0x38, 0x00, 0x01, 0x08, (byte) 0xa1, (byte) 0x80, 0x00,
+      0x00, 0x00, 0x00, 0x40, 0x00, 0x00, 0x00, 0x00};
+  private Bitmap bitmap = Bitmap.parse(hexBitmap);
+  private String mti = "0200";
+  private int mtiCode = 0x0200;
+
+  @Benchmark
+  public byte[] bcdFromLong() {
+    return BCD.valueOf(number);
+  }
+
+  @Benchmark
+  public byte[] bcdFromString() {
+    return BCD.valueOf(digits);
+  }
+
+  @Benchmark
+  public String bcdToString() {
+    return BCD.toString(packed);
+  }
+
+  @Benchmark
+  public byte[] bcdUnpack() {
+    BCD.unpack(ByteBuffer.wrap(packed), 13, BCD.Padding.LEFT, unpacked, 0);
+    return unpacked;
+  }
+
+  @Benchmark
+  public Bitmap bitmapParseHex() {
+    return Bitmap.parse(hexBitmap);
+  }
+
+  @Benchmark
+  public Bitmap bitmapFromBinary() {
+    return new Bitmap(binaryBitmap);
+  }
+
+  @Benchmark
+  public String bitmapToHex() {
+    return bitmap.toString();
+  }
+
+  /** iterate over the fields present, as the parser does */
+  @Benchmark
+  public int bitmapFields() {
+    int result = 0;
+    for (int i = bitmap.nextSetField(2); i > 0; i = bitmap.nextSetField(i + 1)) {
+      result += i;
+    }
+    return result;
+  }
+
+  @Benchmark
+  public MTI mtiFromString() {
+    return MTI.create(mti);
+  }
+
+  @Benchmark
+  public MTI mtiFromInt() {
+    return MTI.create(mtiCode);
+  }
+
+}
@@ -0,0 +1,31 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.types.BitmapType;
+import org.nulleins.formats.iso8583.types.ContentType;
+
+
+/**
+ * Content type and bitmap type combinations benchmarked
+ * @author phillipsr
+ */
+public enum Encoding {
+  TEXT_HEX(ContentType.TEXT, BitmapType.HEX),
+  TEXT_BINARY(ContentType.TEXT, BitmapType.BINARY),
+  BCD_BINARY(ContentType.BCD, BitmapType.BINARY);
+
+  private final ContentType contentType;
+  private final BitmapType bitmapType;
+
+  private Encoding(final ContentType contentType, final BitmapType bitmapType) {
+    this.contentType = contentType;
+    this.bitmapType = bitmapType;
+  }
+
+  public ContentType getContentType() {
+    return contentType;
+  }
+
+  public BitmapType getBitmapType() {
+    return bitmapType;
+  }
+}
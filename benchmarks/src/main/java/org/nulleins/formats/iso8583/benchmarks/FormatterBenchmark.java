@@ -0,0 +1,91 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatters;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Micro-benchmarks of each of the standard type formatters, parsing and formatting a
+ * typical field value
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FormatterBenchmark {
+
+  /** field types benchmarked, with a sample field for each */
+  public enum Sample {
+    NUMERIC(FieldType.NUMERIC, "fixed(12)", "000000032000"),
+    NUMSIGNED(FieldType.NUMSIGNED, "fixed(12)", "D00000032000"),
+    ALPHANUMSYMBOL(FieldType.ALPHANUMSYMBOL, "fixed(40)", "CIB-57357HOSPITAL     CAIRO          EG0"),
+    DATE(FieldType.DATE, "fixed(10)", "1210220213"),
+    EXDATE(FieldType.EXDATE, "fixed(4)", "1512"),
+    TIME(FieldType.TIME, "fixed(6)", "000213"),
+    TRACKDATA(FieldType.TRACKDATA, "llvar(37)", "1234567890123456789=1015123");
+
+    private final String type;
+    private final Dimension dimension;
+    private final byte[] data;
+
+    private Sample(final String type, final String dimension, final String data) {
+      this.type = type;
+      this.dimension = Dimension.parse(dimension);
+      this.data = data.getBytes();
+    }
+  }
+
+  @Param
+  private Sample sample;
+
+  private TypeFormatter<?> formatter;
+  private ByteBuffer buffer;
+  private Object value;
+
+  @Setup
+  public void setup()
+      throws ParseException {
+    formatter = new TypeFormatters(CharEncoder.ASCII).getFormatter(sample.type);
+    buffer = ByteBuffer.wrap(sample.data);
+    value = formatter.parse(sample.type, sample.dimension, sample.data.length, sample.data);
+  }
+
+  @Benchmark
+  public Object parseBytes()
+      throws ParseException {
+    return formatter.parse(sample.type, sample.dimension, sample.data.length, sample.data);
+  }
+
+  @Benchmark
+  public Object parseBuffer()
+      throws ParseException {
+    return formatter.parse(sample.type, sample.dimension, buffer.duplicate());
+  }
+
+  @Benchmark
+  public byte[] format() {
+    return formatter.format(sample.type, value, sample.dimension);
+  }
+
+}
@@ -0,0 +1,91 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.Message;
+import org.nulleins.formats.iso8583.MessageFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Throughput and latency of parsing and formatting the payment request message, for each
+ * content and bitmap type combination; run with <code>-prof gc</code> to report the
+ * allocations per operation
+ * @author phillipsr
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageBenchmark {
+  @Param({"TEXT_HEX", "TEXT_BINARY", "BCD_BINARY"})
+  private Encoding encoding;
+
+  private MessageFactory factory;
+  private MessageFactory lazyFactory;
+  private Message request;
+  private byte[] data;
+  private ByteBuffer directData;
+
+  @Setup
+  public void setup() {
+    factory = PaymentMessages.createFactory(encoding, false);
+    lazyFactory = PaymentMessages.createFactory(encoding, true);
+    request = PaymentMessages.createRequest(factory);
+    data = factory.getMessageData(request);
+    directData = ByteBuffer.allocateDirect(data.length);
+    directData.put(data).flip();
+  }
+
+  @Benchmark
+  public Message parseBytes()
+      throws IOException, ParseException {
+    return factory.parse(data);
+  }
+
+  @Benchmark
+  public Message parseDirectBuffer()
+      throws IOException {
+    return factory.parse(directData.duplicate());
+  }
+
+  /** lazy parse, reading only the fields typically used to route a message */
+  @Benchmark
+  public void parseLazyRouting(final Blackhole blackhole)
+      throws IOException, ParseException {
+    final Message message = lazyFactory.parse(data);
+    blackhole.consume(message.getMTI());
+    blackhole.consume(message.getFieldValue(2));
+    blackhole.consume(message.getFieldValue(3));
+    blackhole.consume(message.getFieldValue(4));
+    blackhole.consume(message.getFieldValue(11));
+    blackhole.consume(message.getFieldValue(41));
+  }
+
+  @Benchmark
+  public byte[] format() {
+    return factory.getMessageData(request);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeThreadBuffer() {
+    return factory.encode(request);
+  }
+
+}
@@ -0,0 +1,84 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.joda.time.format.DateTimeFormat;
+import org.nulleins.formats.iso8583.FieldTemplate;
+import org.nulleins.formats.iso8583.Message;
+import org.nulleins.formats.iso8583.MessageFactory;
+import org.nulleins.formats.iso8583.MessageTemplate;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.FieldType;
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.math.BigInteger;
+
+
+/**
+ * Benchmark fixtures: message factories for each of the supported content and bitmap
+ * type combinations, defining the 0200 payment request used in the unit tests
+ * (see TestStreamedMessage)
+ * @author phillipsr
+ */
+final class PaymentMessages {
+  static final MTI PaymentRequest = MTI.create(0x0200);
+  static final String Header = "ISO015000077";
+
+  private PaymentMessages() {
+  }
+
+  /**
+   * Answer with an initialized message factory defining the payment request message
+   * @param encoding content and bitmap types used by the factory
+   * @param lazy     should the factory parse messages lazily?
+   */
+  static MessageFactory createFactory(final Encoding encoding, final boolean lazy) {
+    final MessageFactory result = new MessageFactory();
+    result.setId("benchmark" + encoding);
+    result.setHeader(Header);
+    result.setContentType(encoding.getContentType());
+    result.setBitmapType(encoding.getBitmapType());
+    result.setCharset(CharEncoder.ASCII);
+    result.setLazy(lazy);
+    final MessageTemplate template = MessageTemplate.create(Header, PaymentRequest, encoding.getBitmapType());
+    template.addField(field(2, FieldType.NUMERIC, "llvar(40)", "cardNumber"));
+    template.addField(field(3, FieldType.NUMERIC, "fixed(6)", "processingCode"));
+    template.addField(field(4, FieldType.NUMERIC, "fixed(12)", "amount"));
+    template.addField(field(7, FieldType.DATE, "fixed(10)", "transDateTime"));
+    template.addField(field(11, FieldType.NUMERIC, "fixed(6)", "stan"));
+    template.addField(field(12, FieldType.TIME, "fixed(6)", "transTimeLocal"));
+    template.addField(field(13, FieldType.DATE, "fixed(4)", "transDateLocal"));
+    template.addField(field(32, FieldType.NUMERIC, "llvar(11)", "acquierID"));
+    template.addField(field(37, FieldType.NUMERIC, "fixed(12)", "extReference"));
+    template.addField(field(41, FieldType.ALPHANUMSYMBOL, "fixed(16)", "cardTermId"));
+    template.addField(field(43, FieldType.ALPHANUMSYMBOL, "fixed(40)", "cardTermName"));
+    template.addField(field(48, FieldType.NUMERIC, "llvar(14)", "msisdn"));
+    template.addField(field(49, FieldType.NUMERIC, "fixed(3)", "currencyCode"));
+    result.addMessage(template);
+    result.initialize();
+    return result;
+  }
+
+  private static FieldTemplate field(final int number, final String type, final String dimension, final String name) {
+    return new FieldTemplate(number, type, Dimension.parse(dimension), name, "");
+  }
+
+  /** Answer with a payment request message, with all its fields set */
+  static Message createRequest(final MessageFactory factory) {
+    final Message result = factory.create(PaymentRequest);
+    result.setFieldValue(2, 5264391220494002L);
+    result.setFieldValue(3, 305700);
+    result.setFieldValue(4, new BigInteger("32000"));
+    result.setFieldValue(7, DateTimeFormat.forPattern("MMddHHmmss").parseDateTime("1210220213"));
+    result.setFieldValue(11, 937166);
+    result.setFieldValue(12, DateTimeFormat.forPattern("HHmmss").parseLocalTime("000213"));
+    result.setFieldValue(13, DateTimeFormat.forPattern("MMdd").parseDateTime("1211"));
+    result.setFieldValue(32, 81800601368L);
+    result.setFieldValue(37, 34522937166L);
+    result.setFieldValue(41, "CIB08520263");
+    result.setFieldValue(43, "CIB-57357HOSPITAL     CAIRO          EG0");
+    result.setFieldValue(48, 20167124377L);
+    result.setFieldValue(49, 818);
+    return result;
+  }
+
+}
@@ -0,0 +1,73 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.TrackData;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The regular expression based track data parser and <code>String.format</code> based
+ * formatter previously used by <code>TrackDataFormatter</code>, kept as the baseline
+ * for {@link TrackDataBenchmark}
+ * @author phillipsr
+ */
+final class RegexTrackData {
+  private static final Pattern Track1Matcher
+      = Pattern.compile("^%%?([A-Z])(\\d{1,19})\\^([^\\^]{2,26})\\^(\\d{4}|\\^)(\\d{3}|\\^)([^\\?]+)\\??$");
+  private static final Pattern Track2Matcher
+      = Pattern.compile("^;?(\\d{1,19})[=|D](\\d{4}|[=|D])(\\d{3}|[=|D])(\\d*)\\??$");
+  private static final Pattern NameFieldMatcher
+      = Pattern.compile("([^/]+)/([A-Za-z]*)([ ][A-Za-z]+)?\\.([A-Za-z]+)*");
+
+  private RegexTrackData() {
+  }
+
+  static TrackData parse(final byte[] data)
+      throws ParseException {
+    final String value = new String(data, StandardCharsets.US_ASCII);
+    final Matcher t1matcher = Track1Matcher.matcher(value);
+    if (t1matcher.matches()) {
+      final TrackData result = new TrackData(TrackData.Track.TRACK1);
+      result.setPrimaryAccountNumber(Long.parseLong(t1matcher.group(2).trim()));
+      result.setName(getNameFields(t1matcher.group(3).trim()));
+      result.setExpirationDate(Integer.parseInt(t1matcher.group(4).trim()));
+      result.setServiceCode(Integer.parseInt(t1matcher.group(5).trim()));
+      result.setDiscretionaryData(t1matcher.group(6).trim());
+      return result;
+    }
+    final Matcher t2matcher = Track2Matcher.matcher(value);
+    if (t2matcher.matches()) {
+      final TrackData result = new TrackData(TrackData.Track.TRACK2);
+      result.setPrimaryAccountNumber(Long.parseLong(t2matcher.group(1)));
+      result.setExpirationDate(Integer.parseInt(t2matcher.group(2)));
+      result.setServiceCode(Integer.parseInt(t2matcher.group(3)));
+      result.setDiscretionaryData(t2matcher.group(4));
+      return result;
+    }
+    throw new ParseException("Could not understand track data: [" + value + "]", data.length);
+  }
+
+  static byte[] format(final TrackData trackData) {
+    final String format = trackData.getType() == TrackData.Track.TRACK1 ? "B%d^%-26.26s%04d%03d%s" : "%d%s=%04d%03d%s";
+    return String.format(format,
+        trackData.getPrimaryAccountNumber(),
+        trackData.getType() == TrackData.Track.TRACK1 ? trackData.formatName() : "",
+        trackData.getExpirationDate(),
+        trackData.getServiceCode(),
+        trackData.getDiscretionaryData()).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static String[] getNameFields(final String nameField) {
+    final Matcher matcher = NameFieldMatcher.matcher(nameField);
+    if (!matcher.matches()) {
+      return new String[]{nameField, "", "", ""};
+    }
+    return new String[]{
+        matcher.group(1), matcher.group(2),
+        matcher.group(3), matcher.group(4)};
+  }
+
+}
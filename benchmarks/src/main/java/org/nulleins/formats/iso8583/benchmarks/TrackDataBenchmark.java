@@ -0,0 +1,89 @@
+package org.nulleins.formats.iso8583.benchmarks;
+
+import org.nulleins.formats.iso8583.TrackData;
+import org.nulleins.formats.iso8583.formatters.TrackDataFormatter;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Comparison of the track data (fields 35 and 45) scanner and emitter of the
+ * <code>TrackDataFormatter</code> with the regular expression implementation it replaced
+ * (see {@link RegexTrackData})
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TrackDataBenchmark {
+
+  /** track data samples, as received in fields 45 (Track 1) and 35 (Track 2) */
+  public enum Sample {
+    TRACK1("%B1234567890123445^EARIBUG/HUW.              ^99011200000000000000**XXX******?"),
+    TRACK2("1234567890123456789=1015123");
+
+    private final byte[] data;
+
+    private Sample(final String data) {
+      this.data = data.getBytes();
+    }
+  }
+
+  private static final Dimension FieldDimension = Dimension.parse("llvar(80)");
+
+  @Param
+  private Sample sample;
+
+  private final TrackDataFormatter formatter = new TrackDataFormatter(CharEncoder.ASCII);
+  private ByteBuffer buffer;
+  private TrackData value;
+
+  @Setup
+  public void setup()
+      throws ParseException {
+    buffer = ByteBuffer.wrap(sample.data);
+    value = formatter.parse(FieldType.TRACKDATA, FieldDimension, sample.data.length, sample.data);
+  }
+
+  @Benchmark
+  public TrackData parseRegex()
+      throws ParseException {
+    return RegexTrackData.parse(sample.data);
+  }
+
+  @Benchmark
+  public TrackData parseScanner()
+      throws ParseException {
+    return formatter.parse(FieldType.TRACKDATA, FieldDimension, buffer.duplicate());
+  }
+
+  @Benchmark
+  public byte[] formatRegex() {
+    return RegexTrackData.format(value);
+  }
+
+  @Benchmark
+  public byte[] formatEmitter() {
+    return formatter.format(FieldType.TRACKDATA, value, FieldDimension);
+  }
+
+}
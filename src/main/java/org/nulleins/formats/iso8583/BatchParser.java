@@ -0,0 +1,180 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.io.framing.LengthHeader;
+import org.nulleins.formats.iso8583.io.framing.MappedFrameReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Parser for batches of ISO8583 records, e.g., the content of a clearing file, parsing the
+ * records in parallel on a fork/join pool
+ * <p/>
+ * The records are divided between the pool's workers, each parsing its records with the
+ * factory's current (immutable) schema snapshot, so the workers share no mutable state; the
+ * results are answered in input order, with a result for every record: an error parsing one
+ * record does not prevent the others from being parsed
+ * <p/>
+ * If the factory parses lazily, the messages refer to the record data supplied, which must
+ * not be changed until their field values have been read
+ * @author phillipsr
+ */
+public class BatchParser {
+  /** number of records below which a range of records is parsed by a single worker */
+  private static final int THRESHOLD = 256;
+
+  private final MessageFactory factory;
+  private final ForkJoinPool pool;
+
+  /**
+   * Instantiate a batch parser using the common fork/join pool
+   * @param factory used to parse each record
+   */
+  public BatchParser(final MessageFactory factory) {
+    this(factory, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Instantiate a batch parser
+   * @param factory used to parse each record
+   * @param pool    on which to parse the records
+   * @throws IllegalArgumentException if the factory or pool is null
+   */
+  public BatchParser(final MessageFactory factory, final ForkJoinPool pool) {
+    if (factory == null || pool == null) {
+      throw new IllegalArgumentException("Message factory and fork/join pool are required");
+    }
+    this.factory = factory;
+    this.pool = pool;
+  }
+
+  /**
+   * Parse each of the records supplied, each holding one message
+   * @param records the message data of each record; the buffers' positions are not changed
+   * @return the result of parsing each record, in the order of the records supplied
+   */
+  public List<ParseResult> parse(final List<ByteBuffer> records) {
+    final ByteBuffer[] data = records.toArray(new ByteBuffer[records.size()]);
+    final ParseResult[] results = new ParseResult[data.length];
+    pool.invoke(new ParseTask(data, results, 0, results.length));
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Split the data supplied into length-prefixed records and parse each of them
+   * <p/>
+   * Should the data end with a truncated record, or a record with an invalid length header
+   * (after which the records cannot be delimited), the last result reports that error
+   * @param data    framed records, from the buffer's position to its limit
+   * @param framing length header prefixing each record
+   * @return the result of parsing each record, in the order of the records in the data
+   */
+  public List<ParseResult> parse(final ByteBuffer data, final LengthHeader framing) {
+    final List<ByteBuffer> records = new ArrayList<>();
+    final int headerSize = framing.getSize();
+    Exception error = null;
+    for (int start = data.position(); start < data.limit() && error == null; ) {
+      try {
+        if (data.limit() - start < headerSize) {
+          throw new MessageException("Truncated length header at offset " + start);
+        }
+        final int end = start + headerSize + framing.read(data, start);
+        if (end > data.limit()) {
+          throw new MessageException("Truncated record at offset " + start);
+        }
+        final ByteBuffer record = data.duplicate();
+        record.limit(end).position(start + headerSize);
+        records.add(record.slice());
+        start = end;
+      } catch (final MessageException e) {
+        error = e;
+      }
+    }
+    return parse(records, error);
+  }
+
+  /**
+   * Map the file supplied and parse each of the length-prefixed records it holds, from slices
+   * of the mapped file
+   * @param file    holding framed records
+   * @param framing length header prefixing each record
+   * @return the result of parsing each record, in the order of the records in the file
+   * @throws IOException if the file could not be opened or mapped
+   * @see #parse(ByteBuffer, LengthHeader)
+   */
+  public List<ParseResult> parse(final Path file, final LengthHeader framing)
+      throws IOException {
+    try (final MappedFrameReader reader = new MappedFrameReader(file, framing)) {
+      final List<ByteBuffer> records = new ArrayList<>();
+      Exception error = null;
+      try {
+        for (final ByteBuffer record : reader) {
+          records.add(record);
+        }
+      } catch (final MessageException e) {
+        error = e;
+      }
+      return parse(records, error);
+    }
+  }
+
+  /**
+   * Parse the records supplied, followed by a result for the error (if not null) that
+   * prevented any further records from being delimited
+   */
+  private List<ParseResult> parse(final List<ByteBuffer> records, final Exception error) {
+    final List<ParseResult> result = parse(records);
+    if (error == null) {
+      return result;
+    }
+    final List<ParseResult> withError = new ArrayList<>(result);
+    withError.add(new ParseResult(records.size(), null, error));
+    return withError;
+  }
+
+  /** Answer with the result of parsing a single record */
+  private ParseResult parseRecord(final int index, final ByteBuffer record) {
+    try {
+      return new ParseResult(index, factory.parse(record.duplicate()), null);
+    } catch (final IOException | RuntimeException e) {
+      return new ParseResult(index, null, e);
+    }
+  }
+
+  /** Fork/join task parsing a range of records, splitting the range until below the threshold */
+  private final class ParseTask
+      extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final ByteBuffer[] records;
+    private final ParseResult[] results;
+    private final int from;
+    private final int to;
+
+    private ParseTask(final ByteBuffer[] records, final ParseResult[] results, final int from, final int to) {
+      this.records = records;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          results[i] = parseRecord(i, records[i]);
+        }
+      } else {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new ParseTask(records, results, from, middle), new ParseTask(records, results, middle, to));
+      }
+    }
+  }
+
+}
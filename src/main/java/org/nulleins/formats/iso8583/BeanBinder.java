@@ -0,0 +1,236 @@
+package org.nulleins.formats.iso8583;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.joda.time.DateTime;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Binding of the fields of a message template to the properties of a bean class, named by
+ * the fields' names, used to set message fields from a bean, and bean properties from a message
+ * <p/>
+ * The bean's accessors are resolved once, when the binder is created, and called through method
+ * handles; fields with no property in the bean are not bound. Only if the field name is not a
+ * simple property name (e.g., a nested property), or the bean is a map or dyna-bean, is the
+ * property accessed through <code>PropertyUtils</code>
+ * @author phillipsr
+ */
+final class BeanBinder {
+  private static final MethodType GetterType = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SetterType = MethodType.methodType(void.class, Object.class, Object.class);
+  private static final Map<Class<?>, Class<?>> Wrappers = new HashMap<Class<?>, Class<?>>() {{
+    put(boolean.class, Boolean.class);
+    put(byte.class, Byte.class);
+    put(short.class, Short.class);
+    put(int.class, Integer.class);
+    put(long.class, Long.class);
+    put(float.class, Float.class);
+    put(double.class, Double.class);
+    put(char.class, Character.class);
+  }};
+
+  private final MessageTemplate template;
+  private final Accessor[] getters;
+  private final Accessor[] setters;
+
+  private BeanBinder(final MessageTemplate template, final List<Accessor> getters, final List<Accessor> setters) {
+    this.template = template;
+    this.getters = getters.toArray(new Accessor[getters.size()]);
+    this.setters = setters.toArray(new Accessor[setters.size()]);
+  }
+
+  /**
+   * Answer with a binder of the fields of <code>template</code> to the properties of <code>beanClass</code>
+   * @throws IllegalArgumentException if the bean class cannot be introspected
+   */
+  static BeanBinder create(final Class<?> beanClass, final MessageTemplate template) {
+    final Map<String, PropertyDescriptor> properties = getProperties(beanClass);
+    final boolean dynamic = Map.class.isAssignableFrom(beanClass) || DynaBean.class.isAssignableFrom(beanClass);
+    final List<Accessor> getters = new ArrayList<>();
+    final List<Accessor> setters = new ArrayList<>();
+    for (final FieldTemplate field : template.getFields().values()) {
+      final String name = field.getName();
+      if (name == null || name.isEmpty()) {
+        continue;
+      }
+      final PropertyDescriptor property = properties.get(name);
+      if (dynamic || (property == null && !isSimpleName(name))) {
+        getters.add(new Accessor(field.getNumber(), name, null, null));
+        setters.add(new Accessor(field.getNumber(), name, null, null));
+        continue;
+      }
+      if (property == null) {
+        continue;
+      }
+      if (property.getReadMethod() != null) {
+        getters.add(new Accessor(field.getNumber(), name,
+            unreflect(property.getReadMethod(), GetterType), property.getPropertyType()));
+      }
+      if (property.getWriteMethod() != null) {
+        setters.add(new Accessor(field.getNumber(), name,
+            unreflect(property.getWriteMethod(), SetterType), property.getPropertyType()));
+      }
+    }
+    return new BeanBinder(template, getters, setters);
+  }
+
+  /** Answer with the message template whose fields are bound */
+  MessageTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Answer with the values of the bean's properties bound to message fields, keyed by field number;
+   * properties accessed through <code>PropertyUtils</code> that cannot be read are ignored
+   * @throws IllegalArgumentException if a getter of the bean throws an exception
+   */
+  Map<Integer, Object> getFields(final Object bean) {
+    final Map<Integer, Object> result = new HashMap<>();
+    for (final Accessor getter : getters) {
+      if (getter.handle == null) {
+        try {
+          result.put(getter.number, PropertyUtils.getProperty(bean, getter.name));
+        } catch (final Exception e) {
+          // ignore, as this value may be set later as a protocol parameter
+        }
+        continue;
+      }
+      try {
+        result.put(getter.number, getter.handle.invokeExact(bean));
+      } catch (final Throwable e) {
+        throw new IllegalArgumentException("Unable to access property [" + getter.name + "] in supplied bean", e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Set the properties of the bean bound to the fields present in the message, converting
+   * numeric values to the type of the property as required; properties bound to fields the
+   * message has no value for are unchanged
+   * @throws IllegalArgumentException if a property of the bean cannot be set from a field's value
+   */
+  void setProperties(final Message message, final Object bean) {
+    for (final Accessor setter : setters) {
+      if (!message.hasFieldValue(setter.number)) {
+        continue;
+      }
+      final Object value = message.getFieldValue(setter.number);
+      try {
+        if (setter.handle == null) {
+          PropertyUtils.setProperty(bean, setter.name, value);
+        } else if (value != null || !setter.type.isPrimitive()) {
+          // a null value cannot be set in a primitive property
+          setter.handle.invokeExact(bean, convert(value, setter.type));
+        }
+      } catch (final NoSuchMethodException e) {
+        // ignore, as the bean does not hold this field
+      } catch (final Throwable e) {
+        throw new IllegalArgumentException("Unable to set property [" + setter.name + "] in supplied bean"
+            + " from field " + setter.number + " value (" + value + ")", e);
+      }
+    }
+  }
+
+  /**
+   * Answer with the value supplied, converted to the type of a property if it is a number
+   * or date of another type
+   */
+  static Object convert(final Object value, final Class<?> type) {
+    final Class<?> target = type.isPrimitive() ? Wrappers.get(type) : type;
+    if (value == null || target.isInstance(value)) {
+      return value;
+    }
+    if (value instanceof Number) {
+      final Number number = (Number) value;
+      if (target == Integer.class) {
+        return number.intValue();
+      } else if (target == Long.class) {
+        return number.longValue();
+      } else if (target == Short.class) {
+        return number.shortValue();
+      } else if (target == Byte.class) {
+        return number.byteValue();
+      } else if (target == Double.class) {
+        return number.doubleValue();
+      } else if (target == Float.class) {
+        return number.floatValue();
+      } else if (target == BigInteger.class) {
+        return new BigInteger(number.toString());
+      } else if (target == BigDecimal.class) {
+        return new BigDecimal(number.toString());
+      }
+    } else if (value instanceof DateTime && target == Date.class) {
+      return ((DateTime) value).toDate();
+    }
+    if (target == String.class) {
+      return value.toString();
+    }
+    return value;
+  }
+
+  private static Map<String, PropertyDescriptor> getProperties(final Class<?> beanClass) {
+    final Map<String, PropertyDescriptor> result = new HashMap<>();
+    try {
+      for (final PropertyDescriptor property : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+        result.put(property.getName(), property);
+      }
+    } catch (final IntrospectionException e) {
+      throw new IllegalArgumentException("Unable to introspect bean class " + beanClass.getName(), e);
+    }
+    return result;
+  }
+
+  /** is the name that of a simple property, rather than a nested, indexed or mapped property? */
+  private static boolean isSimpleName(final String name) {
+    return name.indexOf('.') < 0 && name.indexOf('[') < 0 && name.indexOf('(') < 0;
+  }
+
+  /**
+   * Answer with a handle on the (public) accessor method supplied, adapted to the type supplied
+   * @return the handle, or null if the method is not accessible from a public class
+   */
+  private static MethodHandle unreflect(final Method method, final MethodType type) {
+    if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return null;
+    }
+    try {
+      return MethodHandles.publicLookup().unreflect(method).asType(type);
+    } catch (final IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /** Accessor of the property of a bean bound to a message field */
+  private static final class Accessor {
+    private final int number;
+    private final String name;
+    /** handle on the getter or setter, or null if accessed through <code>PropertyUtils</code> */
+    private final MethodHandle handle;
+    private final Class<?> type;
+
+    private Accessor(final int number, final String name, final MethodHandle handle, final Class<?> type) {
+      this.number = number;
+      this.name = name;
+      this.handle = handle;
+      this.type = type;
+    }
+  }
+
+}
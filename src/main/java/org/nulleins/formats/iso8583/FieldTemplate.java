@@ -1,8 +1,13 @@
 package org.nulleins.formats.iso8583;
 
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.MTI;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 
@@ -119,10 +124,22 @@ public class FieldTemplate {
    */
   public byte[]
   format(final Object value) {
+    return format(message.getFormatter(type), value);
+  }
+
+  /**
+   * Use this field definition to format the data supplied, with the formatter
+   * already resolved for this field's type
+   * @param formatter type formatter bound to this field
+   * @param value
+   * @return data
+   * @throws MessageException if the formatter failed to create a field of the correct size
+   */
+  byte[] format(final TypeFormatter<?> formatter, final Object value) {
     final String result;
     try {
       result = new String(
-          message.getFormatter(type).format(type, value, this.dimension));
+          formatter.format(type, value, this.dimension));
     } catch (Exception e) {
       throw new IllegalStateException("Could not format data [" + value + "] for field " + this, e);
     }
@@ -136,6 +153,47 @@ public class FieldTemplate {
     return result.getBytes();
   }
 
+  /**
+   * Use this field definition to format the data supplied directly into the output buffer,
+   * encoded in the charset specified
+   * @param formatter buffer formatter bound to this field
+   * @param value     to be formatted
+   * @param charset   in which the formatted text is to be encoded
+   * @param output    buffer to receive the formatted value, at its position
+   * @return the number of bytes written
+   * @throws MessageException if the formatter failed to create a field of the correct size
+   * @throws BufferOverflowException if there is insufficient space in the buffer
+   */
+  public int format(
+      final BufferFormatter formatter, final Object value, final CharEncoder charset, final ByteBuffer output) {
+    final int start = output.position();
+    final int result;
+    try {
+      result = formatter.format(type, value, this.dimension, charset, output);
+    } catch (final BufferOverflowException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not format data [" + value + "] for field " + this, e);
+    }
+
+    if (this.dimension.getType() == Dimension.Type.FIXED && result != dimension.getLength()) {
+      throw new MessageException(this + ": Formatter did not format fixed field to specified length, value=["
+          + getText(output, start, result, charset) + "]");
+    }
+    if (this.dimension.getType() == Dimension.Type.VARIABLE && result > dimension.getLength() + dimension.getVSize()) {
+      throw new MessageException(this + ": Formatter exceeded maximum length for variable field; value=["
+          + getText(output, start, result, charset) + "]");
+    }
+    return result;
+  }
+
+  /** Answer with the text of the <code>length</code> bytes written to the buffer at <code>start</code> */
+  private static String getText(final ByteBuffer output, final int start, final int length, final CharEncoder charset) {
+    final ByteBuffer written = output.duplicate();
+    written.limit(start + length).position(start);
+    return charset.getString(written);
+  }
+
   @Override
   public String toString() {
     return "Field nb=" + this.getNumber()
@@ -0,0 +1,268 @@
+package org.nulleins.formats.iso8583;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * Field values of a message, indexed by field number
+ * <p/>
+ * Field numbers are in the range 0..192, so values are held in an array indexed by
+ * field number, with a bit mask recording which fields are present (a field may be
+ * present with a null value); the <code>int</code> accessors avoid boxing the field
+ * number, while the <code>Map</code> view (iterated in field number order) allows
+ * the values to be used wherever a field map is expected
+ * @author phillipsr
+ */
+final class FieldValues
+    extends AbstractMap<Integer, Object> {
+  /** highest field number that can be held (tertiary bitmap) */
+  static final int MAX_FIELD = 192;
+
+  private final Object[] values = new Object[MAX_FIELD + 1];
+  /** presence mask: bit (n % 64) of word (n / 64) is set if field n is present */
+  private final long[] present = new long[(MAX_FIELD + 64) / 64];
+  private int size;
+  private int modCount;
+  private Set<Map.Entry<Integer, Object>> entrySet;
+
+  FieldValues() {
+  }
+
+  /**
+   * Instantiate a set of field values, initialized from the supplied map
+   * @param fields map of field number to value
+   * @throws IllegalArgumentException if a field number is not in the range 0..192
+   */
+  FieldValues(final Map<Integer, Object> fields) {
+    putAll(fields);
+  }
+
+  /** is field <code>number</code> present (its value may be null)? */
+  boolean isPresent(final int number) {
+    return number >= 0 && number <= MAX_FIELD && (present[number >>> 6] & (1L << number)) != 0;
+  }
+
+  /**
+   * Answer with the value of field <code>number</code>
+   * @return the field's value, or null if the field is not present
+   */
+  Object get(final int number) {
+    return number >= 0 && number <= MAX_FIELD ? values[number] : null;
+  }
+
+  /**
+   * Set the value of field <code>number</code>
+   * @return the previous value of the field, or null if it was not present
+   * @throws IllegalArgumentException if the field number is not in the range 0..192
+   */
+  Object put(final int number, final Object value) {
+    checkNumber(number);
+    final Object result = values[number];
+    if (!isPresent(number)) {
+      present[number >>> 6] |= 1L << number;
+      size++;
+      modCount++;
+    }
+    values[number] = value;
+    return result;
+  }
+
+  /**
+   * Remove field <code>number</code>
+   * @return the previous value of the field, or null if it was not present
+   */
+  Object remove(final int number) {
+    if (!isPresent(number)) {
+      return null;
+    }
+    final Object result = values[number];
+    present[number >>> 6] &= ~(1L << number);
+    values[number] = null;
+    size--;
+    modCount++;
+    return result;
+  }
+
+  /**
+   * Answer with the number of the first field present at or after field <code>from</code>
+   * @return the next field number, or -1 if there are no more fields present
+   */
+  int nextPresent(final int from) {
+    if (from > MAX_FIELD) {
+      return -1;
+    }
+    int word = from >>> 6;
+    long bits = present[word] & (-1L << from);
+    while (bits == 0) {
+      if (++word == present.length) {
+        return -1;
+      }
+      bits = present[word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return key instanceof Integer && isPresent((Integer) key);
+  }
+
+  @Override
+  public Object get(final Object key) {
+    return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+  }
+
+  @Override
+  public Object put(final Integer key, final Object value) {
+    if (key == null) {
+      throw new IllegalArgumentException("Field number cannot be null");
+    }
+    return put(key.intValue(), value);
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = nextPresent(0); i >= 0; i = nextPresent(i + 1)) {
+      values[i] = null;
+    }
+    for (int i = 0; i < present.length; i++) {
+      present[i] = 0;
+    }
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Map.Entry<Integer, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Map.Entry<Integer, Object>>() {
+        @Override
+        public Iterator<Map.Entry<Integer, Object>> iterator() {
+          return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+
+        @Override
+        public void clear() {
+          FieldValues.this.clear();
+        }
+      };
+    }
+    return entrySet;
+  }
+
+  private static void checkNumber(final int number) {
+    if (number < 0 || number > MAX_FIELD) {
+      throw new IllegalArgumentException("Field number " + number + " not in range 0.." + MAX_FIELD);
+    }
+  }
+
+  /** Iterator over the fields present, in field number order */
+  private final class EntryIterator
+      implements Iterator<Map.Entry<Integer, Object>> {
+    private int next = nextPresent(0);
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return next >= 0;
+    }
+
+    @Override
+    public Map.Entry<Integer, Object> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next < 0) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = nextPresent(next + 1);
+      return new Entry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      FieldValues.this.remove(last);
+      expectedModCount = modCount;
+      last = -1;
+    }
+  }
+
+  /** Map entry, reading and writing through to the field values */
+  private final class Entry
+      implements Map.Entry<Integer, Object> {
+    private final int number;
+
+    private Entry(final int number) {
+      this.number = number;
+    }
+
+    @Override
+    public Integer getKey() {
+      return number;
+    }
+
+    @Override
+    public Object getValue() {
+      return values[number];
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      final Object result = values[number];
+      values[number] = value;
+      return result;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof Map.Entry)) {
+        return false;
+      }
+      final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+      final Object value = values[number];
+      return getKey().equals(entry.getKey())
+          && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      final Object value = values[number];
+      return number ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return number + "=" + values[number];
+    }
+  }
+
+}
@@ -0,0 +1,22 @@
+package org.nulleins.formats.iso8583;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks a field, or property getter, of an {@link IsoMessage} class as holding the value
+ * of the message field with the number specified; the field's type, dimension and
+ * formatter are those of the field in the factory's message template
+ * @author phillipsr
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface IsoField {
+  /** the number of the message field (2..192) */
+  int value();
+}
@@ -0,0 +1,21 @@
+package org.nulleins.formats.iso8583;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks a class whose instances are mapped directly to and from messages of the type
+ * specified (see {@link MessageMapper}), its properties being marked with {@link IsoField}
+ * @author phillipsr
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface IsoMessage {
+  /** the type (MTI) of the message, e.g., "0200" */
+  String value();
+}
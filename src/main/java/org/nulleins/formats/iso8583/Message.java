@@ -13,13 +13,18 @@ import java.util.Map;
  * of field values
  * <p/>
  * Every message has a <code>template</code> that describes the message and its content
+ * <p/>
+ * A message parsed lazily holds its fields in their encoded form, each being parsed when its
+ * value is first requested; all outstanding fields are parsed when the field map is requested
  * @author phillipsr
  */
 public class Message {
   private final MTI messageTypeIndicator;
   private String header;
-  private Map<Integer, Object> fields = new HashMap<Integer, Object>();
+  private FieldValues fields = new FieldValues();
   private MessageTemplate template;
+  /** may any of the field values be deferred (i.e., not yet parsed)? */
+  private boolean deferred;
 
   /**
    * Instantiate a new message, of the type specified
@@ -46,17 +51,46 @@ public class Message {
     this.header = header;
   }
 
+  /**
+   * Answer with a live map view of this message's fields, keyed by field number
+   * and iterated in field number order
+   */
   public Map<Integer, Object> getFields() {
+    if (deferred) {
+      for (int i = fields.nextPresent(0); i >= 0; i = fields.nextPresent(i + 1)) {
+        final Object value = fields.get(i);
+        if (value instanceof ParsePlan.DeferredField) {
+          fields.put(i, ((ParsePlan.DeferredField) value).decode());
+        }
+      }
+      deferred = false;
+    }
     return fields;
   }
 
+  /**
+   * Set this message's fields from the supplied map, replacing any existing fields;
+   * the field values are copied into the message
+   * @param fields map of field number (0..192) to value
+   * @throws IllegalArgumentException if a field number is out of range
+   */
   public void setFields(final Map<Integer, Object> fields) {
+    setParsedFields(new FieldValues(fields), false);
+  }
+
+  /**
+   * Set the fields of this message from a parser
+   * @param fields   field values, indexed by field number
+   * @param deferred true if some field values are deferred, to be parsed on request
+   */
+  void setParsedFields(final FieldValues fields, final boolean deferred) {
     this.fields = fields;
+    this.deferred = deferred;
   }
 
   public Map<String, Object> getNamedFields() {
     Map<String, Object> result = new HashMap<String, Object>(fields.size());
-    for (Map.Entry<Integer, Object> item : fields.entrySet()) {
+    for (Map.Entry<Integer, Object> item : getFields().entrySet()) {
       FieldTemplate field = template.getField(item.getKey());
       result.put(field.getName(), item.getValue());
     }
@@ -105,7 +139,13 @@ public class Message {
     if (!template.isFieldPresent(fieldNumber)) {
       throw new NoSuchFieldError(fieldNumber + "");
     }
-    return fields.get(fieldNumber);
+    final Object result = fields.get(fieldNumber);
+    if (deferred && result instanceof ParsePlan.DeferredField) {
+      final Object value = ((ParsePlan.DeferredField) result).decode();
+      fields.put(fieldNumber, value);
+      return value;
+    }
+    return result;
   }
 
   /**
@@ -162,7 +202,7 @@ public class Message {
    * @return
    */
   public Iterable<String> describe() {
-    return new Describer(template, fields);
+    return new Describer(template, getFields());
   }
 
   /**
@@ -190,4 +230,12 @@ public class Message {
     return template.isFieldPresent(number);
   }
 
+  /**
+   * does this message hold a value for field <code>number</code>? (whereas
+   * {@link #isFieldPresent} answers if the field is defined in the message's template)
+   */
+  boolean hasFieldValue(final int number) {
+    return fields.isPresent(number);
+  }
+
 }
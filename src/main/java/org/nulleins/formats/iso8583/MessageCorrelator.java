@@ -0,0 +1,220 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Correlates the responses received on a (multiplexed) link with the requests outstanding
+ * on it, completing the future returned when a request was registered with its response
+ * <p/>
+ * A request is matched by a response of the type answering it (e.g., 0210 for 0200, see
+ * <code>MTI.getResponse()</code>) with the same values in the key fields: by default, the
+ * systems trace audit number (11), card acceptor terminal id (41) and retrieval reference
+ * number (37). Field values are compared in their formatted (wire) representation, so that a
+ * value set by the application matches the corresponding parsed value, e.g., 12 and "000012"
+ * for a fixed(6) numeric field; a key field that is absent from both messages matches
+ * <p/>
+ * The outstanding requests are held in a concurrent map, so requests can be registered and
+ * responses completed from any number of threads without locking; requests outstanding
+ * beyond their timeout are completed exceptionally with a <code>TimeoutException</code> by
+ * <code>expire()</code>, which should be called periodically (see <code>scheduleExpiry</code>)
+ * @author phillipsr
+ */
+public class MessageCorrelator {
+  /** default key fields: STAN, terminal id and RRN */
+  public static final int[] DEFAULT_KEY_FIELDS = {11, 41, 37};
+
+  private final MessageFactory factory;
+  private final int[] keyFields;
+  private final ConcurrentMap<Key, Pending> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Instantiate a correlator matching messages on the default key fields (11, 41, 37)
+   * @param factory defining the messages to be correlated
+   */
+  public MessageCorrelator(final MessageFactory factory) {
+    this(factory, DEFAULT_KEY_FIELDS);
+  }
+
+  /**
+   * Instantiate a correlator matching messages on the key fields specified
+   * @param factory   defining the messages to be correlated
+   * @param keyFields numbers of the fields identifying a request and its response
+   * @throws IllegalArgumentException if the factory is null or no key fields are specified
+   */
+  public MessageCorrelator(final MessageFactory factory, final int... keyFields) {
+    if (factory == null) {
+      throw new IllegalArgumentException("Message factory cannot be null");
+    }
+    if (keyFields == null || keyFields.length == 0) {
+      throw new IllegalArgumentException("At least one key field must be specified");
+    }
+    this.factory = factory;
+    this.keyFields = keyFields.clone();
+  }
+
+  /**
+   * Register a request about to be sent, answering with a future completed by its response
+   * @param request message to which a response is expected
+   * @param timeout time to wait for the response
+   * @param unit    of the timeout
+   * @return a future completed with the response, or exceptionally with a
+   * <code>TimeoutException</code> if no response is received within the timeout
+   * @throws IllegalArgumentException if the message is not a request or advice, or its type is not
+   *                                  defined in the factory's schema
+   * @throws IllegalStateException    if a request with the same key is already outstanding
+   */
+  public CompletableFuture<Message> register(final Message request, final long timeout, final TimeUnit unit) {
+    if (!request.getMTI().isRequest()) {
+      throw new IllegalArgumentException("Message " + request.getMTI() + " is not a request or advice");
+    }
+    final Key key = keyOf(request.getMTI().getResponse(), request);
+    final Pending entry = new Pending(request, System.nanoTime(), unit.toNanos(timeout));
+    if (pending.putIfAbsent(key, entry) != null) {
+      throw new IllegalStateException("A request with the same key is already outstanding: " + key);
+    }
+    return entry.future;
+  }
+
+  /**
+   * Complete the outstanding request answered by the response supplied
+   * @param response message received
+   * @return true if the response matched an outstanding request, false if it did not
+   * (e.g., the request has already timed-out)
+   * @throws IllegalArgumentException if the message type is not defined in the factory's schema
+   */
+  public boolean complete(final Message response) {
+    final Pending entry = pending.remove(keyOf(response.getMTI(), response));
+    return entry != null && entry.future.complete(response);
+  }
+
+  /**
+   * Complete exceptionally any requests that have been outstanding beyond their timeout,
+   * and discard those whose futures have been cancelled
+   * @return the number of requests timed-out
+   */
+  public int expire() {
+    final long now = System.nanoTime();
+    int result = 0;
+    for (final Iterator<Pending> entries = pending.values().iterator(); entries.hasNext(); ) {
+      final Pending entry = entries.next();
+      if (entry.future.isDone()) {
+        entries.remove();
+      } else if (now - entry.registered >= entry.timeout) {
+        entries.remove();
+        if (entry.future.completeExceptionally(
+            new TimeoutException("No response received to " + entry.request.getMTI() + " request"))) {
+          result++;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Schedule the expiry of timed-out requests at a fixed rate
+   * @param scheduler used to run <code>expire()</code>
+   * @param period    between runs
+   * @param unit      of the period
+   * @return the scheduled task, which can be cancelled to stop the expiry
+   */
+  public ScheduledFuture<?> scheduleExpiry(
+      final ScheduledExecutorService scheduler, final long period, final TimeUnit unit) {
+    return scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        expire();
+      }
+    }, period, period, unit);
+  }
+
+  /** Answer with the number of requests outstanding */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Answer with the key under which a message of type <code>type</code> with the message's
+   * key field values is correlated
+   */
+  private Key keyOf(final MTI type, final Message message) {
+    final MessageTemplate template = factory.getTemplate(message.getMTI());
+    if (template == null) {
+      throw new IllegalArgumentException("Message not defined for MTI=" + message.getMTI());
+    }
+    final Object[] values = new Object[keyFields.length];
+    for (int i = 0; i < keyFields.length; i++) {
+      final int field = keyFields[i];
+      if (message.isFieldPresent(field)) {
+        final Object value = message.getFieldValue(field);
+        values[i] = value != null ? template.getField(field).format(value) : null;
+      }
+    }
+    return new Key(type, values);
+  }
+
+  /** Key of a request, being the type of the response expected and the key field values */
+  private static final class Key {
+    private final MTI type;
+    private final Object[] values;
+    private final int hash;
+
+    private Key(final MTI type, final Object[] values) {
+      this.type = type;
+      this.values = values;
+      this.hash = 31 * type.hashCode() + Arrays.deepHashCode(values);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key) other;
+      return hash == key.hash && type.equals(key.type) && Arrays.deepEquals(values, key.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder result = new StringBuilder(type.toString());
+      for (final Object value : values) {
+        result.append(':').append(value != null ? new String((byte[]) value) : "-");
+      }
+      return result.toString();
+    }
+  }
+
+  /** An outstanding request */
+  private static final class Pending {
+    private final Message request;
+    /** time registered (nanoTime), and timeout in nanoseconds: held apart, as a deadline may overflow */
+    private final long registered;
+    private final long timeout;
+    private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+    private Pending(final Message request, final long registered, final long timeout) {
+      this.request = request;
+      this.registered = registered;
+      this.timeout = timeout;
+    }
+  }
+
+}
@@ -1,6 +1,5 @@
 package org.nulleins.formats.iso8583;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.nulleins.formats.iso8583.formatters.TypeFormatter;
 import org.nulleins.formats.iso8583.formatters.TypeFormatters;
 import org.nulleins.formats.iso8583.io.MessageWriter;
@@ -13,19 +12,19 @@ import org.nulleins.formats.iso8583.io.CharMessageWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeSet;
 
 
 /**
@@ -41,11 +40,27 @@ import java.util.TreeSet;
  * <dt>contentType</dt><dd>Enumeration specifying the content type of messages
  * created or parsed (one of BCD, ASCII, EBCDIC)</dd>
  * <dt>bitmapType</dt><dd>Type of bitmap to be used, one of BINARY, HEX</dd>
+ * <dt>lazy</dt><dd>If true, parsed messages defer parsing each field value until it is
+ * first requested (default: false)</dd>
+ * <dt>longNumbers</dt><dd>If true, numeric fields of up to 18 digits are parsed as Longs,
+ * rather than BigIntegers (default: false)</dd>
  * </dl>
+ * <p/>
+ * Once initialized, a factory may be shared by any number of threads: <code>initialize()</code>
+ * compiles the schema into an immutable snapshot (the message templates, formatters and
+ * parse and write plans), which is safely published for use by the create, parse and write
+ * methods without locking. Messages and formatters added after initialization are compiled
+ * into a new snapshot that atomically replaces the current one, as are the templates of a
+ * schema replaced by <code>reload()</code>, so that an operation in progress never sees a
+ * partially updated schema; the factory's other properties must be set before initialization,
+ * and the templates themselves not changed once added
  * @author phillipsr
  */
 public class MessageFactory {
-  private Map<MTI, MessageTemplate> messages = new HashMap<MTI, MessageTemplate>();
+  /** message templates added to this factory, guarded by the factory's monitor */
+  private final Map<MTI, MessageTemplate> messages = new HashMap<MTI, MessageTemplate>();
+  /** formatters added to this factory, guarded by the factory's monitor */
+  private final Map<String, TypeFormatter<?>> customFormatters = new LinkedHashMap<>();
   private BitmapType bitmapType = BitmapType.HEX;
   private ContentType contentType = ContentType.TEXT;
   private CharEncoder charset = CharEncoder.ASCII;
@@ -53,22 +68,109 @@ public class MessageFactory {
   private String description;
   private String id;
   private boolean strict = Boolean.TRUE;
-  private TypeFormatters formatters;
-  private MessageParser parser;
+  private boolean lazy;
+  private boolean longNumbers;
+  /** the compiled schema, replaced whenever the schema is changed (null until initialized) */
+  private volatile Snapshot snapshot;
+  /** initial size of the per-thread buffer used to encode messages, grown as required */
+  private static final int ENCODE_BUFFER_SIZE = 2048;
+  /** largest per-thread encode buffer retained between messages: larger buffers are used once */
+  private static final int RETAINED_BUFFER_SIZE = 64 * 1024;
+  /** largest encoded message: the per-thread buffer is not grown beyond this size */
+  static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+  private final ThreadLocal<ByteBuffer> encodeBuffers = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocateDirect(ENCODE_BUFFER_SIZE);
+    }
+  };
 
   @Autowired(required = false)
   private AutoGeneratorFactory autoGenerator;
 
+  /**
+   * Initialize this factory, compiling its schema for use; subsequent calls have no effect
+   */
   @PostConstruct
-  public void initialize() {
-    if (messages == null) {
-      throw new IllegalStateException("Factory has no message definitions: cannot be initialized");
+  public synchronized void initialize() {
+    if (snapshot == null) {
+      snapshot = compile();
+    }
+  }
+
+  /**
+   * Compile the message templates and formatters into a snapshot of the schema used by
+   * this factory; called (holding the factory's monitor) on initialization, and whenever
+   * the schema is subsequently changed
+   */
+  private Snapshot compile() {
+    return compile(messages);
+  }
+
+  /**
+   * Compile the message templates supplied, with this factory's formatters, into a snapshot
+   * of the schema, whose version follows that of the current snapshot
+   */
+  private Snapshot compile(final Map<MTI, MessageTemplate> messages) {
+    final TypeFormatters formatters = new TypeFormatters(charset, longNumbers);
+    for (final Map.Entry<String, TypeFormatter<?>> formatter : customFormatters.entrySet()) {
+      formatters.setFormatter(formatter.getKey(), formatter.getValue());
     }
-    if (formatters == null) {
-      formatters = new TypeFormatters(charset);
+    final MessageParser parser =
+        new MessageParser(header, messages.values(), contentType, charset, bitmapType, lazy, formatters);
+    final MessageWriter writer = getOutputWriter(contentType, charset);
+    final WritePlan[] plans = new WritePlan[MTI.COUNT];
+    for (final MessageTemplate message : messages.values()) {
+      plans[message.getMessageTypeIndicator().getIndex()] =
+          new WritePlan(message, header, writer, bitmapType, formatters);
     }
-    if (parser == null) {
-      parser = new MessageParser(header, messages, contentType, charset, bitmapType);
+    final ClassValue<MessageMapper<?>> mappers = new ClassValue<MessageMapper<?>>() {
+      @Override
+      protected MessageMapper<?> computeValue(final Class<?> type) {
+        return MessageMapper.create(type, plans, parser, MessageFactory.this);
+      }
+    };
+    final long version = snapshot != null ? snapshot.version + 1 : 1;
+    return new Snapshot(version, new HashMap<>(messages), formatters, parser, plans, mappers);
+  }
+
+  /**
+   * Answer with the current snapshot of this factory's schema
+   * @throws IllegalStateException if the factory has not been initialized
+   */
+  private Snapshot compiled() {
+    final Snapshot result = snapshot;
+    if (result == null) {
+      throw new IllegalStateException("MessageFactory has not been initialized");
+    }
+    return result;
+  }
+
+  /**
+   * Answer with the message templates of this factory's schema: those of the current
+   * snapshot, or a copy of the templates added so far if not yet initialized
+   */
+  private Map<MTI, MessageTemplate> templates() {
+    final Snapshot current = snapshot;
+    if (current != null) {
+      return current.messages;
+    }
+    synchronized (this) {
+      return new HashMap<>(messages);
+    }
+  }
+
+  /**
+   * Answer with the message template for <code>type</code> in this factory's schema
+   * @return the template, or null if the type is null or not defined
+   */
+  private MessageTemplate template(final MTI type) {
+    final Snapshot current = snapshot;
+    if (current != null) {
+      return type != null ? current.templates[type.getIndex()] : null;
+    }
+    synchronized (this) {
+      return messages.get(type);
     }
   }
 
@@ -80,6 +182,43 @@ public class MessageFactory {
     this.strict = strict;
   }
 
+  public boolean isLazy() {
+    return lazy;
+  }
+
+  /**
+   * Set lazy parsing: if true, parsing a message only frames its fields, and each field
+   * value is parsed when first requested from the message; this is efficient where only
+   * a few fields of each message are used, e.g., when routing messages
+   * <p/>
+   * Note that a message lazily parsed from a buffer refers to the buffer's content, which
+   * must not be changed until the message's field values have been read
+   * @param lazy
+   */
+  public synchronized void setLazy(final boolean lazy) {
+    this.lazy = lazy;
+    if (snapshot != null) { // already initialized: recompile the parse and write plans
+      snapshot = compile();
+    }
+  }
+
+  public boolean isLongNumbers() {
+    return longNumbers;
+  }
+
+  /**
+   * Set long-valued numbers: if true, the values of numeric fields of up to 18 digits are
+   * parsed as Longs, directly from the message data, rather than as BigIntegers; wider fields
+   * are still parsed as BigIntegers
+   * @param longNumbers
+   */
+  public synchronized void setLongNumbers(final boolean longNumbers) {
+    this.longNumbers = longNumbers;
+    if (snapshot != null) { // already initialized: recompile the formatters and plans
+      snapshot = compile();
+    }
+  }
+
   /** Answer with the default bitmap type used in this factory */
   public BitmapType getBitmapType() {
     return bitmapType;
@@ -184,16 +323,70 @@ public class MessageFactory {
    * @return
    */
   public Collection<MessageTemplate> getMessages() {
-    return messages.values();
+    return templates().values();
   }
 
   /**
-   * Add a message to this factory's schema
+   * Add a message to this factory's schema; if the factory is already initialized, the
+   * schema is recompiled and the new snapshot replaces the current one
    * @param message
    */
-  public void addMessage(final MessageTemplate message) {
+  public synchronized void addMessage(final MessageTemplate message) {
     message.setSchema(this);
     this.messages.put(message.getMessageTypeIndicator(), message);
+    if (snapshot != null) { // already initialized: recompile the parse and write plans
+      snapshot = compile();
+    }
+  }
+
+  /**
+   * Replace the message templates of this factory's schema with those supplied, compiling
+   * them into a new snapshot that atomically replaces the current one: messages being
+   * created, parsed or written when the schema is replaced complete with the previous schema,
+   * and messages already created or parsed retain their templates
+   * <p/>
+   * If the new templates cannot be compiled (e.g., a field type has no formatter), the
+   * schema is unchanged; the templates supplied must not be changed once reloaded
+   * @param templates the message templates of the new schema
+   * @return the differences between the previous and new message templates
+   * @throws IllegalArgumentException if the templates are null or empty
+   * @throws IllegalStateException    if the factory has not been initialized
+   * @throws MessageException         if the new templates cannot be compiled
+   */
+  public synchronized SchemaDiff reload(final Collection<MessageTemplate> templates) {
+    if (templates == null || templates.isEmpty()) {
+      throw new IllegalArgumentException("Message templates are required");
+    }
+    final Snapshot previous = compiled();
+    final Map<MTI, MessageTemplate> reloaded = new HashMap<>();
+    for (final MessageTemplate message : templates) {
+      reloaded.put(message.getMessageTypeIndicator(), message);
+    }
+    final Snapshot next = compile(reloaded);
+    for (final MessageTemplate message : templates) {
+      for (final FieldTemplate field : message.getFields().values()) {
+        if (field.getDimension() == null || next.formatters.getFormatter(field.getType()) == null) {
+          throw new MessageException("Field cannot be compiled (no dimension, or no formatter for its type): "
+              + field + " in message " + message.getType());
+        }
+      }
+    }
+    for (final MessageTemplate message : templates) {
+      message.setSchema(this);
+    }
+    messages.clear();
+    messages.putAll(reloaded);
+    snapshot = next;
+    return SchemaDiff.compare(previous.version, previous.messages.values(), next.version, templates);
+  }
+
+  /**
+   * Answer with the version of this factory's compiled schema, incremented each time the
+   * schema is changed after initialization (zero if not yet initialized)
+   */
+  public long getSchemaVersion() {
+    final Snapshot current = snapshot;
+    return current != null ? current.version : 0;
   }
 
   /**
@@ -207,7 +400,9 @@ public class MessageFactory {
         + " contentType=" + getContentType()
         + " charset=" + getCharset()
         + " bitmapType=" + getBitmapType()
-        + (messages != null ? (" messages# " + messages.size()) : "");
+        + (lazy ? " lazy" : "")
+        + (longNumbers ? " longNumbers" : "")
+        + " messages# " + templates().size();
   }
 
   /**
@@ -221,10 +416,15 @@ public class MessageFactory {
    * @throws IllegalArgumentException - if the supplied MTI is null
    */
   public Message createByNumbers(final MTI type, final Map<Integer, Object> params) {
+    return createByNumbers(type, template(type), params);
+  }
+
+  /** Answer with a message of the type and template supplied, with fields set from the parameters */
+  private Message createByNumbers(final MTI type, final MessageTemplate template, final Map<Integer, Object> params) {
     final Message result = new Message(type);
     result.setFields(params);
     result.setHeader(header);
-    result.setTemplate(messages.get(type));
+    result.setTemplate(template);
     return result;
   }
 
@@ -242,76 +442,164 @@ public class MessageFactory {
 
   /**
    * Create a message for the type and parameters specified and write it to
-   * the <code>output</code> stream
+   * the <code>output</code> stream; the message is encoded as by {@link #encode(Message)},
+   * and then written to the stream
    * @param type   of the message to be written
    * @param params map of field # to field value (maybe updated if autogen or default required)
    * @param output stream to write formatted ISO8583 message onto
    * @throws IOException              if writing to the output stream fails for any reason
    * @throws IllegalArgumentException if the type supplied is not defined in this factory's schema,
    *                                  the output stream is null or null/empty message parameters have been supplied
+   * @throws MessageException         if the message could not be encoded
    */
   public void writeFromNumberMap(final MTI type, final Map<Integer, Object> params, final OutputStream output)
       throws IOException {
-    if (!messages.containsKey(type)) {
-      throw new IllegalArgumentException("Message not defined for MTI=" + type);
-    }
+    final WritePlan plan = getWritePlan(type, params);
     if (output == null) {
       throw new IllegalArgumentException("Output stream cannot be null");
     }
-    if (params == null || params.isEmpty()) {
-      throw new IllegalArgumentException("Message parameters are required");
+    final ByteBuffer data = encode(plan, params);
+    final byte[] result = new byte[data.remaining()];
+    data.get(result);
+    output.write(result);
+    output.flush();
+  }
+
+  /**
+   * Encode a message into the supplied buffer, which may be a heap or direct buffer
+   * (e.g., taken from a pool), at its position; on return, the position is set to the
+   * end of the message written
+   * @param message ISO8583 message to encode
+   * @param output  buffer to write the message into
+   * @return the length of the encoded message
+   * @throws IllegalArgumentException if the message type is not defined in this factory's schema,
+   *                                  the message has no fields or the buffer is null
+   * @throws BufferOverflowException  if there is insufficient space in the buffer, in which case
+   *                                  the buffer's position is unchanged
+   * @throws MessageException         if the message could not be encoded
+   */
+  public int encode(final Message message, final ByteBuffer output) {
+    final Map<Integer, Object> params = message.getFields();
+    final WritePlan plan = getWritePlan(message.getMTI(), params);
+    if (output == null) {
+      throw new IllegalArgumentException("Output buffer cannot be null");
     }
+    return encode(plan, params, output);
+  }
 
-    final MessageTemplate template = messages.get(type);
-    final MessageWriter writer = getOutputWriter(contentType, charset);
-    final DataOutputStream dos = getDataOutputStream(output);
-
-    writer.appendHeader(header, dos);
-    writer.appendMTI(type, dos);
-    writer.appendBitmap(template.getBitmap(), bitmapType, dos);
-
-    // Iterate over the fields in order of field number,
-    // appending the field's data to the output stream
-    final TreeSet<Integer> index = new TreeSet<>(template.getFields().keySet());
-    for (final Integer key : index) {
-      final FieldTemplate field = template.getFields().get(key);
-      Object data = params.get(field.getNumber());
-      if (data == null && field.isOptional() == false) {
-        // first, try to autogen, and then fall back to default (if any)
-        final String autogen = field.getAutogen();
-        if (autogen != null && !autogen.isEmpty()) {
-          if (autoGenerator == null) {
-            throw new IllegalStateException(
-                "Message requires AutoGen field, but the (optional) AutoGenerator has not been set in the MessageFactory");
-          }
-          data = autoGenerator.generate(autogen, field);
-        }
-        if (data == null) {
-          data = field.getDefaultValue();
-        }
-        if (data == null) {
-          throw new MessageException("Value is <null> for field: " + field);
-        }
-        // write the autogen'd/default value back into the parameter set for consistency
-        params.put(field.getNumber(), data);
-      }
-      if (data != null) {
-        writer.appendField(field, data, dos);
+  /**
+   * Encode the parameters supplied with the write plan, into the buffer at its position
+   * @return the length of the encoded message
+   * @throws BufferOverflowException if there is insufficient space in the buffer, in which case
+   *                                 the buffer's position is unchanged
+   */
+  private int encode(final WritePlan plan, final Map<Integer, Object> params, final ByteBuffer output) {
+    final int start = output.position();
+    try {
+      plan.write(params, output, autoGenerator);
+    } catch (final BufferOverflowException e) {
+      output.position(start);
+      throw e;
+    } catch (final IOException e) {
+      output.position(start);
+      throw new MessageException("Failed to encode message", e);
+    }
+    return output.position() - start;
+  }
+
+  /**
+   * Encode a message into a buffer held by the calling thread, and reused for each message
+   * it encodes, so that (once the buffer has grown to the size of the largest message)
+   * encoding a message allocates no buffers
+   * <p/>
+   * The buffer answered is only valid until the thread next encodes a message with this
+   * factory, so its content must be consumed (e.g., written to a channel) or copied before then;
+   * buffers grown beyond 64KB are not retained by the thread, and messages may not exceed 1MB
+   * @param message ISO8583 message to encode
+   * @return a (direct) buffer holding the encoded message, from its position to its limit
+   * @throws IllegalArgumentException if the message type is not defined in this factory's schema
+   *                                  or the message has no fields
+   * @throws MessageException         if the message could not be encoded, or its encoding
+   *                                  exceeds the maximum message size
+   */
+  public ByteBuffer encode(final Message message) {
+    final Map<Integer, Object> params = message.getFields();
+    return encode(getWritePlan(message.getMTI(), params), params);
+  }
+
+  /**
+   * Encode the parameters supplied with the write plan, into the calling thread's encode buffer
+   * @return the encode buffer, holding the message from its position to its limit
+   */
+  private ByteBuffer encode(final WritePlan plan, final Map<Integer, Object> params) {
+    ByteBuffer buffer = getEncodeBuffer();
+    while (true) {
+      buffer.clear();
+      try {
+        encode(plan, params, buffer);
+        buffer.flip();
+        return buffer;
+      } catch (final BufferOverflowException e) {
+        buffer = growEncodeBuffer(buffer, e);
       }
     }
-    dos.flush();
+  }
+
+  /** Answer with the calling thread's encode buffer */
+  ByteBuffer getEncodeBuffer() {
+    return encodeBuffers.get();
   }
 
   /**
-   * Wrap the supplied output stream in a DataOutputStream, if required
-   * @param output
-   * @return
+   * Answer with a buffer twice the size of the encode buffer supplied, which has overflowed,
+   * up to the maximum message size; the calling thread retains the new buffer in place of its
+   * encode buffer unless it is larger than the retained size
+   * @param overflow the exception thrown when the buffer overflowed
+   * @throws MessageException if the buffer is already of the maximum message size
    */
-  private DataOutputStream getDataOutputStream(final OutputStream output) {
-    if (output instanceof DataOutputStream) {
-      return (DataOutputStream) output;
+  ByteBuffer growEncodeBuffer(final ByteBuffer buffer, final BufferOverflowException overflow) {
+    if (buffer.capacity() >= MAX_MESSAGE_SIZE) {
+      throw new MessageException("Encoded message exceeds maximum size (" + MAX_MESSAGE_SIZE + " bytes)", overflow);
+    }
+    final ByteBuffer result = ByteBuffer.allocateDirect(Math.min(buffer.capacity() * 2, MAX_MESSAGE_SIZE));
+    if (result.capacity() <= RETAINED_BUFFER_SIZE) {
+      encodeBuffers.set(result);
     }
-    return new DataOutputStream(output);
+    return result;
+  }
+
+  /** Answer with the auto-generator set in this factory (may be null) */
+  AutoGeneratorFactory getAutoGeneratorFactory() {
+    return autoGenerator;
+  }
+
+  /**
+   * Answer with the mapper of the {@link IsoMessage} class supplied to messages of the type
+   * it specifies, compiled on first use and cached until the schema is changed
+   * @param type class annotated with <code>IsoMessage</code>, its mapped fields with {@link IsoField}
+   * @throws IllegalArgumentException if the class is not annotated, its message type is not defined
+   *                                  in this factory's schema, or a field mapping is not valid
+   * @throws IllegalStateException    if the factory has not been initialized
+   */
+  @SuppressWarnings("unchecked")
+  public <T> MessageMapper<T> getMapper(final Class<T> type) {
+    return (MessageMapper<T>) compiled().mappers.get(type);
+  }
+
+  /**
+   * Answer with the write plan for messages of <code>type</code>, checking parameters are supplied
+   * @throws IllegalArgumentException if the type supplied is not defined in this factory's schema,
+   *                                  or null/empty message parameters have been supplied
+   */
+  private WritePlan getWritePlan(final MTI type, final Map<Integer, Object> params) {
+    final WritePlan result = type != null ? compiled().writePlans[type.getIndex()] : null;
+    if (result == null) {
+      throw new IllegalArgumentException("Message not defined for MTI=" + type);
+    }
+    if (params == null || params.isEmpty()) {
+      throw new IllegalArgumentException("Message parameters are required");
+    }
+    return result;
   }
 
   /**
@@ -321,7 +609,7 @@ public class MessageFactory {
    * @return
    * @throws MessageException if no output writer is defined for the context type supplied
    */
-  private MessageWriter getOutputWriter(final ContentType contentType, final CharEncoder charset) {
+  private static MessageWriter getOutputWriter(final ContentType contentType, final CharEncoder charset) {
     switch (contentType) {
       case TEXT:
         return new CharMessageWriter(charset);
@@ -336,27 +624,68 @@ public class MessageFactory {
    * Create a message instance of the specified <code>type</code>, setting the field
    * values from properties of the <code>bean</code>, as named in the Message template
    * 'name' field
+   * <p/>
+   * The bean's getters are bound to the fields once for each bean class and message
+   * type (see {@link BeanBinder}); fields with no property in the bean are not set, as they
+   * may be set later as protocol parameters
    * @param type           (MTI) of ISO message to create
    * @param bean           holding value to populate message fields
    * @return
-   * @throws IllegalArgumentException if the type supplied is not defined in this factory's schema
+   * @throws IllegalArgumentException if the type supplied is not defined in this factory's schema,
+   *                                  or a getter of the bean throws an exception
    */
   public Message createFromBean(final MTI type, final Object bean) {
-    if (!messages.containsKey(type)) {
+    final BeanBinder binder = getBinder(bean.getClass(), type);
+    return createByNumbers(type, binder.getTemplate(), binder.getFields(bean));
+  }
+
+  /**
+   * Set the properties of the <code>bean</code> from the values of the fields of the
+   * message named as the properties in the message's template; numeric field values are
+   * converted to the type of the property
+   * @param message holding the field values
+   * @param bean    to be populated
+   * @return the bean supplied
+   * @throws IllegalArgumentException if the message's type is not defined in this factory's schema,
+   *                                  or a property cannot be set from its field's value
+   */
+  public <T> T populateBean(final Message message, final T bean) {
+    getBinder(bean.getClass(), message.getMTI()).setProperties(message, bean);
+    return bean;
+  }
+
+  /**
+   * Answer with the binder of the bean class supplied to the template of the message type:
+   * that cached in the current snapshot (the template being taken from the same snapshot, so
+   * a binder is never cached with a template of another version of the schema), or a new
+   * binder if not yet initialized
+   * @throws IllegalArgumentException if the type supplied is not defined in this factory's schema
+   */
+  private BeanBinder getBinder(final Class<?> beanClass, final MTI type) {
+    final Snapshot current = snapshot;
+    if (current == null) {
+      final MessageTemplate template;
+      synchronized (this) {
+        template = messages.get(type);
+      }
+      if (template == null) {
+        throw new IllegalArgumentException("Message not defined for MTI=" + type);
+      }
+      return BeanBinder.create(beanClass, template);
+    }
+    final MessageTemplate template = type != null ? current.templates[type.getIndex()] : null;
+    if (template == null) {
       throw new IllegalArgumentException("Message not defined for MTI=" + type);
     }
-    final Map<Integer, Object> params = new HashMap<Integer, Object>();
-    for (final FieldTemplate field : messages.get(type).getFields().values()) {
-      try {
-        params.put(field.getNumber(), PropertyUtils.getProperty(bean, field.getName()));
-      } catch (final Exception e) {
-        // ignore, as this value may be set later as a protocol parameter
-/*				throw new IllegalArgumentException ( "Unable to access property [" 
-              + field.getName () + "] in supplied bean", e);*/
-      }
+    final BeanBinder[] binders = current.binders.get(beanClass);
+    final int index = type.getIndex();
+    BeanBinder result = binders[index];
+    if (result == null) {
+      // binders are immutable, so may be safely created more than once by racing threads
+      result = BeanBinder.create(beanClass, template);
+      binders[index] = result;
     }
-
-    return createByNumbers(type, params);
+    return result;
   }
 
   /**
@@ -364,28 +693,41 @@ public class MessageFactory {
    * @return
    */
   public MessageTemplate getTemplate(final MTI type) {
-    return messages.get(type);
+    return template(type);
   }
 
   /**
+   * Set or replace the formatter for field <code>type</code>; if the factory is already
+   * initialized, the schema is recompiled and the new snapshot replaces the current one
+   * @param type
    * @param formatter
+   * @throws IllegalArgumentException if the formatter is null
    */
-  public void addFormatter(final String type, TypeFormatter<?> formatter) {
-    formatters.setFormatter(type, formatter);
+  public synchronized void addFormatter(final String type, TypeFormatter<?> formatter) {
+    if (formatter == null) {
+      throw new IllegalArgumentException("formatter cannot be null");
+    }
+    customFormatters.put(type, formatter);
+    if (snapshot != null) { // already initialized: rebind the formatters in the parse and write plans
+      snapshot = compile();
+    }
+  }
+
+  /** Answer with a copy of the formatters added to this factory, keyed by field type */
+  synchronized Map<String, TypeFormatter<?>> getCustomFormatters() {
+    return new LinkedHashMap<>(customFormatters);
   }
 
   /**
    * Answer with the formatter for message <code>type</code>
    * @param type
    * @return
+   * @throws MessageException      if no formatter is registered for the type
+   * @throws IllegalStateException if the factory has not been initialized
    */
   TypeFormatter<?> getFormatter(final String type) {
-    TypeFormatter<?> result = null;
-    try {
-      return formatters.getFormatter(type);
-    } catch (final Exception e) {
-      // handled by result being left as null
-    }
+    final TypeFormatters formatters = compiled().formatters;
+    final TypeFormatter<?> result = formatters.getFormatter(type);
     if (result == null) {
       throw new MessageException(
           "No formatter registered for field type=[" + type + "] in " + formatters);
@@ -401,7 +743,31 @@ public class MessageFactory {
    */
   public Message parse(final byte[] bytes)
       throws ParseException, IOException {
-    return this.parse(new ByteArrayInputStream(bytes));
+    if (bytes == null) {
+      throw new IllegalArgumentException("Message data cannot be null");
+    }
+    return this.parse(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Parse a message from the supplied buffer, which may be a heap or direct buffer
+   * <p/>
+   * The message is read from the buffer's current position, and on return the position
+   * is set to the end of the message read; field values are parsed from slices of the
+   * buffer, without first copying the message data
+   * @param data buffer holding an ISO8583 message
+   * @return A message representation, set from the input data
+   * @throws IllegalArgumentException if the buffer supplied is null
+   * @throws IOException              if the buffer does not hold a complete message
+   * @throws MessageException         if the input message is not well-formed or does not
+   *                                  conform to the message specification configured
+   */
+  public Message parse(final ByteBuffer data)
+      throws IOException {
+    if (data == null) {
+      throw new IllegalArgumentException("Input buffer cannot be null");
+    }
+    return compiled().parser.parse(data);
   }
 
   /**
@@ -424,9 +790,7 @@ public class MessageFactory {
     } else {
       dis = (DataInputStream) input;
     }
-    final Message result = parser.parse(dis);
-    result.setTemplate(messages.get(result.getMTI()));
-    return result;
+    return compiled().parser.parse(dis);
   }
 
   /**
@@ -440,12 +804,13 @@ public class MessageFactory {
    * @throws IllegalArgumentException if the type is not defined in this factory's schema
    */
   public Message createByNames(final MTI type, final Map<String, Object> params) {
-    if (!messages.containsKey(type)) {
+    final MessageTemplate template = template(type);
+    if (template == null) {
       throw new IllegalArgumentException("Message not defined for MTI=" + type);
     }
     // convert the name map supplied to a field number keyed map
     final Map<Integer, Object> numParams = new HashMap<Integer, Object>();
-    for (final FieldTemplate field : messages.get(type).getFields().values()) {
+    for (final FieldTemplate field : template.getFields().values()) {
       numParams.put(field.getNumber(), params.get(field.getName()));
     }
     return createByNumbers(type, numParams);
@@ -459,7 +824,7 @@ public class MessageFactory {
    */
   public Message create(final MTI mti) {
     final Message result = new Message(mti);
-    MessageTemplate template = messages.get(result.getMTI());
+    final MessageTemplate template = template(result.getMTI());
     result.setHeader(template.getHeader());
     result.setTemplate(template);
     return result;
@@ -478,7 +843,7 @@ public class MessageFactory {
    */
   public Message duplicate(final MTI mti, final Message source) {
     final Message result = new Message(mti);
-    final MessageTemplate template = messages.get(result.getMTI());
+    final MessageTemplate template = template(result.getMTI());
     if (template == null) {
       throw new IllegalArgumentException("Message type [" + mti + "] not defined");
     }
@@ -506,12 +871,49 @@ public class MessageFactory {
    * @throws MessageException if an error occurred creating the byte representation of the message
    */
   public byte[] getMessageData(final Message message) {
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    try {
-      this.writeToStream(message, new DataOutputStream(baos));
-      return baos.toByteArray();
-    } catch (IOException e) {
-      throw new MessageException("Failed to translate message to byte stream", e);
+    final ByteBuffer data = encode(message);
+    final byte[] result = new byte[data.remaining()];
+    data.get(result);
+    return result;
+  }
+
+  /**
+   * Immutable snapshot of a factory's compiled schema: the message templates, the formatters
+   * and the parse and write plans bound to them; templates and write plans are also held by
+   * the index of their message type (see {@link MTI#getIndex})
+   * <p/>
+   * The snapshot also caches the bean binders and message mappers created for its templates,
+   * which are discarded with it when the schema is changed
+   */
+  private static final class Snapshot {
+    private final long version;
+    private final Map<MTI, MessageTemplate> messages;
+    private final MessageTemplate[] templates = new MessageTemplate[MTI.COUNT];
+    private final TypeFormatters formatters;
+    private final MessageParser parser;
+    private final WritePlan[] writePlans;
+    /** message mappers for each {@link IsoMessage} class */
+    private final ClassValue<MessageMapper<?>> mappers;
+    /** bean binders for each bean class, by the index of their message type */
+    private final ClassValue<BeanBinder[]> binders = new ClassValue<BeanBinder[]>() {
+      @Override
+      protected BeanBinder[] computeValue(final Class<?> type) {
+        return new BeanBinder[MTI.COUNT];
+      }
+    };
+
+    private Snapshot(
+        final long version, final Map<MTI, MessageTemplate> messages, final TypeFormatters formatters,
+        final MessageParser parser, final WritePlan[] writePlans, final ClassValue<MessageMapper<?>> mappers) {
+      this.version = version;
+      this.messages = Collections.unmodifiableMap(messages);
+      for (final MessageTemplate template : messages.values()) {
+        templates[template.getMessageTypeIndicator().getIndex()] = template;
+      }
+      this.formatters = formatters;
+      this.parser = parser;
+      this.writePlans = writePlans;
+      this.mappers = mappers;
     }
   }
 
@@ -0,0 +1,369 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+
+
+/**
+ * Mapper that encodes instances of an {@link IsoMessage} class directly as messages, and
+ * decodes messages directly into instances, without the intermediate field map or
+ * {@link Message}; obtained from a message factory (see {@link MessageFactory#getMapper})
+ * <p/>
+ * The mapper is compiled once for the class, from the message template of the type named
+ * by its <code>IsoMessage</code> annotation: the fields and getters marked with {@link IsoField}
+ * are bound, as method handles, to the template's fields, which are encoded and decoded with
+ * the factory's write and parse plans, and so with the template fields' own dimensions and
+ * formatters
+ * <p/>
+ * Template fields not mapped are written with their auto-generated or default value, unless
+ * optional, and skipped, unparsed, when read; a mapped field that has no setter (a final field,
+ * or a read-only property) is written but not read. Parsed values are converted to the
+ * type of the mapped field as for {@link MessageFactory#populateBean}
+ * @author phillipsr
+ */
+public final class MessageMapper<T> {
+  private static final int MAX_FIELD = FieldValues.MAX_FIELD;
+  private static final MethodType GetterType = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SetterType = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<T> type;
+  private final MessageTemplate template;
+  private final WritePlan plan;
+  private final MessageParser parser;
+  private final MessageFactory factory;
+  /** no-argument constructor of the class, or null if it has none */
+  private final MethodHandle constructor;
+  /** getters, setters and field types, indexed by message field number (null if not mapped) */
+  private final MethodHandle[] getters = new MethodHandle[MAX_FIELD + 1];
+  private final MethodHandle[] setters = new MethodHandle[MAX_FIELD + 1];
+  private final Class<?>[] types = new Class<?>[MAX_FIELD + 1];
+
+  private MessageMapper(
+      final Class<T> type, final WritePlan plan, final MessageParser parser, final MessageFactory factory) {
+    this.type = type;
+    this.template = plan.getTemplate();
+    this.plan = plan;
+    this.parser = parser;
+    this.factory = factory;
+    this.constructor = getConstructor(type);
+    for (Class<?> declarer = type; declarer != null && declarer != Object.class; declarer = declarer.getSuperclass()) {
+      for (final Field field : declarer.getDeclaredFields()) {
+        final IsoField mapping = field.getAnnotation(IsoField.class);
+        if (mapping != null) {
+          bindField(mapping.value(), field);
+        }
+      }
+    }
+    for (final Method method : type.getMethods()) {
+      final IsoField mapping = method.getAnnotation(IsoField.class);
+      if (mapping != null) {
+        bindProperty(mapping.value(), method);
+      }
+    }
+  }
+
+  /**
+   * Compile a mapper for the {@link IsoMessage} class supplied
+   * @param type    annotated class to be mapped
+   * @param plans   write plans of the factory's schema, indexed by MTI (see {@link MTI#getIndex})
+   * @param parser  the factory's parser
+   * @param factory from which the mapper is obtained
+   * @throws IllegalArgumentException if the class is not annotated, its message type is not
+   *                                  defined in the schema, or a field mapping is not valid
+   */
+  static <T> MessageMapper<T> create(
+      final Class<T> type, final WritePlan[] plans, final MessageParser parser, final MessageFactory factory) {
+    final IsoMessage message = type.getAnnotation(IsoMessage.class);
+    if (message == null) {
+      throw new IllegalArgumentException("Class " + type.getName() + " is not annotated as an @IsoMessage");
+    }
+    final WritePlan plan = plans[MTI.create(message.value()).getIndex()];
+    if (plan == null) {
+      throw new IllegalArgumentException("Message not defined for MTI=" + message.value() + " (" + type.getName() + ")");
+    }
+    return new MessageMapper<>(type, plan, parser, factory);
+  }
+
+  /** Answer with the type of message mapped */
+  public MTI getType() {
+    return template.getMessageTypeIndicator();
+  }
+
+  /** Answer with the template of the message mapped */
+  public MessageTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Encode the object supplied as a message into the buffer, which may be a heap or direct
+   * buffer, at its position; on return, the position is set to the end of the message written
+   * @param object to be encoded
+   * @param output buffer to write the message into
+   * @return the length of the encoded message
+   * @throws IllegalArgumentException if the object or buffer is null, or a property of the object
+   *                                  cannot be read
+   * @throws BufferOverflowException  if there is insufficient space in the buffer, in which case
+   *                                  the buffer's position is unchanged
+   * @throws MessageException         if the message could not be encoded
+   */
+  public int encode(final T object, final ByteBuffer output) {
+    if (object == null || output == null) {
+      throw new IllegalArgumentException("Object and output buffer cannot be null");
+    }
+    final int start = output.position();
+    try {
+      plan.write(new Source(object), output, factory.getAutoGeneratorFactory());
+    } catch (final BufferOverflowException e) {
+      output.position(start);
+      throw e;
+    } catch (final IOException e) {
+      output.position(start);
+      throw new MessageException("Failed to encode message", e);
+    }
+    return output.position() - start;
+  }
+
+  /**
+   * Encode the object supplied as a message into a buffer held by the calling thread, as
+   * for {@link MessageFactory#encode(Message)}
+   * @return a (direct) buffer holding the encoded message, from its position to its limit,
+   * only valid until the thread next encodes a message with the factory
+   * @throws IllegalArgumentException if the object is null, or a property of the object cannot be read
+   * @throws MessageException         if the message could not be encoded, or exceeds the maximum size
+   */
+  public ByteBuffer encode(final T object) {
+    ByteBuffer buffer = factory.getEncodeBuffer();
+    while (true) {
+      buffer.clear();
+      try {
+        encode(object, buffer);
+        buffer.flip();
+        return buffer;
+      } catch (final BufferOverflowException e) {
+        buffer = factory.growEncodeBuffer(buffer, e);
+      }
+    }
+  }
+
+  /**
+   * Answer with the message encoding the object supplied
+   * @throws IllegalArgumentException if the object is null, or a property of the object cannot be read
+   * @throws MessageException         if the message could not be encoded
+   */
+  public byte[] getMessageData(final T object) {
+    final ByteBuffer data = encode(object);
+    final byte[] result = new byte[data.remaining()];
+    data.get(result);
+    return result;
+  }
+
+  /**
+   * Decode a message from the buffer supplied into the target object; the message is read
+   * from the buffer's position, and on return the position is set to the end of the message
+   * @param input  buffer holding a message of the type mapped
+   * @param target object whose mapped fields are set from the message's fields
+   * @return the target object
+   * @throws IOException              if the buffer does not hold a complete message
+   * @throws IllegalArgumentException if the buffer is null, or a field of the object cannot be set
+   * @throws MessageException         if the message is not of the type mapped, or is not well-formed
+   */
+  public T decode(final ByteBuffer input, final T target)
+      throws IOException {
+    parser.parse(input, getType(), new Sink(target));
+    return target;
+  }
+
+  /**
+   * Decode a message from the buffer supplied into a new instance of the class mapped
+   * @throws IllegalStateException if the class mapped has no no-argument constructor
+   * @see #decode(ByteBuffer, Object)
+   */
+  public T decode(final ByteBuffer input)
+      throws IOException {
+    return decode(input, newInstance());
+  }
+
+  /**
+   * Decode the message data supplied into a new instance of the class mapped
+   * @see #decode(ByteBuffer)
+   */
+  public T decode(final byte[] data)
+      throws IOException {
+    if (data == null) {
+      throw new IllegalArgumentException("Message data cannot be null");
+    }
+    return decode(ByteBuffer.wrap(data));
+  }
+
+  private T newInstance() {
+    if (constructor == null) {
+      throw new IllegalStateException("Class " + type.getName() + " has no no-argument constructor");
+    }
+    try {
+      return type.cast(constructor.invoke());
+    } catch (final Throwable e) {
+      throw new IllegalStateException("Failed to instantiate " + type.getName(), e);
+    }
+  }
+
+  private static MethodHandle getConstructor(final Class<?> type) {
+    try {
+      final Constructor<?> result = type.getDeclaredConstructor();
+      result.setAccessible(true);
+      return MethodHandles.lookup().unreflectConstructor(result);
+    } catch (final NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /** bind the (instance) field supplied to message field <code>number</code> */
+  private void bindField(final int number, final Field field) {
+    if (Modifier.isStatic(field.getModifiers())) {
+      throw new IllegalArgumentException("Static field " + field + " cannot be mapped to a message field");
+    }
+    field.setAccessible(true);
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      bind(number, field.toString(), field.getType(), lookup.unreflectGetter(field),
+          Modifier.isFinal(field.getModifiers()) ? null : lookup.unreflectSetter(field));
+    } catch (final IllegalAccessException e) {
+      throw new IllegalArgumentException("Field " + field + " cannot be accessed", e);
+    }
+  }
+
+  /** bind the property of which the getter supplied is the read method to message field <code>number</code> */
+  private void bindProperty(final int number, final Method getter) {
+    final PropertyDescriptor property = getProperty(getter);
+    if (property == null) {
+      throw new IllegalArgumentException("Method " + getter + " is not a property getter");
+    }
+    final Method setter = property.getWriteMethod();
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      getter.setAccessible(true);
+      if (setter != null) {
+        setter.setAccessible(true);
+      }
+      bind(number, getter.toString(), property.getPropertyType(), lookup.unreflect(getter),
+          setter != null ? lookup.unreflect(setter) : null);
+    } catch (final IllegalAccessException e) {
+      throw new IllegalArgumentException("Property " + property.getName() + " cannot be accessed", e);
+    }
+  }
+
+  private PropertyDescriptor getProperty(final Method getter) {
+    try {
+      for (final PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+        if (getter.equals(property.getReadMethod())) {
+          return property;
+        }
+      }
+    } catch (final IntrospectionException e) {
+      throw new IllegalArgumentException("Unable to introspect class " + type.getName(), e);
+    }
+    return null;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the message field is not defined in the template, or is
+   *                                  already mapped
+   */
+  private void bind(
+      final int number, final String member, final Class<?> memberType, final MethodHandle getter,
+      final MethodHandle setter) {
+    if (number < 2 || number > MAX_FIELD || !template.getFields().containsKey(number)) {
+      throw new IllegalArgumentException("Field " + number + " mapped by " + member
+          + " is not defined for message type: " + getType());
+    }
+    if (getters[number] != null) {
+      throw new IllegalArgumentException("Field " + number + " is mapped more than once, by " + member);
+    }
+    getters[number] = getter.asType(GetterType);
+    setters[number] = setter != null ? setter.asType(SetterType) : null;
+    types[number] = memberType;
+  }
+
+  /** set the value of the mapped field <code>number</code> in the object, converting it to the field's type */
+  private void set(final Object object, final int number, final Object value) {
+    if (value == null && types[number].isPrimitive()) {
+      return; // a null value cannot be set in a primitive field
+    }
+    try {
+      setters[number].invokeExact(object, BeanBinder.convert(value, types[number]));
+    } catch (final Throwable e) {
+      throw new IllegalArgumentException("Unable to set field " + number + " of " + type.getName()
+          + " from value (" + value + ")", e);
+    }
+  }
+
+  /** The mapped fields of an object being encoded */
+  private final class Source implements WritePlan.FieldSource {
+    private final Object object;
+
+    private Source(final Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public Object get(final int number) {
+      final MethodHandle getter = getters[number];
+      if (getter == null) {
+        return null;
+      }
+      try {
+        return getter.invokeExact(object);
+      } catch (final Throwable e) {
+        throw new IllegalArgumentException("Unable to get field " + number + " of " + type.getName(), e);
+      }
+    }
+
+    /**
+     * generated and default values are set in the object, if the field is mapped and settable,
+     * and the value can be held by it (e.g., a default value, which is a string, cannot be
+     * set in a numeric field)
+     */
+    @Override
+    public void put(final int number, final Object value) {
+      if (setters[number] != null) {
+        try {
+          set(object, number, value);
+        } catch (final IllegalArgumentException e) {
+          // ignore, the value is still written to the message
+        }
+      }
+    }
+  }
+
+  /** The mapped fields of an object being decoded */
+  private final class Sink implements MessageParser.FieldSink {
+    private final Object object;
+
+    private Sink(final Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public boolean accepts(final int number) {
+      return setters[number] != null;
+    }
+
+    @Override
+    public void put(final int number, final Object value) {
+      set(object, number, value);
+    }
+  }
+
+}
@@ -1,5 +1,6 @@
 package org.nulleins.formats.iso8583;
 
+import org.nulleins.formats.iso8583.formatters.TypeFormatters;
 import org.nulleins.formats.iso8583.io.BCDMessageReader;
 import org.nulleins.formats.iso8583.io.MessageReader;
 import org.nulleins.formats.iso8583.types.Bitmap;
@@ -11,40 +12,55 @@ import org.nulleins.formats.iso8583.io.CharMessageReader;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 
 
 /**
  * Utility class used by message factory to parse an ISO8583 message
+ * <p/>
+ * The message templates supplied are compiled into parse plans when the parser is
+ * created, so the parser itself is immutable once constructed
+ * <p/>
+ * A <i>lazy</i> parser only frames the fields present in the message (using the bitmap
+ * and field length prefixes), deferring the parsing of each field's value until it is
+ * first requested from the message
  * @author phillipsr
  */
 class MessageParser {
-  private final Map<MTI, MessageTemplate> messages;
+  /** parse plans by the index of their message type (see {@link MTI#getIndex}) */
+  private final ParsePlan[] plans = new ParsePlan[MTI.COUNT];
   private final String header;
-  private final ContentType contentType;
-  private final CharEncoder charset;
+  private final MessageReader reader;
   private final BitmapType bitmapType;
+  private final boolean lazy;
 
   MessageParser(
-      final String header, final Map<MTI, MessageTemplate> messages,
-      final ContentType contentType, final CharEncoder charset, final BitmapType bitmapType) {
+      final String header, final Collection<MessageTemplate> messages,
+      final ContentType contentType, final CharEncoder charset, final BitmapType bitmapType, final boolean lazy,
+      final TypeFormatters formatters) {
     this.header = header;
-    this.messages = messages;
-    this.contentType = contentType;
-    this.charset = charset;
     this.bitmapType = bitmapType;
+    this.lazy = lazy;
+    this.reader = getMessageReader(contentType, charset);
+    for (final MessageTemplate message : messages) {
+      plans[message.getMessageTypeIndicator().getIndex()] = new ParsePlan(message, reader, formatters);
+    }
   }
 
-  private MessageReader getMessageReader() {
+  /**
+   * Return the appropriate message reader for the supplied content type
+   * @throws MessageException if no reader is defined for the content type supplied
+   */
+  private static MessageReader getMessageReader(final ContentType contentType, final CharEncoder charset) {
     switch (contentType) {
       case TEXT:
         return new CharMessageReader(charset);
       case BCD:
         return new BCDMessageReader(charset);
+      default:
+        throw new MessageException("No MessageReader defined for content=" + contentType);
     }
-    return null;
   }
 
   /**
@@ -60,50 +76,218 @@ class MessageParser {
     if (input == null) {
       throw new IllegalArgumentException("Input stream for ISO8583 message cannot be null");
     }
-    final MessageReader reader = getMessageReader();
+    return parse(new StreamInput(input));
+  }
 
-    // if the header field is required, check that it is present
-    final int headerLen = header != null ? header.length() : 0;
-    if (headerLen > 0) {
-      final String msgHeader = reader.readHeader(headerLen, input);
-      if (!msgHeader.equals(header)) {
-        throw new MessageException("Message should start with header: [" + header + "]");
+  /**
+   * read from the supplied buffer, identifying the message type and parsing the message
+   * body; the message is read from the buffer's current position, which is advanced to
+   * the end of the message
+   * <p/>
+   * If this parser is lazy, the message returned refers to the content of the
+   * input buffer, which must not be changed until its field values have been read
+   * @param input buffer from which an ISO8583 message can be read
+   * @return a message instance representing the message received
+   * @throws IOException              if the buffer does not contain a complete message
+   * @throws IllegalArgumentException if the supplied buffer is null
+   */
+  Message parse(final ByteBuffer input)
+      throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("Input buffer for ISO8583 message cannot be null");
+    }
+    return parse(new BufferInput(input));
+  }
+
+  /**
+   * read a message of the type specified from the supplied buffer, passing the value of each
+   * field present to the sink, rather than creating a message; fields the sink does not
+   * accept are skipped without being parsed
+   * @param input buffer from which an ISO8583 message can be read
+   * @param type  of message expected
+   * @param sink  to receive the field values
+   * @throws IOException      if the buffer does not contain a complete message
+   * @throws MessageException if the message is not of the type expected, or is not well-formed
+   */
+  void parse(final ByteBuffer input, final MTI type, final FieldSink sink)
+      throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("Input buffer for ISO8583 message cannot be null");
+    }
+    final Input in = new BufferInput(input);
+    final MTI actual = readType(in);
+    if (actual != type) {
+      throw new MessageException("Message type [" + actual + "] is not that expected: [" + type + "]");
+    }
+    final ParsePlan plan = getPlan(actual);
+    final Bitmap bitmap = in.readBitmap();
+    for (int i = bitmap.nextSetField(2); i > 0; i = bitmap.nextSetField(i + 1)) {
+      final ParsePlan.FieldDecoder decoder = getDecoder(plan, i);
+      if (sink.accepts(i)) {
+        sink.put(i, in.decode(decoder));
+      } else {
+        in.frame(decoder);
       }
     }
+  }
+
+  /** parse a message from the input, into a message of the type read */
+  private Message parse(final Input input)
+      throws IOException {
+    final ParsePlan plan = getPlan(readType(input));
+    final Message result = createMessage(plan);
+    final Bitmap bitmap = input.readBitmap();
+
+    // iterate across the fields present, parsing (or framing, if lazy) each with its pre-compiled decoder:
+    final FieldValues fields = new FieldValues();
+    for (int i = bitmap.nextSetField(2); i > 0; i = bitmap.nextSetField(i + 1)) {
+      final ParsePlan.FieldDecoder decoder = getDecoder(plan, i);
+      fields.put(i, lazy ? new ParsePlan.DeferredField(decoder, input.frame(decoder)) : input.decode(decoder));
+    }
+    result.setParsedFields(fields, lazy);
+    return result;
+  }
+
+  /** read the header, if required, checking that it is present, and the message type (MTI) */
+  private MTI readType(final Input input)
+      throws IOException {
+    if (hasHeader()) {
+      checkHeader(input.readHeader(header.length()));
+    }
+    return input.readMTI();
+  }
 
-    // read the message type (MTI)
-    final MTI type = reader.readMTI(input);
-    final MessageTemplate template = messages.get(type);
-    if (template == null) {
+  private boolean hasHeader() {
+    return header != null && !header.isEmpty();
+  }
+
+  private void checkHeader(final String msgHeader) {
+    if (!msgHeader.equals(header)) {
+      throw new MessageException("Message should start with header: [" + header + "]");
+    }
+  }
+
+  private ParsePlan getPlan(final MTI type) {
+    final ParsePlan plan = plans[type.getIndex()];
+    if (plan == null) {
       throw new MessageException("Message type [" + type + "] not defined in this message set");
     }
+    return plan;
+  }
+
+  private ParsePlan.FieldDecoder getDecoder(final ParsePlan plan, final int fieldNb) {
+    final ParsePlan.FieldDecoder decoder = plan.getDecoder(fieldNb);
+    if (decoder == null) {
+      throw new MessageException("Field " + fieldNb + " present in message, but not defined for type: "
+          + plan.getTemplate().getMessageTypeIndicator());
+    }
+    return decoder;
+  }
 
-    // create resulting message
+  private Message createMessage(final ParsePlan plan) {
+    final MessageTemplate template = plan.getTemplate();
     final Message result = new Message(template.getMessageTypeIndicator());
-    result.setHeader(headerLen > 0 ? header : "");
+    result.setHeader(hasHeader() ? header : "");
+    result.setTemplate(template);
+    return result;
+  }
 
-    final Bitmap bitmap = reader.readBitmap(bitmapType, input);
+  /** Source of a message's data: the reads specific to a stream or buffer */
+  private interface Input {
+    String readHeader(int size) throws IOException;
 
-    // iterate across all possible fields, parsing if present:
-    final Map<Integer, Object> fields = new HashMap<>();
-    for (int i = 2; i <= 192; i++) {
-      if (!bitmap.isFieldPresent(i)) {
-        continue;
-      }
-      final FieldTemplate field = template.getFields().get(i);
-      final byte[] fieldData = reader.readField(field, input);
-      try {
-        final Object value = field.parse(fieldData);
-        fields.put(field.getNumber(), value);
-      } catch (final ParseException e) {
-        final MessageException rethrow = new MessageException("Failed to parse field: " + field.toString());
-        rethrow.initCause(e);
-        throw rethrow;
-      }
+    MTI readMTI() throws IOException;
+
+    Bitmap readBitmap() throws IOException;
+
+    Object decode(ParsePlan.FieldDecoder decoder) throws IOException;
+
+    ByteBuffer frame(ParsePlan.FieldDecoder decoder) throws IOException;
+  }
+
+  private final class StreamInput implements Input {
+    private final DataInputStream input;
+
+    private StreamInput(final DataInputStream input) {
+      this.input = input;
     }
-    result.setFields(fields);
 
-    return result;
+    @Override
+    public String readHeader(final int size)
+        throws IOException {
+      return reader.readHeader(size, input);
+    }
+
+    @Override
+    public MTI readMTI()
+        throws IOException {
+      return reader.readMTI(input);
+    }
+
+    @Override
+    public Bitmap readBitmap()
+        throws IOException {
+      return reader.readBitmap(bitmapType, input);
+    }
+
+    @Override
+    public Object decode(final ParsePlan.FieldDecoder decoder)
+        throws IOException {
+      return decoder.decode(input);
+    }
+
+    @Override
+    public ByteBuffer frame(final ParsePlan.FieldDecoder decoder)
+        throws IOException {
+      return decoder.frame(input);
+    }
+  }
+
+  private final class BufferInput implements Input {
+    private final ByteBuffer input;
+
+    private BufferInput(final ByteBuffer input) {
+      this.input = input;
+    }
+
+    @Override
+    public String readHeader(final int size)
+        throws IOException {
+      return reader.readHeader(size, input);
+    }
+
+    @Override
+    public MTI readMTI()
+        throws IOException {
+      return reader.readMTI(input);
+    }
+
+    @Override
+    public Bitmap readBitmap()
+        throws IOException {
+      return reader.readBitmap(bitmapType, input);
+    }
+
+    @Override
+    public Object decode(final ParsePlan.FieldDecoder decoder)
+        throws IOException {
+      return decoder.decode(input);
+    }
+
+    @Override
+    public ByteBuffer frame(final ParsePlan.FieldDecoder decoder)
+        throws IOException {
+      return decoder.frame(input);
+    }
+  }
+
+  /** Receiver of the field values of a message parsed other than into a message */
+  interface FieldSink {
+    /** Answer with true if the value of field <code>number</code> is required */
+    boolean accepts(int number);
+
+    /** Receive the parsed value of field <code>number</code> */
+    void put(int number, Object value);
   }
 
 }
@@ -0,0 +1,190 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatters;
+import org.nulleins.formats.iso8583.io.MessageReader;
+import org.nulleins.formats.iso8583.types.Dimension;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+
+
+/**
+ * Compiled, immutable form of a message template used by the parser: the field
+ * decoders are resolved once (reader strategy, dimension and formatter bound) when
+ * the factory is initialized, rather than being looked-up for each field of each
+ * message parsed
+ * @author phillipsr
+ */
+final class ParsePlan {
+  /** highest field number that can be present in a message (tertiary bitmap) */
+  static final int MAX_FIELD = FieldValues.MAX_FIELD;
+
+  private final MessageTemplate template;
+  /** field decoders, indexed by field number (null if field not defined in template) */
+  private final FieldDecoder[] decoders = new FieldDecoder[MAX_FIELD + 1];
+
+  /**
+   * Compile the supplied message template into a parse plan
+   * @param template   message template to compile
+   * @param reader     strategy used to read fields for the factory's content type
+   * @param formatters registry from which the field formatters are bound
+   */
+  ParsePlan(final MessageTemplate template, final MessageReader reader, final TypeFormatters formatters) {
+    this.template = template;
+    for (final FieldTemplate field : template.getFields().values()) {
+      final TypeFormatter<?> formatter = formatters.getFormatter(field.getType(), field.getDimension());
+      decoders[field.getNumber()] = new FieldDecoder(field, formatter, reader);
+    }
+  }
+
+  /** Answer with the template from which this plan was compiled */
+  MessageTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Answer with the decoder for field <code>fieldNb</code>
+   * @param fieldNb field number (2..192)
+   * @return the field's decoder, or null if the field is not defined in the template
+   */
+  FieldDecoder getDecoder(final int fieldNb) {
+    return decoders[fieldNb];
+  }
+
+  /**
+   * Decoder for a single message field, with the reader, dimension and
+   * formatter that apply to it already resolved
+   */
+  static final class FieldDecoder {
+    private final FieldTemplate field;
+    private final int number;
+    private final String type;
+    private final Dimension dimension;
+    private final TypeFormatter<?> formatter;
+    private final MessageReader reader;
+
+    private FieldDecoder(final FieldTemplate field, final TypeFormatter<?> formatter, final MessageReader reader) {
+      this.field = field;
+      this.number = field.getNumber();
+      this.type = field.getType();
+      this.dimension = field.getDimension();
+      this.formatter = formatter;
+      this.reader = reader;
+    }
+
+    FieldTemplate getField() {
+      return field;
+    }
+
+    int getNumber() {
+      return number;
+    }
+
+    /**
+     * Read this field from the input stream and parse its value
+     * @param input stream positioned at the start of this field
+     * @return the parsed field value
+     * @throws IOException      if the field could not be read from the input
+     * @throws MessageException if the field's data could not be parsed, or no formatter
+     *                          is registered for the field's type
+     */
+    Object decode(final DataInputStream input)
+        throws IOException {
+      if (formatter == null) {
+        throw new MessageException("No formatter registered for field type=[" + type + "]: " + field);
+      }
+      final byte[] data = reader.readField(field, input);
+      try {
+        return formatter.parse(type, dimension, data.length, data);
+      } catch (final ParseException e) {
+        throw parseFailure(e);
+      }
+    }
+
+    /**
+     * Read this field from the input buffer and parse its value, passing the formatter
+     * a slice of the input rather than a copy of the field's data
+     * @param input buffer positioned at the start of this field
+     * @return the parsed field value
+     * @throws IOException      if the field could not be read from the input
+     * @throws MessageException if the field's data could not be parsed, or no formatter
+     *                          is registered for the field's type
+     */
+    Object decode(final ByteBuffer input)
+        throws IOException {
+      return parse(frame(input));
+    }
+
+    /**
+     * Read this field's data from the input stream, without parsing its value
+     * @param input stream positioned at the start of this field
+     * @return a buffer holding the field's data
+     * @throws IOException if the field could not be read from the input
+     */
+    ByteBuffer frame(final DataInputStream input)
+        throws IOException {
+      return ByteBuffer.wrap(reader.readField(field, input));
+    }
+
+    /**
+     * Read this field's data from the input buffer, without parsing its value
+     * @param input buffer positioned at the start of this field
+     * @return a slice of the input holding the field's data
+     * @throws IOException if the field could not be read from the input
+     */
+    ByteBuffer frame(final ByteBuffer input)
+        throws IOException {
+      return reader.readField(field, input);
+    }
+
+    /**
+     * Parse this field's value from data previously read with <code>frame</code>
+     * @param data the field's data
+     * @return the parsed field value
+     * @throws MessageException if the field's data could not be parsed, or no formatter
+     *                          is registered for the field's type
+     */
+    Object parse(final ByteBuffer data) {
+      if (formatter == null) {
+        throw new MessageException("No formatter registered for field type=[" + type + "]: " + field);
+      }
+      try {
+        return formatter.parse(type, dimension, data);
+      } catch (final ParseException e) {
+        throw parseFailure(e);
+      }
+    }
+
+    private MessageException parseFailure(final ParseException cause) {
+      final MessageException result = new MessageException("Failed to parse field: " + field.toString());
+      result.initCause(cause);
+      return result;
+    }
+  }
+
+  /**
+   * A field read from a message, but whose value has not yet been parsed: used by lazy
+   * parsing, where the value is only parsed when it is first requested
+   */
+  static final class DeferredField {
+    private final FieldDecoder decoder;
+    private final ByteBuffer data;
+
+    DeferredField(final FieldDecoder decoder, final ByteBuffer data) {
+      this.decoder = decoder;
+      this.data = data;
+    }
+
+    /**
+     * Parse the value of this field
+     * @throws MessageException if the field's data could not be parsed
+     */
+    Object decode() {
+      return decoder.parse(data.duplicate());
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+package org.nulleins.formats.iso8583;
+
+/**
+ * Outcome of parsing one record of a batch: either the message parsed, or the error
+ * that prevented the record from being parsed
+ * @author phillipsr
+ */
+public final class ParseResult {
+  private final int index;
+  private final Message message;
+  private final Exception error;
+
+  ParseResult(final int index, final Message message, final Exception error) {
+    this.index = index;
+    this.message = message;
+    this.error = error;
+  }
+
+  /** Answer with the (zero-based) position of the record in the batch */
+  public int getIndex() {
+    return index;
+  }
+
+  /** Answer with true if the record was parsed successfully */
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /** Answer with the message parsed from the record, or null if it could not be parsed */
+  public Message getMessage() {
+    return message;
+  }
+
+  /** Answer with the error encountered parsing the record, or null if it was parsed successfully */
+  public Exception getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseResult index=" + index + (error == null ? " message=" + message.getMTI() : " error=" + error);
+  }
+
+}
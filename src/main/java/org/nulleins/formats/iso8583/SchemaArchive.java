@@ -0,0 +1,222 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.types.BitmapType;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.ContentType;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Compact, versioned binary form of a message factory's schema, from which a factory can be
+ * created without Spring or the schema's XML definition, e.g., to reduce the start-up time
+ * of short-lived processes
+ * <p/>
+ * The archive holds the factory's properties (header, content, bitmap and charset, etc.), its
+ * message templates and their field templates, and the field types bound to custom formatters,
+ * by the formatters' class names; when read, each custom formatter is instantiated with its
+ * public no-argument constructor, unless an instance is supplied for its type (e.g., if it is a
+ * configured bean). The auto-generator, if required, must be set in the factory read
+ * <p/>
+ * An archive is created from a Spring schema definition with the command-line tool
+ * {@link org.nulleins.formats.iso8583.spring.SchemaArchiver}
+ * @author phillipsr
+ */
+public final class SchemaArchive {
+  /** "ISOS" */
+  private static final int MAGIC = 0x49534f53;
+  private static final int VERSION = 1;
+
+  private SchemaArchive() {
+  }
+
+  /**
+   * Write the schema of the factory supplied to the output stream
+   * @param factory whose schema is archived
+   * @param output  stream to write the archive to (not closed)
+   * @throws IOException if writing to the output stream fails
+   */
+  public static void write(final MessageFactory factory, final OutputStream output)
+      throws IOException {
+    final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+    data.writeInt(MAGIC);
+    data.writeShort(VERSION);
+    writeString(factory.getId(), data);
+    writeString(factory.getDescription(), data);
+    writeString(factory.getHeader(), data);
+    data.writeUTF(factory.getContentType().name());
+    data.writeUTF(factory.getBitmapType().name());
+    data.writeUTF(factory.getCharset().getCharset().name());
+    data.writeBoolean(factory.isStrict());
+    data.writeBoolean(factory.isLazy());
+    data.writeBoolean(factory.isLongNumbers());
+
+    final Map<String, TypeFormatter<?>> formatters = factory.getCustomFormatters();
+    data.writeShort(formatters.size());
+    for (final Map.Entry<String, TypeFormatter<?>> formatter : formatters.entrySet()) {
+      data.writeUTF(formatter.getKey());
+      data.writeUTF(formatter.getValue().getClass().getName());
+    }
+
+    final List<MessageTemplate> messages = new ArrayList<>(factory.getMessages());
+    Collections.sort(messages, new Comparator<MessageTemplate>() {
+      @Override
+      public int compare(final MessageTemplate a, final MessageTemplate b) {
+        return a.getMessageTypeIndicator().compareTo(b.getMessageTypeIndicator());
+      }
+    });
+    data.writeShort(messages.size());
+    for (final MessageTemplate message : messages) {
+      writeMessage(message, data);
+    }
+    data.flush();
+  }
+
+  /**
+   * Create and initialize a message factory from the schema archive read from the input stream
+   * @param input stream to read the archive from (not closed; should be buffered)
+   * @throws IOException if reading from the stream fails, or the stream does not hold a valid archive
+   */
+  public static MessageFactory read(final InputStream input)
+      throws IOException {
+    return read(input, Collections.<String, TypeFormatter<?>>emptyMap());
+  }
+
+  /**
+   * Create and initialize a message factory from the schema archive read from the input stream
+   * @param input      stream to read the archive from (not closed; should be buffered)
+   * @param formatters instances of the custom formatters of the schema, by field type, to
+   *                   be used rather than instantiating their class
+   * @throws IOException           if reading from the stream fails, or the stream does not hold
+   *                               a valid archive
+   * @throws IllegalStateException if a custom formatter class cannot be instantiated
+   */
+  public static MessageFactory read(final InputStream input, final Map<String, TypeFormatter<?>> formatters)
+      throws IOException {
+    final DataInputStream data = new DataInputStream(input);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Stream does not hold an ISO8583 schema archive");
+    }
+    final int version = data.readUnsignedShort();
+    if (version != VERSION) {
+      throw new IOException("Schema archive version " + version + " not supported (expected " + VERSION + ")");
+    }
+    final MessageFactory result = new MessageFactory();
+    result.setId(readString(data));
+    result.setDescription(readString(data));
+    result.setHeader(readString(data));
+    result.setContentType(ContentType.valueOf(data.readUTF()));
+    final BitmapType bitmapType = BitmapType.valueOf(data.readUTF());
+    result.setBitmapType(bitmapType);
+    result.setCharset(new CharEncoder(data.readUTF()));
+    result.setStrict(data.readBoolean());
+    result.setLazy(data.readBoolean());
+    result.setLongNumbers(data.readBoolean());
+
+    for (int count = data.readUnsignedShort(); count > 0; count--) {
+      final String type = data.readUTF();
+      final String className = data.readUTF();
+      final TypeFormatter<?> formatter = formatters.get(type);
+      result.addFormatter(type, formatter != null ? formatter : createFormatter(type, className));
+    }
+
+    for (int count = data.readUnsignedShort(); count > 0; count--) {
+      result.addMessage(readMessage(data, bitmapType));
+    }
+    result.initialize();
+    return result;
+  }
+
+  private static void writeMessage(final MessageTemplate message, final DataOutputStream data)
+      throws IOException {
+    data.writeUTF(message.getType());
+    writeString(message.getId(), data);
+    writeString(message.getName(), data);
+    writeString(message.getHeader(), data);
+    final Map<Integer, FieldTemplate> fields = new TreeMap<>(message.getFields());
+    data.writeShort(fields.size());
+    for (final FieldTemplate field : fields.values()) {
+      data.writeShort(field.getNumber());
+      data.writeUTF(field.getType());
+      final Dimension dimension = field.getDimension();
+      data.writeByte(dimension.getType() == Dimension.Type.FIXED ? 0 : dimension.getVSize());
+      data.writeInt(dimension.getLength());
+      writeString(field.getName(), data);
+      writeString(field.getDescription(), data);
+      writeString(field.getDefaultValue(), data);
+      writeString(field.getAutogen(), data);
+      data.writeBoolean(field.isOptional());
+    }
+  }
+
+  private static MessageTemplate readMessage(final DataInputStream data, final BitmapType bitmapType)
+      throws IOException {
+    final MTI type = MTI.create(data.readUTF());
+    final String id = readString(data);
+    final String name = readString(data);
+    final MessageTemplate result = MessageTemplate.create(readString(data), type, bitmapType);
+    result.setId(id);
+    result.setName(name);
+    for (int count = data.readUnsignedShort(); count > 0; count--) {
+      final int number = data.readUnsignedShort();
+      final String fieldType = data.readUTF();
+      final int vSize = data.readUnsignedByte();
+      final int length = data.readInt();
+      final Dimension dimension = vSize == 0
+          ? new Dimension(Dimension.Type.FIXED, 0, length)
+          : new Dimension(Dimension.Type.VARIABLE, vSize, length);
+      final FieldTemplate field = new FieldTemplate(number, fieldType, dimension, readString(data), readString(data));
+      field.setMessageType(type.toString());
+      field.setDefaultValue(readString(data));
+      field.setAutogen(readString(data));
+      field.setOptional(data.readBoolean());
+      result.addField(field);
+    }
+    return result;
+  }
+
+  /**
+   * @throws IllegalStateException if the formatter class cannot be loaded or instantiated
+   */
+  private static TypeFormatter<?> createFormatter(final String type, final String className) {
+    try {
+      return (TypeFormatter<?>) SchemaArchive.class.getClassLoader().loadClass(className)
+          .getDeclaredConstructor().newInstance();
+    } catch (final InvocationTargetException e) {
+      throw new IllegalStateException(
+          "could not instantiate formatter " + className + " for type: " + type, e.getCause());
+    } catch (final Exception e) {
+      throw new IllegalStateException("could not instantiate formatter " + className + " for type: " + type, e);
+    }
+  }
+
+  /** write a string that may be null */
+  private static void writeString(final String value, final DataOutputStream data)
+      throws IOException {
+    data.writeBoolean(value != null);
+    if (value != null) {
+      data.writeUTF(value);
+    }
+  }
+
+  private static String readString(final DataInputStream data)
+      throws IOException {
+    return data.readBoolean() ? data.readUTF() : null;
+  }
+
+}
@@ -0,0 +1,190 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+
+/**
+ * Summary of the differences between two versions of a message factory's schema, as
+ * answered when the schema is reloaded (see {@link MessageFactory#reload}): the messages
+ * added or removed, and the fields added to, removed from or changed in the messages of
+ * both versions
+ * @author phillipsr
+ */
+public final class SchemaDiff {
+  public enum Kind {
+    ADDED("+"),
+    REMOVED("-"),
+    CHANGED("~");
+
+    private final String symbol;
+
+    private Kind(final String symbol) {
+      this.symbol = symbol;
+    }
+  }
+
+  private final long fromVersion;
+  private final long toVersion;
+  private final List<Change> changes;
+
+  private SchemaDiff(final long fromVersion, final long toVersion, final List<Change> changes) {
+    this.fromVersion = fromVersion;
+    this.toVersion = toVersion;
+    this.changes = Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * Answer with the differences between the message templates of two versions of a schema;
+   * changes are ordered by message type and field number
+   */
+  static SchemaDiff compare(
+      final long fromVersion, final Collection<MessageTemplate> from,
+      final long toVersion, final Collection<MessageTemplate> to) {
+    final Map<MTI, MessageTemplate> previous = byType(from);
+    final Map<MTI, MessageTemplate> next = byType(to);
+    final List<Change> changes = new ArrayList<>();
+    for (final MessageTemplate message : previous.values()) {
+      if (!next.containsKey(message.getMessageTypeIndicator())) {
+        changes.add(new Change(Kind.REMOVED, message.getMessageTypeIndicator(), null, message.toString()));
+      }
+    }
+    for (final MessageTemplate message : next.values()) {
+      final MessageTemplate old = previous.get(message.getMessageTypeIndicator());
+      if (old == null) {
+        changes.add(new Change(Kind.ADDED, message.getMessageTypeIndicator(), null, message.toString()));
+      } else {
+        compareFields(old, message, changes);
+      }
+    }
+    Collections.sort(changes);
+    return new SchemaDiff(fromVersion, toVersion, changes);
+  }
+
+  private static void compareFields(final MessageTemplate from, final MessageTemplate to, final List<Change> changes) {
+    final MTI type = to.getMessageTypeIndicator();
+    for (final FieldTemplate field : from.getFields().values()) {
+      if (!to.getFields().containsKey(field.getNumber())) {
+        changes.add(new Change(Kind.REMOVED, type, field.getNumber(), field.toString()));
+      }
+    }
+    for (final FieldTemplate field : to.getFields().values()) {
+      final FieldTemplate old = from.getFields().get(field.getNumber());
+      if (old == null) {
+        changes.add(new Change(Kind.ADDED, type, field.getNumber(), field.toString()));
+      } else if (!isSame(old, field)) {
+        changes.add(new Change(Kind.CHANGED, type, field.getNumber(), old + " -> " + field));
+      }
+    }
+  }
+
+  /** are the definitions of the fields the same (ignoring their descriptions)? */
+  private static boolean isSame(final FieldTemplate a, final FieldTemplate b) {
+    return Objects.equals(a.getType(), b.getType())
+        && Objects.equals(a.getDimension(), b.getDimension())
+        && Objects.equals(a.getName(), b.getName())
+        && Objects.equals(a.getDefaultValue(), b.getDefaultValue())
+        && Objects.equals(a.getAutogen(), b.getAutogen())
+        && a.isOptional() == b.isOptional();
+  }
+
+  private static Map<MTI, MessageTemplate> byType(final Collection<MessageTemplate> templates) {
+    final Map<MTI, MessageTemplate> result = new TreeMap<>();
+    for (final MessageTemplate template : templates) {
+      result.put(template.getMessageTypeIndicator(), template);
+    }
+    return result;
+  }
+
+  /** Answer with the version of the schema replaced */
+  public long getFromVersion() {
+    return fromVersion;
+  }
+
+  /** Answer with the version of the new schema */
+  public long getToVersion() {
+    return toVersion;
+  }
+
+  /** Answer with the changes between the versions, ordered by message type and field number */
+  public List<Change> getChanges() {
+    return changes;
+  }
+
+  /** Answer with true if the message templates of the versions are the same */
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  /**
+   * Answer with a summary of the differences, one line per change, e.g.,
+   * <pre>+ 0200 field 90: Field nb=90 name=originalData type=xn dim=VAR3 (  4)</pre>
+   */
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder("Schema version ")
+        .append(fromVersion).append(" -> ").append(toVersion).append(": ")
+        .append(changes.isEmpty() ? "no changes" : changes.size() + " change(s)");
+    for (final Change change : changes) {
+      result.append('\n').append(change);
+    }
+    return result.toString();
+  }
+
+  /** A message or field added, removed or changed */
+  public static final class Change
+      implements Comparable<Change> {
+    private final Kind kind;
+    private final MTI type;
+    private final Integer field;
+    private final String detail;
+
+    private Change(final Kind kind, final MTI type, final Integer field, final String detail) {
+      this.kind = kind;
+      this.type = type;
+      this.field = field;
+      this.detail = detail;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    /** Answer with the type of the message added, removed or changed */
+    public MTI getType() {
+      return type;
+    }
+
+    /** Answer with the number of the field added, removed or changed, or null if a message was */
+    public Integer getField() {
+      return field;
+    }
+
+    /** Answer with a description of the change */
+    public String getDetail() {
+      return detail;
+    }
+
+    @Override
+    public int compareTo(final Change other) {
+      final int result = type.compareTo(other.type);
+      if (result != 0) {
+        return result;
+      }
+      return Integer.compare(field != null ? field : 0, other.field != null ? other.field : 0);
+    }
+
+    @Override
+    public String toString() {
+      return kind.symbol + " " + type + (field != null ? " field " + field : "") + ": " + detail;
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatterAdapter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatters;
+import org.nulleins.formats.iso8583.io.MessageWriter;
+import org.nulleins.formats.iso8583.types.BitmapType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Compiled, immutable form of a message template used to write messages: the
+ * fields are sorted into output order with their formatters resolved, and the
+ * constant start of the message (header, MTI and bitmap) is pre-encoded in the
+ * factory's content type, bitmap type and charset
+ * @author phillipsr
+ */
+final class WritePlan {
+  private final MessageTemplate template;
+  private final MessageWriter writer;
+  /** header, MTI and bitmap, as written for every message of this type */
+  private final byte[] preamble;
+  /** field encoders, in field number order */
+  private final FieldEncoder[] encoders;
+
+  /**
+   * Compile the supplied message template into a write plan
+   * @param template   message template to compile
+   * @param header     text header to prepend to messages (may be null or empty)
+   * @param writer     strategy used to write fields for the factory's content type
+   * @param bitmapType type of bitmap to be written
+   * @param formatters registry from which the field formatters are bound
+   * @throws MessageException if the message preamble could not be encoded
+   */
+  WritePlan(
+      final MessageTemplate template, final String header, final MessageWriter writer,
+      final BitmapType bitmapType, final TypeFormatters formatters) {
+    this.template = template;
+    this.writer = writer;
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      if (header != null) {
+        writer.appendHeader(header, output);
+      }
+      writer.appendMTI(template.getMessageTypeIndicator(), output);
+      writer.appendBitmap(template.getBitmap(), bitmapType, output);
+    } catch (final IOException e) {
+      throw new MessageException("Failed to encode message preamble for " + template, e);
+    }
+    preamble = output.toByteArray();
+
+    final Map<Integer, FieldTemplate> fields = new TreeMap<>(template.getFields());
+    encoders = new FieldEncoder[fields.size()];
+    int index = 0;
+    for (final FieldTemplate field : fields.values()) {
+      encoders[index++] = new FieldEncoder(field, formatters.getFormatter(field.getType(), field.getDimension()));
+    }
+  }
+
+  /** Answer with the template from which this plan was compiled */
+  MessageTemplate getTemplate() {
+    return template;
+  }
+
+  /**
+   * Write a message of this plan's type to the <code>output</code> buffer, at its position
+   * @param params        map of field # to field value (maybe updated if autogen or default required)
+   * @param output        buffer to write formatted ISO8583 message into
+   * @param autoGenerator to generate field values with an 'autogen' specification (may be null)
+   * @throws IOException                      if a field could not be encoded
+   * @throws MessageException                 if a required field has no value, and none can be
+   *                                          generated or defaulted
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  void write(final Map<Integer, Object> params, final ByteBuffer output, final AutoGeneratorFactory autoGenerator)
+      throws IOException {
+    output.put(preamble);
+    for (final FieldEncoder encoder : encoders) {
+      final Object data = getValue(encoder.field, params, autoGenerator);
+      if (data != null) {
+        writer.appendField(encoder.field, encoder.bufferFormatter, data, output);
+      }
+    }
+  }
+
+  /**
+   * Write a message of this plan's type to the <code>output</code> buffer, at its position,
+   * taking the field values from the source supplied rather than a map
+   * @param source        of the field values (updated if autogen or default required)
+   * @param output        buffer to write formatted ISO8583 message into
+   * @param autoGenerator to generate field values with an 'autogen' specification (may be null)
+   * @throws IOException                      if a field could not be encoded
+   * @throws MessageException                 if a required field has no value, and none can be
+   *                                          generated or defaulted
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  void write(final FieldSource source, final ByteBuffer output, final AutoGeneratorFactory autoGenerator)
+      throws IOException {
+    output.put(preamble);
+    for (final FieldEncoder encoder : encoders) {
+      Object data = source.get(encoder.field.getNumber());
+      if (data == null && !encoder.field.isOptional()) {
+        data = generate(encoder.field, autoGenerator);
+        source.put(encoder.field.getNumber(), data);
+      }
+      if (data != null) {
+        writer.appendField(encoder.field, encoder.bufferFormatter, data, output);
+      }
+    }
+  }
+
+  /**
+   * Answer with the value to be written for the field: that in the parameters, or if none,
+   * and the field is not optional, an auto-generated or default value, which is written back
+   * into the parameters for consistency
+   * @throws MessageException if a required field has no value, and none can be generated or defaulted
+   */
+  private static Object getValue(
+      final FieldTemplate field, final Map<Integer, Object> params, final AutoGeneratorFactory autoGenerator) {
+    // a message's own field values can be accessed without boxing the field numbers
+    final FieldValues fieldValues = params instanceof FieldValues ? (FieldValues) params : null;
+    Object data = fieldValues != null ? fieldValues.get(field.getNumber()) : params.get(field.getNumber());
+    if (data == null && field.isOptional() == false) {
+      data = generate(field, autoGenerator);
+      if (fieldValues != null) {
+        fieldValues.put(field.getNumber(), data);
+      } else {
+        params.put(field.getNumber(), data);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Answer with the value of a required field for which no value was supplied: first, try
+   * to autogen, and then fall back to default (if any)
+   * @throws MessageException if no value can be generated or defaulted
+   */
+  private static Object generate(final FieldTemplate field, final AutoGeneratorFactory autoGenerator) {
+    Object data = null;
+    final String autogen = field.getAutogen();
+    if (autogen != null && !autogen.isEmpty()) {
+      if (autoGenerator == null) {
+        throw new IllegalStateException(
+            "Message requires AutoGen field, but the (optional) AutoGenerator has not been set in the MessageFactory");
+      }
+      data = autoGenerator.generate(autogen, field);
+    }
+    if (data == null) {
+      data = field.getDefaultValue();
+    }
+    if (data == null) {
+      throw new MessageException("Value is <null> for field: " + field);
+    }
+    return data;
+  }
+
+  /** Source of the field values of a message written other than from a map of values */
+  interface FieldSource {
+    /** Answer with the value of field <code>number</code>, or null if it has no value */
+    Object get(int number);
+
+    /** Record the value generated or defaulted for field <code>number</code>, which had no value */
+    void put(int number, Object value);
+  }
+
+  /** A message field with the formatter for its type already resolved, as a buffer formatter */
+  private static final class FieldEncoder {
+    private final FieldTemplate field;
+    private final BufferFormatter bufferFormatter;
+
+    private FieldEncoder(final FieldTemplate field, final TypeFormatter<?> formatter) {
+      this.field = field;
+      this.bufferFormatter = TypeFormatterAdapter.adapt(formatter);
+    }
+  }
+
+}
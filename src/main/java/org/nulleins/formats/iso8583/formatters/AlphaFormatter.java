@@ -5,21 +5,50 @@ import org.nulleins.formats.iso8583.MessageException;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 
 /**
  * Formatter that can format and parse alpha field values
  * (includes alphanumeric, alpha+symbol, etc., e.g., non-numeric fields)
+ * <p/>
+ * The characters valid for each type are held as a {@link CharMask}, selected when the schema
+ * is compiled (see {@link #forField}), otherwise per value; in a single-byte charset, parsed
+ * data is trimmed and validated directly on the field's bytes
  * @author phillipsr
  */
-public class AlphaFormatter extends TypeFormatter<String> {
+public class AlphaFormatter extends TypeFormatter<String>
+    implements BufferFormatter {
+  /** space, as encoded by <code>String.getBytes()</code> */
+  private static final byte Space = " ".getBytes()[0];
+  /** character set of the field this formatter is bound to, or null if not bound to a field */
+  private final CharMask mask;
+
   public AlphaFormatter(final CharEncoder charset) {
+    this(charset, null);
+  }
+
+  private AlphaFormatter(final CharEncoder charset, final CharMask mask) {
     setCharset(charset);
+    this.mask = mask;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Unless sub-classed, answers with a formatter bound to
+   * the character set of the field's type
+   */
+  @Override
+  public TypeFormatter<String> forField(final String type, final Dimension dimension) {
+    final CharMask fieldMask = Validators.get(type);
+    if (getClass() != AlphaFormatter.class || fieldMask == null || fieldMask == mask) {
+      return this;
+    }
+    return new AlphaFormatter(getCharset(), fieldMask);
   }
 
   /**
@@ -40,7 +69,41 @@ public class AlphaFormatter extends TypeFormatter<String> {
       rethrow.initCause(e);
       throw rethrow;
     }
+    return checkParsed(type, dimension, position, result);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Decodes the field directly from the buffer supplied
+   */
+  @Override
+  public String parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final CharEncoder charset = getCharset();
+    final CharMask validator = getMask(type);
+    if (!charset.isSingleByte() || validator == null) {
+      return checkParsed(type, dimension, data.remaining(), decode(data).trim());
+    }
+    // trim the field's bytes, as String.trim() would the decoded value
+    int start = data.position();
+    int end = data.limit();
+    while (start < end && charset.decode(data.get(start)) <= ' ') {
+      start++;
+    }
+    while (end > start && charset.decode(data.get(end - 1)) <= ' ') {
+      end--;
+    }
+    final ByteBuffer value = data.duplicate();
+    value.limit(end).position(start);
+    if (!validator.matches(charset, data, start, end)) {
+      throw new ParseException("Invalid data parsed for field (" + type + ") value=["
+          + charset.getString(value) + "]", data.remaining());
+    }
+    return charset.getString(value);
+  }
 
+  private String checkParsed(final String type, final Dimension dimension, final int position, final String result)
+      throws ParseException {
     if (!isValid(result, type, dimension)) {
       throw new ParseException("Invalid data parsed for field (" + type + ") value=[" + result + "]", position);
     }
@@ -52,6 +115,38 @@ public class AlphaFormatter extends TypeFormatter<String> {
    */
   @Override
   public byte[] format(final String type, final Object data, final Dimension dimension) {
+    final String value = getValue(type, data, dimension);
+    final byte[] text = value.getBytes();
+    if (dimension.getType() == Dimension.Type.FIXED) {
+      // for fixed width fields, pad right with spaces
+      final byte[] result = Arrays.copyOf(text, text.length + dimension.getLength() - value.length());
+      Arrays.fill(result, text.length, result.length, Space);
+      return result;
+    }
+    return text;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Fixed width fields are padded right with spaces
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    final String value = getValue(type, data, dimension);
+    int result = charset.encode(value, output);
+    if (dimension.getType() == Dimension.Type.FIXED) {
+      result += charset.fill(' ', dimension.getLength() - value.length(), output);
+    }
+    return result;
+  }
+
+  /**
+   * Answer with the text of the value to be formatted, having checked it is valid for the field
+   * @throws IllegalArgumentException if the data is null or invalid as an alpha string
+   * @throws MessageException         if the data exceeds the field's maximum length
+   */
+  private String getValue(final String type, final Object data, final Dimension dimension) {
     if (data == null) {
       throw new IllegalArgumentException("Alpha values cannot be null");
     }
@@ -63,41 +158,42 @@ public class AlphaFormatter extends TypeFormatter<String> {
     }
 
     if (dimension.getType() == Dimension.Type.FIXED) {
-      final int length = dimension.getLength();
-      if (value.length() > length) {
+      if (value.length() > dimension.getLength()) {
         throw new MessageException("Fixed field data length ("
             + value.length() + ") exceeds field maximum (" + dimension.getLength() + "): data=[" + value + "]");
       }
-      // for fixed width fields, pad right with spaces
-      return String.format("%-" + length + "." + length + "s", value).getBytes();
-    }
-    // Variable field: dim length is the maximum length:
-    if (value.length() > dimension.getLength()) {
+    } else if (value.length() > dimension.getLength()) {
+      // Variable field: dim length is the maximum length:
       throw new MessageException("Variable field data length ("
           + value.length() + ") exceeds field maximum (" + dimension.getLength() + ")");
     }
-    return value.getBytes();
+    return value;
   }
 
-  /* set of pattern matchers for the various alpha-based type fields */
-  private static final Map<String, Pattern> Validators = new HashMap<String, Pattern>(3) {{
-    put(FieldType.ALPHA, Pattern.compile("[a-zA-Z]*"));      // zero or more alphabetic
-    put(FieldType.ALPHANUM, Pattern.compile("[a-zA-Z0-9]*"));   // zero or more alphabetic or digit
-    put(FieldType.ALPHANUMPAD, Pattern.compile("[a-zA-Z 0-9]*"));  // zero or more alphabetic, digit or space
-    put(FieldType.ALPHASYMBOL, Pattern.compile("[ -~&&[^0-9]]*")); // zero or more alphabetic or symbol
-    put(FieldType.ALPHANUMSYMBOL, Pattern.compile("[ -~]*"));      // zero or more any character
-    put(FieldType.NUMSYMBOL, Pattern.compile("[ -~&&[^a-zA-Z]]*")); // zero or more symbol
-    put(FieldType.TRACKDATA, Pattern.compile("[ -~]*"));        // zero or more any character
+  /* set of character sets valid for the various alpha-based type fields */
+  private static final Map<String, CharMask> Validators = new HashMap<String, CharMask>(8) {{
+    put(FieldType.ALPHA, CharMask.LETTERS);                                          // alphabetic
+    put(FieldType.ALPHANUM, CharMask.LETTERS.or(CharMask.DIGITS));                   // alphabetic or digit
+    put(FieldType.ALPHANUMPAD, CharMask.LETTERS.or(CharMask.DIGITS).or(CharMask.SPACE)); // alphabetic, digit or space
+    put(FieldType.ALPHASYMBOL, CharMask.PRINTABLE.minus(CharMask.DIGITS));           // alphabetic or symbol
+    put(FieldType.ALPHANUMSYMBOL, CharMask.PRINTABLE);                               // any character
+    put(FieldType.NUMSYMBOL, CharMask.PRINTABLE.minus(CharMask.LETTERS));            // symbol
+    put(FieldType.TRACKDATA, CharMask.PRINTABLE);                                    // any character
   }};
 
+  /** Answer with the character set bound to this formatter, or that for the type supplied */
+  private CharMask getMask(final String type) {
+    return mask != null ? mask : Validators.get(type);
+  }
+
   /**
    * {@inheritDoc}
-   * <p/>checks the string representation of <code>value</code> against the
-   * pattern matcher for the supplied <code>type</code>
+   * <p/>checks that the characters of the string representation of <code>value</code>
+   * (ignoring leading and trailing whitespace) are all valid for the supplied <code>type</code>
    */
   @Override
   public boolean isValid(final Object value, final String type, final Dimension dim) {
-    return value != null && Validators.get(type).matcher(value.toString().trim()).matches();
+    return value != null && getMask(type).matchesTrimmed(value.toString());
   }
 
 }
@@ -0,0 +1,36 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Formatter that writes the formatted value of a field directly into a message buffer, already
+ * encoded in the message's charset, rather than answering the (platform-encoded) byte array
+ * of {@link TypeFormatter#format(String, Object, Dimension)}
+ * <p/>
+ * The standard formatters implement this interface; any other <code>TypeFormatter</code> can be
+ * used where a buffer formatter is required through a {@link TypeFormatterAdapter}
+ * @author phillipsr
+ */
+public interface BufferFormatter {
+
+  /**
+   * Write the value supplied, formatted according to the field type and dimension specified,
+   * into the output buffer at its position, advancing the position past the bytes written
+   * @param type      variant of the type specified for the field
+   * @param data      the object to be formatted
+   * @param dimension specifies if fixed or variable and the required size
+   * @param charset   in which the formatted text is to be encoded
+   * @param output    buffer to receive the formatted value
+   * @return the number of bytes written
+   * @throws IllegalArgumentException         if the data is null or invalid for the field type
+   * @throws org.nulleins.formats.iso8583.MessageException if the data supplied results in the maximum
+   *                                          field length being exceeded
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  int format(String type, Object data, Dimension dimension, CharEncoder charset, ByteBuffer output);
+
+}
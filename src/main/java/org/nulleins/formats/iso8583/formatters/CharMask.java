@@ -0,0 +1,96 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.nulleins.formats.iso8583.types.CharEncoder;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A set of (7-bit ASCII) characters, held as a 128-bit mask, used to validate the characters
+ * of alpha field values in a single pass, without a regular expression
+ * @author phillipsr
+ */
+final class CharMask {
+  /** printable characters: space to tilde */
+  static final CharMask PRINTABLE = range(' ', '~');
+  static final CharMask DIGITS = range('0', '9');
+  static final CharMask LETTERS = range('a', 'z').or(range('A', 'Z'));
+  static final CharMask SPACE = range(' ', ' ');
+
+  /** bits 0-63 and 64-127: bit (c % 64) is set if character c is in the set */
+  private final long low;
+  private final long high;
+
+  private CharMask(final long low, final long high) {
+    this.low = low;
+    this.high = high;
+  }
+
+  /** Answer with the set of characters from <code>first</code> to <code>last</code> inclusive */
+  static CharMask range(final char first, final char last) {
+    long low = 0;
+    long high = 0;
+    for (char c = first; c <= last; c++) {
+      if (c < 64) {
+        low |= 1L << c;
+      } else {
+        high |= 1L << c;
+      }
+    }
+    return new CharMask(low, high);
+  }
+
+  /** Answer with the union of this set and the one supplied */
+  CharMask or(final CharMask other) {
+    return new CharMask(low | other.low, high | other.high);
+  }
+
+  /** Answer with the characters of this set not in the one supplied */
+  CharMask minus(final CharMask other) {
+    return new CharMask(low & ~other.low, high & ~other.high);
+  }
+
+  /** is the character supplied in this set? */
+  boolean contains(final char c) {
+    if (c < 64) {
+      return (low & (1L << c)) != 0;
+    }
+    return c < 128 && (high & (1L << c)) != 0;
+  }
+
+  /**
+   * Are all of the characters of the text supplied in this set, once leading and trailing
+   * whitespace (as defined by <code>String.trim()</code>) is ignored?
+   */
+  boolean matchesTrimmed(final CharSequence text) {
+    int start = 0;
+    int end = text.length();
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    for (int i = start; i < end; i++) {
+      if (!contains(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Are all of the characters encoded by the bytes of the buffer between the absolute indexes
+   * <code>from</code> (inclusive) and <code>to</code> (exclusive) in this set?
+   * @param charset single-byte encoding of the characters
+   */
+  boolean matches(final CharEncoder charset, final ByteBuffer data, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (!contains(charset.decode(data.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
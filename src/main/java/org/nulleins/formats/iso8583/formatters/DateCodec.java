@@ -0,0 +1,164 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.FieldType;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Decoders and encoders for the fixed-width ISO8583 date formats, working directly on the
+ * digits of the field data (in a single-byte charset), rather than on a decoded String
+ * <p/>
+ * The values produced are the same as those of the corresponding Joda pattern: fields
+ * omitted from the format take their default value (year 2000, day 1, midnight) in the
+ * default time zone, and two-digit years are resolved as by Joda's <code>yy</code> pattern
+ * @author phillipsr
+ */
+enum DateCodec {
+  /** transmission date and time: MMddHHmmss */
+  MONTH_DAY_TIME(10) {
+    @Override
+    DateTime decode(final CharEncoder charset, final ByteBuffer data, final int index) {
+      final int month = digits(charset, data, index, 2);
+      final int day = digits(charset, data, index + 2, 2);
+      final int hour = digits(charset, data, index + 4, 2);
+      final int minute = digits(charset, data, index + 6, 2);
+      final int second = digits(charset, data, index + 8, 2);
+      if ((month | day | hour | minute | second) < 0) {
+        return null;
+      }
+      return new DateTime(DEFAULT_YEAR, month, day, hour, minute, second, 0);
+    }
+
+    @Override
+    void encode(final DateTime value, final CharEncoder charset, final ByteBuffer output) {
+      put(value.getMonthOfYear(), charset, output);
+      put(value.getDayOfMonth(), charset, output);
+      put(value.getHourOfDay(), charset, output);
+      put(value.getMinuteOfHour(), charset, output);
+      put(value.getSecondOfMinute(), charset, output);
+    }
+  },
+  /** local transaction date: MMdd */
+  MONTH_DAY(4) {
+    @Override
+    DateTime decode(final CharEncoder charset, final ByteBuffer data, final int index) {
+      final int month = digits(charset, data, index, 2);
+      final int day = digits(charset, data, index + 2, 2);
+      if ((month | day) < 0) {
+        return null;
+      }
+      return new DateTime(DEFAULT_YEAR, month, day, 0, 0, 0, 0);
+    }
+
+    @Override
+    void encode(final DateTime value, final CharEncoder charset, final ByteBuffer output) {
+      put(value.getMonthOfYear(), charset, output);
+      put(value.getDayOfMonth(), charset, output);
+    }
+  },
+  /** expiry date: yyMM */
+  YEAR_MONTH(4) {
+    @Override
+    DateTime decode(final CharEncoder charset, final ByteBuffer data, final int index) {
+      final int year = digits(charset, data, index, 2);
+      final int month = digits(charset, data, index + 2, 2);
+      if ((year | month) < 0) {
+        return null;
+      }
+      return new DateTime(TwoDigitYears[year], month, 1, 0, 0, 0, 0);
+    }
+
+    @Override
+    void encode(final DateTime value, final CharEncoder charset, final ByteBuffer output) {
+      put(Math.abs(value.getYear()) % 100, charset, output);
+      put(value.getMonthOfYear(), charset, output);
+    }
+  };
+
+  /** year of a date whose format does not specify the year */
+  private static final int DEFAULT_YEAR = 2000;
+  /**
+   * the year represented by each two-digit year, resolved once by Joda, so as to match its
+   * pivot year (set when the pattern is created)
+   */
+  private static final int[] TwoDigitYears = new int[100];
+
+  static {
+    final org.joda.time.format.DateTimeFormatter formatter = DateTimeFormat.forPattern("yyMM");
+    for (int year = 0; year < 100; year++) {
+      TwoDigitYears[year] = formatter.parseDateTime(String.format("%02d01", year)).getYear();
+    }
+  }
+
+  private final int length;
+
+  private DateCodec(final int length) {
+    this.length = length;
+  }
+
+  /** Answer with the number of digits in this date format */
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Answer with the date held in this format in the buffer, starting at absolute index
+   * <code>index</code>; the buffer's position is not changed
+   * @param charset single-byte encoding of the digits
+   * @return the date, or null if the data is not all digits
+   * @throws org.joda.time.IllegalFieldValueException if a field of the date is out of range
+   */
+  abstract DateTime decode(CharEncoder charset, ByteBuffer data, int index);
+
+  /**
+   * Write the date in this format into the output buffer, at its position
+   * @param charset single-byte encoding of the digits
+   * @throws BufferOverflowException if there is insufficient space in the buffer
+   */
+  abstract void encode(DateTime value, CharEncoder charset, ByteBuffer output);
+
+  /**
+   * Answer with the codec for a date field of the type and length supplied
+   * @return the codec, or null if there is no date format for the type and length
+   */
+  static DateCodec select(final String type, final int length) {
+    if (FieldType.DATE.equals(type)) {
+      return length == 10 ? MONTH_DAY_TIME : length == 4 ? MONTH_DAY : null;
+    }
+    if (FieldType.EXDATE.equals(type)) {
+      return length == 4 ? YEAR_MONTH : null;
+    }
+    return null;
+  }
+
+  /**
+   * Answer with the value of the <code>count</code> digits in the buffer at absolute index
+   * <code>index</code>, or -1 if any is not a digit
+   */
+  static int digits(final CharEncoder charset, final ByteBuffer data, final int index, final int count) {
+    int result = 0;
+    for (int i = index; i < index + count; i++) {
+      final int digit = charset.decode(data.get(i)) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  /** Write the (0-99) value supplied as two digits into the output buffer */
+  static void put(final int value, final CharEncoder charset, final ByteBuffer output) {
+    if (output.remaining() < 2) {
+      throw new BufferOverflowException();
+    }
+    output.put(charset.encode((char) ('0' + value / 10)));
+    output.put(charset.encode((char) ('0' + value % 10)));
+  }
+
+}
@@ -7,6 +7,7 @@ import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
@@ -14,10 +15,15 @@ import java.util.Map;
 
 /**
  * Formatter that can format and parse ISO8583 date field formats
+ * <p/>
+ * Where the charset is a single-byte encoding, dates are parsed and formatted by a
+ * {@link DateCodec} working directly on the digits of the field data; the codec for a field
+ * is selected when the schema is compiled (see {@link #forField}), otherwise per value
  * @author phillipsr
  */
 public class DateFormatter
-    extends TypeFormatter<DateTime> {
+    extends TypeFormatter<DateTime>
+    implements BufferFormatter {
   private final static Map<String, DateTimeFormatter> Formatters
       = new HashMap<String, DateTimeFormatter>(3) {{
     put(FieldType.DATE + ":10", DateTimeFormat.forPattern("MMddHHmmss"));
@@ -25,8 +31,31 @@ public class DateFormatter
     put(FieldType.EXDATE + ":4", DateTimeFormat.forPattern("yyMM"));
   }};
 
+  /** codec for the field this formatter is bound to, or null if not bound to a field */
+  private final DateCodec codec;
+
   public DateFormatter(final CharEncoder charset) {
+    this(charset, null);
+  }
+
+  private DateFormatter(final CharEncoder charset, final DateCodec codec) {
     setCharset(charset);
+    this.codec = codec;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Unless sub-classed, answers with a formatter bound to
+   * the date codec for the field's format
+   */
+  @Override
+  public TypeFormatter<DateTime> forField(final String type, final Dimension dimension) {
+    final DateCodec fieldCodec = dimension.getType() == Dimension.Type.FIXED
+        ? DateCodec.select(type, dimension.getLength()) : null;
+    if (getClass() != DateFormatter.class || fieldCodec == null || fieldCodec == codec) {
+      return this;
+    }
+    return new DateFormatter(getCharset(), fieldCodec);
   }
 
   /**
@@ -36,6 +65,10 @@ public class DateFormatter
   @Override
   public DateTime parse(final String type, final Dimension dim, final int length, final byte[] data)
       throws ParseException {
+    final DateTime result = decodeDate(type, ByteBuffer.wrap(data));
+    if (result != null) {
+      return result;
+    }
     final DateTimeFormatter formatter = Formatters.get(type + ":" + length);
     if (formatter == null) {
       throw new ParseException("Formatter not found for date field, type=("
@@ -52,12 +85,69 @@ public class DateFormatter
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>Decodes the date directly from the buffer supplied
+   * @throws ParseException if the supplied data cannot be parsed as a date value
+   */
+  @Override
+  public DateTime parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final DateTime result = decodeDate(type, data);
+    if (result != null) {
+      return result;
+    }
+    return super.parse(type, dimension, data);
+  }
+
+  /**
+   * Answer with the date decoded from the remaining content of the buffer by the date codec
+   * @return the date, or null if the data cannot be decoded by a codec (and must be parsed
+   * as text, which reports the error if the data is invalid)
+   */
+  private DateTime decodeDate(final String type, final ByteBuffer data) {
+    final CharEncoder charset = getCharset();
+    final DateCodec dateCodec = codec != null ? codec : DateCodec.select(type, data.remaining());
+    if (dateCodec == null || dateCodec.getLength() != data.remaining() || !charset.isSingleByte()) {
+      return null;
+    }
+    try {
+      return dateCodec.decode(charset, data, data.position());
+    } catch (final IllegalArgumentException e) {
+      return null; // field value out of range
+    }
+  }
+
   /**
    * {@inheritDoc}
    * @throws IllegalArgumentException if the data is null or not a valid date value
    */
   @Override
   public byte[] format(final String type, final Object data, final Dimension dimension) {
+    return getText(type, data, dimension).getBytes();
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if the data is null or not a valid date value
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    final DateCodec dateCodec = codec != null ? codec : DateCodec.select(type, dimension.getLength());
+    if (dateCodec == null || data == null || !charset.isSingleByte()) {
+      return charset.encode(getText(type, data, dimension), output);
+    }
+    final DateTime dateTime = getDateValue(data);
+    if (dateTime == null) {
+      throw new IllegalArgumentException("Invalid data [" + data
+          + "] expected Date, got a " + data.getClass().getCanonicalName());
+    }
+    dateCodec.encode(dateTime, charset, output);
+    return dateCodec.getLength();
+  }
+
+  private String getText(final String type, final Object data, final Dimension dimension) {
     if (data == null) {
       throw new IllegalArgumentException("Date value cannot be null");
     }
@@ -66,7 +156,7 @@ public class DateFormatter
       throw new IllegalArgumentException("Invalid data [" + data
           + "] expected Date, got a " + data.getClass().getCanonicalName());
     }
-    return Formatters.get(type + ":" + dimension.getLength()).print(dateTime).getBytes();
+    return Formatters.get(type + ":" + dimension.getLength()).print(dateTime);
   }
 
   public static DateTime getDateValue(final Object data) {
@@ -0,0 +1,93 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.FieldType;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+
+
+/**
+ * Formatter for ISO8583 numeric formats, signed or unsigned, that answers the values of fields
+ * of up to 18 digits as <code>Long</code>s, rather than as <code>BigInteger</code>s
+ * <p/>
+ * Fields whose dimension allows more than 18 digits are parsed as BigIntegers; formatting
+ * accepts either, and is delegated to the standard {@link NumberFormatter}
+ * @author phillipsr
+ */
+public class LongNumberFormatter
+    extends TypeFormatter<Number>
+    implements BufferFormatter {
+  private final NumberFormatter numberFormatter;
+
+  public LongNumberFormatter(final CharEncoder charset) {
+    setCharset(charset);
+    numberFormatter = new NumberFormatter(charset);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void setCharset(final CharEncoder charset) {
+    super.setCharset(charset);
+    if (numberFormatter != null) {
+      numberFormatter.setCharset(charset);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Number parse(final String type, final Dimension dimension, final int length, final byte[] data)
+      throws ParseException {
+    return parse(type, dimension, ByteBuffer.wrap(data));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Answers with a Long if the field can hold no more than 18 digits, otherwise a BigInteger
+   */
+  @Override
+  public Number parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final boolean signed = FieldType.NUMSIGNED.equalsIgnoreCase(type);
+    if (dimension.getLength() - (signed ? 1 : 0) > NumberFormatter.MAX_LONG_DIGITS) {
+      return numberFormatter.parse(type, dimension, data);
+    }
+    final long result = numberFormatter.parseLong(signed, data);
+    if (result != NumberFormatter.INVALID_LONG) {
+      return result;
+    }
+    // not plain digits in a single-byte charset: parse as text, which fits a long
+    return numberFormatter.parse(type, dimension, data).longValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public byte[] format(final String type, final Object data, final Dimension dimension) {
+    return numberFormatter.format(type, data, dimension);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    return numberFormatter.format(type, data, dimension, charset, output);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isValid(final Object value, final String type, final Dimension dimension) {
+    return numberFormatter.isValid(value, type, dimension);
+  }
+
+}
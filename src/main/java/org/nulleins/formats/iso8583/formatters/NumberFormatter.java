@@ -6,18 +6,27 @@ import org.nulleins.formats.iso8583.types.FieldType;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Arrays;
-import java.util.regex.Pattern;
 
 
 /**
  * Formatter that can format and parse ISO8583 numeric formats, signed or unsigned
+ * <p/>
+ * Where the charset is a single-byte encoding, values of up to 18 digits (that fit in a
+ * <code>long</code>) are parsed directly from the field data and formatted directly into the
+ * output buffer, without an intermediate String or BigInteger
  * @author phillipsr
  */
 public class NumberFormatter
-    extends TypeFormatter<BigInteger> {
-  private static final Pattern NumberMatcher = Pattern.compile("[-0-9]+");
+    extends TypeFormatter<BigInteger>
+    implements BufferFormatter {
+  /** maximum number of digits that can always be held in a long */
+  static final int MAX_LONG_DIGITS = 18;
+  /** value answered by <code>parseLong</code> when the data cannot be parsed as a long */
+  static final long INVALID_LONG = Long.MIN_VALUE;
 
   public NumberFormatter(final CharEncoder charset) {
     setCharset(charset);
@@ -40,6 +49,68 @@ public class NumberFormatter
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>Decodes unsigned numeric fields directly from the buffer supplied
+   */
+  @Override
+  public BigInteger parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final boolean signed = FieldType.NUMSIGNED.equalsIgnoreCase(type);
+    final long value = parseLong(signed, data);
+    if (value != INVALID_LONG) {
+      return BigInteger.valueOf(value);
+    }
+    if (signed) {
+      return super.parse(type, dimension, data);
+    }
+    return parseText(type, data);
+  }
+
+  /**
+   * Answer with the value of the field data held in the remaining content of the buffer, parsed
+   * directly from the bytes, if it is a sign (for a signed field) followed by 1-18 digits in a
+   * single-byte charset; the buffer's position is not changed
+   * @return the value parsed, or <code>INVALID_LONG</code> if the data cannot be parsed by
+   * this method (and must be parsed as text)
+   */
+  long parseLong(final boolean signed, final ByteBuffer data) {
+    final CharEncoder charset = getCharset();
+    int index = data.position();
+    final int digits = data.remaining() - (signed ? 1 : 0);
+    if (digits < 1 || digits > MAX_LONG_DIGITS || !charset.isSingleByte()) {
+      return INVALID_LONG;
+    }
+    boolean negative = false;
+    if (signed) {
+      final char sign = charset.decode(data.get(index++));
+      if (sign != 'C' && sign != 'c' && sign != 'D' && sign != 'd') {
+        return INVALID_LONG;
+      }
+      negative = sign == 'D' || sign == 'd';
+    }
+    long result = 0;
+    for (; index < data.limit(); index++) {
+      final int digit = charset.decode(data.get(index)) - '0';
+      if (digit < 0 || digit > 9) {
+        return INVALID_LONG;
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
+  private BigInteger parseText(final String type, final ByteBuffer data)
+      throws ParseException {
+    final String value = decode(data);
+    try {
+      return new BigInteger(value);
+    } catch (final Exception e) {
+      throw new ParseException("Bad number format " + e.getMessage()
+          + " for type=" + type + " [" + value + "]", data.remaining());
+    }
+  }
+
   private BigInteger parseXNField(final String type, final int length, final byte[] data)
       throws ParseException {
     final String sign = decode(Arrays.copyOfRange(data, 0, 1));
@@ -62,6 +133,87 @@ public class NumberFormatter
    */
   @Override
   public byte[] format(final String type, final Object data, final Dimension dimension) {
+    return getText(type, data, dimension).getBytes();
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if the data is null or not a valid numeric value
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    if (charset.isSingleByte() && isLongValue(data)) {
+      return formatLong(type, data, ((Number) data).longValue(), dimension, charset, output);
+    }
+    return charset.encode(getText(type, data, dimension), output);
+  }
+
+  /** is the value supplied an integral number that can be held in a long? */
+  private static boolean isLongValue(final Object data) {
+    return data instanceof Long || data instanceof Integer || data instanceof Short || data instanceof Byte
+        || (data instanceof BigInteger && ((BigInteger) data).bitLength() < 64);
+  }
+
+  /**
+   * Write the digits of the value supplied directly into the output buffer, zero-padded for a
+   * fixed field, and prefixed with its sign for a signed field
+   * @return the number of bytes written
+   * @throws IllegalArgumentException if the value exceeds the field's maximum length
+   */
+  private int formatLong(
+      final String type, final Object data, final long value, final Dimension dimension,
+      final CharEncoder charset, final ByteBuffer output) {
+    final boolean signed = FieldType.NUMSIGNED.equalsIgnoreCase(type);
+    if (value == Long.MIN_VALUE || (value < 0 && !signed)) {
+      return charset.encode(getText(type, data, dimension), output);
+    }
+    final long magnitude = Math.abs(value);
+    final int digits = digits(magnitude);
+    final int length = signed ? dimension.getLength() - 1 : dimension.getLength();
+    if (digits > length) {
+      throw lengthExceeded(signed ? digits + 1 : digits, type, data, dimension);
+    }
+    final int width = dimension.getType() == Dimension.Type.FIXED ? length : digits;
+    final int result = signed ? width + 1 : width;
+    if (output.remaining() < result) {
+      throw new BufferOverflowException();
+    }
+    if (signed) {
+      output.put(charset.encode(value < 0 ? 'D' : 'C'));
+    }
+    final int start = output.position();
+    long remainder = magnitude;
+    for (int i = start + width - 1; i >= start; i--) {
+      output.put(i, charset.encode((char) ('0' + remainder % 10)));
+      remainder /= 10;
+    }
+    output.position(start + width);
+    return result;
+  }
+
+  /** Answer with the number of decimal digits in the (non-negative) value supplied */
+  private static int digits(final long value) {
+    int result = 1;
+    for (long limit = 10; result < 19 && value >= limit; limit *= 10) {
+      result++;
+    }
+    return result;
+  }
+
+  private static IllegalArgumentException lengthExceeded(
+      final int dataLength, final String type, final Object data, final Dimension dimension) {
+    return new IllegalArgumentException(
+        "Field data length (" + dataLength + ") exceeds field maximum (" + dimension.getLength()
+            + ") [data=" + data + ", type=" + type + ", dim=" + dimension + "]");
+  }
+
+  /**
+   * Answer with the text representation of the numeric value supplied, zero-padded for a
+   * fixed field, and prefixed with its sign for a signed field
+   * @throws IllegalArgumentException if the data is null or not a valid numeric value
+   */
+  private String getText(final String type, final Object data, final Dimension dimension) {
     if (data == null) {
       throw new IllegalArgumentException("Numeric value cannot be null");
     }
@@ -79,10 +231,7 @@ public class NumberFormatter
 
     String result = value.toString();
     if (result.length() > length) {
-      throw new IllegalArgumentException(
-          "Field data length (" + (!isSigned ? result.length() : (result.length() + 1))
-              + ") exceeds field maximum (" + dimension.getLength()
-              + ") [data=" + data + ", type=" + type + ", dim=" + dimension + "]");
+      throw lengthExceeded(!isSigned ? result.length() : (result.length() + 1), type, data, dimension);
     }
     if (dimension.getType() == Dimension.Type.FIXED) {
       result = zeroPad(result, length);
@@ -90,14 +239,18 @@ public class NumberFormatter
     if (FieldType.NUMSIGNED.equalsIgnoreCase(type)) {
       result = (negative ? "D" : "C") + result;
     }
-    return result.getBytes();
+    return result;
   }
 
   private String zeroPad(final String result, final int length) {
     if (result.length() >= length) {
       return result;
     }
-    return String.format("%" + length + "." + length + "s", result).replaceAll(" ", "0");
+    final StringBuilder padded = new StringBuilder(length);
+    for (int i = result.length(); i < length; i++) {
+      padded.append('0');
+    }
+    return padded.append(result).toString();
   }
 
   /**
@@ -116,7 +269,7 @@ public class NumberFormatter
     if (data instanceof BigDecimal) {
       return BigInteger.valueOf(((BigDecimal) data).longValue());
     } else if (data instanceof Integer || data instanceof Long) {
-      return BigInteger.valueOf(Long.valueOf(data + ""));
+      return BigInteger.valueOf(((Number) data).longValue());
     } else if (data instanceof Float || data instanceof Double) {
       return BigInteger.valueOf(Double.doubleToLongBits((Double) data));
     } else {
@@ -126,13 +279,27 @@ public class NumberFormatter
       } else {
         value = data.toString().trim();
       }
-      if (NumberMatcher.matcher(value).matches()) {
+      if (isNumberText(value)) {
         return new BigInteger(value);
       }
     }
     throw new IllegalArgumentException("Could not convert " + data.getClass().getSimpleName() + " to numeric");
   }
 
+  /** does the value consist only of (one or more) digits and minus signs? */
+  private static boolean isNumberText(final String value) {
+    if (value.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if ((c < '0' || c > '9') && c != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -6,15 +6,20 @@ import org.joda.time.format.DateTimeFormatter;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
 
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 
 /**
  * Formatter that can format and parse ISO8583 time format field value
+ * <p/>
+ * Where the charset is a single-byte encoding, times are parsed and formatted directly from
+ * and to the digits of the field data
  * @author phillipsr
  */
 public class TimeFormatter
-    extends TypeFormatter<LocalTime> {
+    extends TypeFormatter<LocalTime>
+    implements BufferFormatter {
   private final static DateTimeFormatter Formatter = DateTimeFormat.forPattern("HHmmss");
 
   public TimeFormatter(final CharEncoder charset) {
@@ -28,6 +33,10 @@ public class TimeFormatter
   @Override
   public LocalTime parse(final String type, final Dimension dimension, final int length, final byte[] data)
       throws ParseException {
+    final LocalTime result = decodeTime(ByteBuffer.wrap(data));
+    if (result != null) {
+      return result;
+    }
     try {
       return Formatter.parseLocalTime(decode(data));
     } catch (final Exception e) {
@@ -35,6 +44,45 @@ public class TimeFormatter
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>Decodes the time directly from the buffer supplied
+   * @throws ParseException if the data cannot be parsed as a valid time value
+   */
+  @Override
+  public LocalTime parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final LocalTime result = decodeTime(data);
+    if (result != null) {
+      return result;
+    }
+    return super.parse(type, dimension, data);
+  }
+
+  /**
+   * Answer with the time decoded from the HHmmss digits held in the remaining content of the buffer
+   * @return the time, or null if the data cannot be decoded directly (and must be parsed as text,
+   * which reports the error if the data is invalid)
+   */
+  private LocalTime decodeTime(final ByteBuffer data) {
+    final CharEncoder charset = getCharset();
+    if (data.remaining() != 6 || !charset.isSingleByte()) {
+      return null;
+    }
+    final int index = data.position();
+    final int hour = DateCodec.digits(charset, data, index, 2);
+    final int minute = DateCodec.digits(charset, data, index + 2, 2);
+    final int second = DateCodec.digits(charset, data, index + 4, 2);
+    if ((hour | minute | second) < 0) {
+      return null;
+    }
+    try {
+      return new LocalTime(hour, minute, second);
+    } catch (final IllegalArgumentException e) {
+      return null; // field value out of range
+    }
+  }
+
   /**
    * {@inheritDoc}
    * @throws IllegalArgumentException if the data is null
@@ -47,6 +95,26 @@ public class TimeFormatter
     return Formatter.print(getTime(data)).getBytes();
   }
 
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if the data is null
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    if (data == null) {
+      throw new IllegalArgumentException("Time value cannot be null");
+    }
+    final LocalTime time = getTime(data);
+    if (!charset.isSingleByte()) {
+      return charset.encode(Formatter.print(time), output);
+    }
+    DateCodec.put(time.getHourOfDay(), charset, output);
+    DateCodec.put(time.getMinuteOfHour(), charset, output);
+    DateCodec.put(time.getSecondOfMinute(), charset, output);
+    return 6;
+  }
+
   /**
    * Answer with a time representation of the data object supplied
    * @param data to convert to a time
@@ -61,7 +129,7 @@ public class TimeFormatter
     } else if (data instanceof java.util.Date) {
       return new LocalTime(((java.util.Date) data).getTime());
     }
-    final String timeString = String.format("%6.6s", data.toString().trim()).replaceAll(" ", "0");
+    final String timeString = String.format("%6.6s", data.toString().trim()).replace(' ', '0');
     if (timeString.length() != 6) {
       throw new IllegalArgumentException("Invalid data [" + data + "]: cannot convert to time (" + timeString + ")");
     }
@@ -8,9 +8,8 @@ import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
+import java.nio.ByteBuffer;
 import java.text.ParseException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Formatter/parser capable of interpreting the data representation used on financial transaction card's
@@ -72,20 +71,17 @@ import java.util.regex.Pattern;
  * The maximum record length is 40 numeric digits.
  * E.g.,
  * <code>;1234567890123456789=1503=001?</code>
+ * <p/>
+ * Track data is parsed by a single pass over the field's bytes (see {@link TrackScanner}),
+ * and formatted without an intermediate format string
  * @author phillipsr
  */
-public class TrackDataFormatter extends TypeFormatter<TrackData> {
-  /** Track1 pattern: 5 groups are 0: whole field, 1: PAN, 2: NAME, 3: ED, 4: SC */
-  private static final Pattern Track1Matcher
-      = Pattern.compile("^%%?([A-Z])(\\d{1,19})\\^([^\\^]{2,26})\\^(\\d{4}|\\^)(\\d{3}|\\^)([^\\?]+)\\??$");
-  private static final Pattern Track2Matcher
-      /** Track2 pattern: 4 groups are 0: whole field, 1: PAN, 2: ED, 2: SC */
-      = Pattern.compile("^;?(\\d{1,19})[=|D](\\d{4}|[=|D])(\\d{3}|[=|D])(\\d*)\\??$");
-  /** Name pattern: 5 groups are 0: while field, 1: Surname, 2: First Name or Initial, 3: Middle Name or Initial, 4: Title */
-  private static final Pattern NameFieldMatcher
-      = Pattern.compile("([^/]+)/([A-Za-z]*)([ ][A-Za-z]+)?\\.([A-Za-z]+)*");
-
-  private final TypeFormatter<String> alphaFormatter;
+public class TrackDataFormatter extends TypeFormatter<TrackData>
+    implements BufferFormatter {
+  /** width of the (space-padded) Track 1 name field */
+  private static final int NameWidth = 26;
+
+  private final AlphaFormatter alphaFormatter;
 
   public TrackDataFormatter(final CharEncoder charset) {
     setCharset(charset);
@@ -100,17 +96,27 @@ public class TrackDataFormatter extends TypeFormatter<TrackData> {
   @Override
   public TrackData parse(final String type, final Dimension dim, final int length, final byte[] data)
       throws ParseException {
-    final String value = decode(data);
-    final Matcher t1matcher = Track1Matcher.matcher(value);
-    if (t1matcher.matches()) {
-      return parseTrack1(t1matcher);
-    }
-    final Matcher t2matcher = Track2Matcher.matcher(value);
-    if (t2matcher.matches()) {
-      return parseTrack2(t2matcher);
-    }
+    return parse(type, length, ByteBuffer.wrap(data));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>Scans the track data directly from the buffer supplied
+   */
+  @Override
+  public TrackData parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    return parse(type, data.remaining(), data);
+  }
 
-    throw new ParseException("Could not understand track data (type=" + type + "): [" + value + "]", length);
+  private TrackData parse(final String type, final int length, final ByteBuffer data)
+      throws ParseException {
+    final TrackScanner scanner = new TrackScanner(TrackScanner.text(getCharset(), data));
+    if (scanner.scan() == null) {
+      throw new ParseException("Could not understand track data (type=" + type + "): ["
+          + decode(data) + "]", length);
+    }
+    return scanner.getTrackData();
   }
 
   /* (non-Javadoc)
@@ -118,6 +124,23 @@ public class TrackDataFormatter extends TypeFormatter<TrackData> {
    */
   @Override
   public byte[] format(final String type, final Object data, final Dimension dimension) {
+    return alphaFormatter.format(FieldType.ALPHANUMSYMBOL, getText(type, data, dimension), dimension);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    return alphaFormatter.format(FieldType.ALPHANUMSYMBOL, getText(type, data, dimension), dimension, charset, output);
+  }
+
+  /**
+   * Answer with the text representation of the track data supplied
+   * @throws IllegalArgumentException if the data is null or not valid track data
+   */
+  private CharSequence getText(final String type, final Object data, final Dimension dimension) {
     if (data == null) {
       throw new IllegalArgumentException("TrackData value cannot be null");
     }
@@ -128,18 +151,39 @@ public class TrackDataFormatter extends TypeFormatter<TrackData> {
     }
 
     final TrackData trackData = (TrackData) data;
+    final boolean track1 = trackData.getType() == TrackData.Track.TRACK1;
+    final StringBuilder result = new StringBuilder(80);
+    if (track1) {
+      result.append('B');
+    }
+    result.append(trackData.getPrimaryAccountNumber());
+    if (track1) {
+      // name is truncated or padded right to its field width
+      final String name = trackData.formatName();
+      result.append('^').append(name, 0, Math.min(name.length(), NameWidth));
+      for (int i = name.length(); i < NameWidth; i++) {
+        result.append(' ');
+      }
+    } else {
+      result.append('=');
+    }
+    appendDigits(result, trackData.getExpirationDate(), 4);
+    appendDigits(result, trackData.getServiceCode(), 3);
+    return result.append(trackData.getDiscretionaryData());
+  }
 
-    final StringBuilder buffer = new StringBuilder();
-    final String format = trackData.getType() == TrackData.Track.TRACK1 ? "B%d^%-26.26s%04d%03d%s" : "%d%s=%04d%03d%s";
-    buffer.append(String.format(format,
-        trackData.getPrimaryAccountNumber(),
-        trackData.getType() == TrackData.Track.TRACK1 ? trackData.formatName() : "",
-        trackData.getExpirationDate(),
-        trackData.getServiceCode(),
-        trackData.getDiscretionaryData()));
-    final String result = buffer.toString();
-
-    return alphaFormatter.format(FieldType.ALPHANUMSYMBOL, result, dimension);
+  /** Append the value supplied, padded left with zeros to <code>width</code> characters (including any sign) */
+  private static void appendDigits(final StringBuilder target, final int value, final int width) {
+    final String digits = Long.toString(Math.abs((long) value));
+    int padding = width - digits.length();
+    if (value < 0) {
+      target.append('-');
+      padding--;
+    }
+    for (; padding > 0; padding--) {
+      target.append('0');
+    }
+    target.append(digits);
   }
 
   /**
@@ -163,58 +207,4 @@ public class TrackDataFormatter extends TypeFormatter<TrackData> {
     return trackData.getType() == TrackData.Track.TRACK2 || trackData.getPrimaryAccountNumber() != 0;
   }
 
-  /**
-   * Interpret the supplied field value as Track 1 data
-   * @param matcher that has matcher the Track1 pattern
-   * @return TrackData object initialized from the sub-fields of <code>value/code>,
-   * with the <code>name</code> property set
-   * @throws AssertionError if the matcher has not matched the 5 groups in the Track1 pattern
-   */
-  private TrackData parseTrack1(final Matcher matcher) {
-    final TrackData result = new TrackData(TrackData.Track.TRACK1);
-    assert matcher.groupCount() == 6 : "Track1 Data has 6 fields (" + matcher.groupCount() + ")";
-    assert matcher.group(1).charAt(0) == 'B' : "Only Track1 type 'B' format supported";
-    result.setPrimaryAccountNumber(Long.parseLong(matcher.group(2).trim()));
-    result.setName(getNameFields(matcher.group(3).trim()));
-    result.setExpirationDate(Integer.parseInt(matcher.group(4).trim()));
-    result.setServiceCode(Integer.parseInt(matcher.group(5).trim()));
-    result.setDiscretionaryData(matcher.group(6).trim());
-
-    return result;
-  }
-
-  /**
-   * Interpret the supplied field value as Track 2 data
-   * @param matcher that has matcher the Track2 pattern
-   * @return TrackData object initialized from the sub-fields of <code>value</code>
-   * without the <code>name</code> property set (not present in Track 2)
-   * @throws AssertionError if the matcher has not matched the 4 groups in the Track2 pattern
-   */
-  private TrackData parseTrack2(final Matcher matcher) {
-    final TrackData result = new TrackData(TrackData.Track.TRACK2);
-    assert matcher.groupCount() == 4 : "Track2 Data has 4 fields (" + matcher.groupCount() + ")";
-
-    result.setPrimaryAccountNumber(Long.parseLong(matcher.group(1)));
-    result.setExpirationDate(Integer.parseInt(matcher.group(2)));
-    result.setServiceCode(Integer.parseInt(matcher.group(3)));
-    result.setDiscretionaryData(matcher.group(4));
-
-    return result;
-  }
-
-  /**
-   * Parse an encoded Track2 name field into its four elements
-   * @param nameField formatted according to ISO8583 Track2 Data Name format
-   * @return array of {Surname, First Name or Initial, Middle Name or Initia, Title}
-   */
-  private String[] getNameFields(final String nameField) {
-    final Matcher matcher = NameFieldMatcher.matcher(nameField);
-    if (!matcher.matches()) {
-      return new String[]{nameField, "", "", ""};
-    }
-    return new String[]{
-        matcher.group(1), matcher.group(2),
-        matcher.group(3), matcher.group(4)};
-  }
-
 }
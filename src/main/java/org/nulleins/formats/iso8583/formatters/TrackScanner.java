@@ -0,0 +1,356 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.nulleins.formats.iso8583.TrackData;
+import org.nulleins.formats.iso8583.types.CharEncoder;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Scanner that locates the sub-fields of Track 1 or Track 2 data (see {@link TrackDataFormatter})
+ * in a single left-to-right pass over its characters, without a regular expression
+ * <p/>
+ * The track is scanned as a sequence of characters, which may be a view of the bytes of a field
+ * (see {@link #text}), or of the nibbles of a BCD-encoded field (see {@link #bcd}); the formats
+ * accepted are:
+ * <pre>
+ * Track 1: %[%]F PAN ^ NAME ^ (ED|^) (SC|^) DD [?]   F: A-Z; PAN: 1-19 digits; NAME: 2-26 characters
+ * Track 2: [;] PAN = (ED|=) (SC|=) DD [?]           '=' may also be 'D' or '|'; DD: digits
+ * </pre>
+ * An expiration date or service code that is not present is answered as zero
+ * @author phillipsr
+ */
+public final class TrackScanner {
+  private static final int MAX_PAN_DIGITS = 19;
+  private static final int MIN_NAME_LENGTH = 2;
+  private static final int MAX_NAME_LENGTH = 26;
+  private static final int DATE_DIGITS = 4;
+  private static final int CODE_DIGITS = 3;
+  /** index of a sub-field that is not present in the track */
+  private static final int ABSENT = -1;
+
+  private final CharSequence track;
+  private TrackData.Track type;
+  private long primaryAccountNumber;
+  /** indexes of the sub-fields in the track; the end indexes are exclusive */
+  private int formatCode;
+  private int panStart;
+  private int nameStart;
+  private int nameEnd;
+  private int dateStart;
+  private int codeStart;
+  private int dataStart;
+  private int dataEnd;
+
+  /**
+   * @param track characters of the track data to be scanned
+   */
+  public TrackScanner(final CharSequence track) {
+    this.track = track;
+  }
+
+  /**
+   * Scan the track data, locating its sub-fields
+   * @return the type of track scanned, or null if the data is neither Track 1 nor Track 2 data
+   */
+  public TrackData.Track scan() {
+    type = null;
+    if (track.length() == 0) {
+      return null;
+    }
+    if (track.charAt(0) == '%' ? scanTrack1() : scanTrack2()) {
+      type = track.charAt(0) == '%' ? TrackData.Track.TRACK1 : TrackData.Track.TRACK2;
+    }
+    return type;
+  }
+
+  /**
+   * Answer with a TrackData object initialized from the sub-fields scanned; the name and
+   * discretionary data of Track 1 are trimmed of leading and trailing whitespace
+   * @throws IllegalStateException if the data has not been successfully scanned
+   */
+  public TrackData getTrackData() {
+    if (type == null) {
+      throw new IllegalStateException("Track data not scanned");
+    }
+    final TrackData result = new TrackData(type);
+    result.setPrimaryAccountNumber(primaryAccountNumber);
+    result.setExpirationDate(number(dateStart, DATE_DIGITS));
+    result.setServiceCode(number(codeStart, CODE_DIGITS));
+    final String data = track.subSequence(dataStart, dataEnd).toString();
+    if (type == TrackData.Track.TRACK1) {
+      assert track.charAt(formatCode) == 'B' : "Only Track1 type 'B' format supported";
+      result.setName(getNameFields(track.subSequence(nameStart, nameEnd).toString().trim()));
+      result.setDiscretionaryData(data.trim());
+    } else {
+      result.setDiscretionaryData(data);
+    }
+    return result;
+  }
+
+  /** Answer with the index of the first character of the track following the start sentinel */
+  public int getStart() {
+    return panStart;
+  }
+
+  /** Answer with the index of the end sentinel, or the length of the track if not present */
+  public int getEnd() {
+    return dataEnd;
+  }
+
+  /** <code>%[%]F PAN ^ NAME ^ (ED|^) (SC|^) DD [?]</code> */
+  private boolean scanTrack1() {
+    int pos = is(1, '%') ? 2 : 1;
+    if (pos >= track.length() || track.charAt(pos) < 'A' || track.charAt(pos) > 'Z') {
+      return false;
+    }
+    formatCode = pos++;
+    pos = scanAccountNumber(pos);
+    if (pos < 0 || !is(pos, '^')) {
+      return false;
+    }
+    nameStart = ++pos;
+    while (pos < track.length() && track.charAt(pos) != '^') {
+      pos++;
+    }
+    nameEnd = pos;
+    if (nameEnd - nameStart < MIN_NAME_LENGTH || nameEnd - nameStart > MAX_NAME_LENGTH || !is(pos, '^')) {
+      return false;
+    }
+    dateStart = optionalDigits(++pos, DATE_DIGITS);
+    pos = skip(pos, dateStart, DATE_DIGITS, false);
+    if (pos < 0) {
+      return false;
+    }
+    codeStart = optionalDigits(pos, CODE_DIGITS);
+    pos = skip(pos, codeStart, CODE_DIGITS, false);
+    if (pos < 0) {
+      return false;
+    }
+    // one or more characters, other than the end sentinel
+    dataStart = pos;
+    dataEnd = endOfTrack();
+    for (int i = dataStart; i < dataEnd; i++) {
+      if (track.charAt(i) == '?') {
+        return false;
+      }
+    }
+    return dataEnd > dataStart;
+  }
+
+  /** <code>[;] PAN = (ED|=) (SC|=) DD [?]</code> */
+  private boolean scanTrack2() {
+    int pos = scanAccountNumber(is(0, ';') ? 1 : 0);
+    if (pos < 0 || pos >= track.length() || !isSeparator(track.charAt(pos))) {
+      return false;
+    }
+    dateStart = optionalDigits(++pos, DATE_DIGITS);
+    pos = skip(pos, dateStart, DATE_DIGITS, true);
+    if (pos < 0) {
+      return false;
+    }
+    codeStart = optionalDigits(pos, CODE_DIGITS);
+    pos = skip(pos, codeStart, CODE_DIGITS, true);
+    if (pos < 0) {
+      return false;
+    }
+    // zero or more digits
+    dataStart = pos;
+    dataEnd = endOfTrack();
+    return digits(dataStart, dataEnd - dataStart);
+  }
+
+  /**
+   * Scan the 1-19 digits of the primary account number, starting at <code>pos</code>
+   * @return the index following the account number, or -1 if not present or too large for a long
+   */
+  private int scanAccountNumber(final int pos) {
+    panStart = pos;
+    long value = 0;
+    int end = pos;
+    for (; end < track.length() && isDigit(track.charAt(end)); end++) {
+      final int digit = track.charAt(end) - '0';
+      if (end - pos == MAX_PAN_DIGITS || value > (Long.MAX_VALUE - digit) / 10) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    primaryAccountNumber = value;
+    return end > pos ? end : -1;
+  }
+
+  /**
+   * Answer with <code>pos</code> if the <code>count</code> characters there are digits, or
+   * {@link #ABSENT} if the sub-field is not present (a separator is found in its place)
+   */
+  private int optionalDigits(final int pos, final int count) {
+    return digits(pos, count) ? pos : ABSENT;
+  }
+
+  /**
+   * Answer with the index following a sub-field of <code>count</code> digits at <code>pos</code>,
+   * or following its separator if <code>start</code> is {@link #ABSENT}
+   * @return the index following the sub-field, or -1 if neither the digits nor a separator are found
+   */
+  private int skip(final int pos, final int start, final int count, final boolean track2) {
+    if (start != ABSENT) {
+      return pos + count;
+    }
+    if (pos < track.length() && (track2 ? isSeparator(track.charAt(pos)) : track.charAt(pos) == '^')) {
+      return pos + 1;
+    }
+    return -1;
+  }
+
+  /** Answer with the index of the end sentinel if it is the last character, otherwise the track length */
+  private int endOfTrack() {
+    final int length = track.length();
+    return length > 0 && track.charAt(length - 1) == '?' ? length - 1 : length;
+  }
+
+  /** are the <code>count</code> characters starting at <code>pos</code> all digits? */
+  private boolean digits(final int pos, final int count) {
+    if (pos + count > track.length()) {
+      return false;
+    }
+    for (int i = pos; i < pos + count; i++) {
+      if (!isDigit(track.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Answer with the value of the <code>count</code> digits at <code>pos</code>, or zero if absent */
+  private int number(final int pos, final int count) {
+    if (pos == ABSENT) {
+      return 0;
+    }
+    int result = 0;
+    for (int i = pos; i < pos + count; i++) {
+      result = result * 10 + track.charAt(i) - '0';
+    }
+    return result;
+  }
+
+  private boolean is(final int pos, final char c) {
+    return pos < track.length() && track.charAt(pos) == c;
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(final char c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  /** Track 2 field separator: '=', or 'D' as in a BCD-encoded track, or '|' */
+  private static boolean isSeparator(final char c) {
+    return c == '=' || c == 'D' || c == '|';
+  }
+
+  /**
+   * Parse an encoded Track 1 name field into its four elements
+   * <pre>Surname "/" First Name or Initial [" " Middle Name or Initial] "." [Title]</pre>
+   * @param nameField formatted according to ISO8583 Track1 Data Name format
+   * @return array of {Surname, First Name or Initial, Middle Name or Initial, Title}, absent
+   * elements being empty; if the name is not in this format, the surname is the whole name
+   */
+  static String[] getNameFields(final String nameField) {
+    final String[] unstructured = {nameField, "", "", ""};
+    final int slash = nameField.indexOf('/');
+    if (slash < 1) {
+      return unstructured;
+    }
+    final int firstEnd = skipLetters(nameField, slash + 1);
+    int pos = firstEnd;
+    String middle = "";
+    if (pos < nameField.length() && nameField.charAt(pos) == ' ') {
+      pos = skipLetters(nameField, firstEnd + 1);
+      if (pos == firstEnd + 1) {
+        return unstructured;
+      }
+      middle = nameField.substring(firstEnd + 1, pos);
+    }
+    if (pos >= nameField.length() || nameField.charAt(pos) != '.'
+        || skipLetters(nameField, pos + 1) != nameField.length()) {
+      return unstructured;
+    }
+    return new String[]{
+        nameField.substring(0, slash), nameField.substring(slash + 1, firstEnd),
+        middle, nameField.substring(pos + 1)};
+  }
+
+  private static int skipLetters(final String text, int pos) {
+    while (pos < text.length() && isLetter(text.charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Answer with the characters encoded by the remaining bytes of the buffer supplied; in a
+   * single-byte charset, this is a view of the buffer's content, which must not be changed
+   * while the view is in use
+   */
+  public static CharSequence text(final CharEncoder charset, final ByteBuffer data) {
+    if (!charset.isSingleByte()) {
+      return charset.getString(data);
+    }
+    final int offset = data.position();
+    final int length = data.remaining();
+    return new View(length) {
+      @Override
+      public char charAt(final int index) {
+        return charset.decode(data.get(offset + index));
+      }
+    };
+  }
+
+  /**
+   * Answer with a view of the first <code>digits</code> nibbles of the BCD-encoded track data
+   * supplied (from its position), as characters: nibbles 0x0-0x9 are the digits, and nibbles
+   * 0xA-0xF the Track 2 control characters ':' to '?', so that the field separator (0xD)
+   * is '=', and the start (0xB) and end (0xF) sentinels ';' and '?'
+   */
+  public static CharSequence bcd(final ByteBuffer data, final int digits) {
+    final int offset = data.position();
+    return new View(digits) {
+      @Override
+      public char charAt(final int index) {
+        final byte packed = data.get(offset + index / 2);
+        return (char) ('0' + ((index & 1) == 0 ? (packed & 0xf0) >> 4 : packed & 0x0f));
+      }
+    };
+  }
+
+  /** Read-only sequence of characters held in some other form */
+  private abstract static class View implements CharSequence {
+    private final int length;
+
+    View(final int length) {
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      final char[] result = new char[end - start];
+      for (int i = start; i < end; i++) {
+        result[i - start] = charAt(i);
+      }
+      return new String(result);
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, length).toString();
+    }
+  }
+
+}
@@ -5,6 +5,7 @@ import org.nulleins.formats.iso8583.MessageException;
 import org.nulleins.formats.iso8583.types.Dimension;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Arrays;
 
@@ -29,6 +30,40 @@ public abstract class TypeFormatter<T> {
    */
   public abstract T parse(String type, Dimension dimension, int position, byte[] data) throws ParseException;
 
+  /**
+   * Answer with the value represented by the remaining content of the <code>data</code> buffer,
+   * interpreted according to the field type and dimension specification supplied
+   * <p/>
+   * This default implementation copies the data into a new byte array and delegates to
+   * {@link #parse(String, Dimension, int, byte[])}: formatters able to work directly
+   * on the buffer should override it
+   * @param type      variant of the type specified for the field
+   * @param dimension specifies if fixed or variable and the required size
+   * @param data      buffer holding the field data, from its position to its limit
+   * @throws IllegalArgumentException if the data is null or invalid the field type
+   * @throws ParseException           if the data cannot be parsed to the specified type
+   */
+  public T parse(final String type, final Dimension dimension, final ByteBuffer data)
+      throws ParseException {
+    final byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return parse(type, dimension, bytes.length, bytes);
+  }
+
+  /**
+   * Answer with a formatter for the values of fields of the type and dimension supplied,
+   * called once for each field when a schema is compiled; formatters that can select a
+   * more efficient strategy for a particular field (e.g., the codec for a date format)
+   * may answer with a formatter bound to that strategy
+   * <p/>
+   * This default implementation answers with this formatter
+   * @param type      of the field
+   * @param dimension of the field
+   */
+  public TypeFormatter<T> forField(final String type, final Dimension dimension) {
+    return this;
+  }
+
   /**
    * Answer with a byte array representing the data supplied, formatted according to the
    * field type and dimension specified
@@ -62,6 +97,11 @@ public abstract class TypeFormatter<T> {
     this.charset = charset;
   }
 
+  /** Answer with the charset used when reading or writing character data */
+  protected CharEncoder getCharset() {
+    return charset;
+  }
+
   /**
    * Decode the supplied data using the configured charset
    * @param data
@@ -80,4 +120,14 @@ public abstract class TypeFormatter<T> {
     }
   }
 
+  /**
+   * Decode the remaining content of the supplied buffer using the configured charset
+   * @param data
+   * @return A string representation of the data supplied, in the charset specified
+   */
+  protected String decode(final ByteBuffer data) {
+    assert charset != null;
+    return charset.getString(data);
+  }
+
 }
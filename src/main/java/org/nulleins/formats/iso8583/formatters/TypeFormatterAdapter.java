@@ -0,0 +1,51 @@
+package org.nulleins.formats.iso8583.formatters;
+
+import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Adapter allowing a formatter that only implements the <code>TypeFormatter</code> API, e.g.,
+ * a custom formatter defined in a schema, to be used as a {@link BufferFormatter}: the byte array
+ * answered by the formatter (the text of the value, as encoded by <code>String.getBytes()</code>)
+ * is re-encoded in the message's charset
+ * @author phillipsr
+ */
+public final class TypeFormatterAdapter
+    implements BufferFormatter {
+  private final TypeFormatter<?> formatter;
+
+  private TypeFormatterAdapter(final TypeFormatter<?> formatter) {
+    this.formatter = formatter;
+  }
+
+  /**
+   * Answer with a buffer formatter for the formatter supplied: the formatter itself, if it
+   * implements <code>BufferFormatter</code>, otherwise an adapter for it
+   * @param formatter to be adapted (may be null)
+   * @return a buffer formatter, or null if the formatter supplied is null
+   */
+  public static BufferFormatter adapt(final TypeFormatter<?> formatter) {
+    if (formatter == null || formatter instanceof BufferFormatter) {
+      return (BufferFormatter) formatter;
+    }
+    return new TypeFormatterAdapter(formatter);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int format(
+      final String type, final Object data, final Dimension dimension, final CharEncoder charset, final ByteBuffer output) {
+    return charset.encode(new String(formatter.format(type, data, dimension)), output);
+  }
+
+  @Override
+  public String toString() {
+    return "TypeFormatterAdapter[" + formatter + "]";
+  }
+
+}
@@ -7,9 +7,9 @@ import org.joda.time.DateTime;
 import org.joda.time.LocalTime;
 import org.nulleins.formats.iso8583.TrackData;
 import org.nulleins.formats.iso8583.types.CharEncoder;
+import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
-import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,13 +25,24 @@ import java.util.Map;
  */
 public class TypeFormatters {
   private final CharEncoder charset;
+  private final boolean longNumbers;
   private final Map<String, TypeFormatter<?>> formatters = new HashMap<String, TypeFormatter<?>>();
 
   public TypeFormatters(final CharEncoder charset) {
+    this(charset, false);
+  }
+
+  /**
+   * @param charset     used to read and write character data
+   * @param longNumbers if true, numeric fields of up to 18 digits are parsed as Longs
+   *                    (see {@link LongNumberFormatter}), otherwise as BigIntegers
+   */
+  public TypeFormatters(final CharEncoder charset, final boolean longNumbers) {
     if (charset == null) {
       throw new IllegalArgumentException("charset cannot be null/empty");
     }
     this.charset = charset;
+    this.longNumbers = longNumbers;
     initializeFormatters();
   }
 
@@ -42,7 +53,8 @@ public class TypeFormatters {
   private void initializeFormatters() {
     final TypeFormatter<DateTime> DateFormatter = new DateFormatter(charset);
     final TypeFormatter<LocalTime> TimeFormatter = new TimeFormatter(charset);
-    final TypeFormatter<BigInteger> NumberFormatter = new NumberFormatter(charset);
+    final TypeFormatter<?> NumberFormatter =
+        longNumbers ? new LongNumberFormatter(charset) : new NumberFormatter(charset);
     final TypeFormatter<String> AlphaFormatter = new AlphaFormatter(charset);
     final TypeFormatter<TrackData> TrackFormatter = new TrackDataFormatter(charset);
 
@@ -74,6 +86,16 @@ public class TypeFormatters {
     return formatters.get(type);
   }
 
+  /**
+   * Answer with the formatter for fields of the type and dimension supplied: that registered
+   * for the type, bound to the field (see {@link TypeFormatter#forField})
+   * @return the field's formatter, or null if no formatter is registered for the type
+   */
+  public TypeFormatter<?> getFormatter(final String type, final Dimension dimension) {
+    final TypeFormatter<?> formatter = formatters.get(type);
+    return formatter != null ? formatter.forField(type, dimension) : null;
+  }
+
   @Override
   public String toString() {
     return "Registered formatters: " + formatters.keySet();
@@ -1,6 +1,7 @@
 package org.nulleins.formats.iso8583.io;
 
 import org.nulleins.formats.iso8583.FieldTemplate;
+import org.nulleins.formats.iso8583.formatters.TrackScanner;
 import org.nulleins.formats.iso8583.types.BCD;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
@@ -9,7 +10,7 @@ import org.nulleins.formats.iso8583.types.MTI;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -47,10 +48,10 @@ public class BCDMessageReader
       // LVAR and LLVAR: 1 byte length specifier, LLLVAR: 2 bytes required:
       final byte[] var = new byte[(int) Math.ceil(field.getDimension().getVSize() / 2.0)];
       input.readFully(var);
-      length = Integer.parseInt(BCD.toString(var));
+      length = (int) BCD.toLong(ByteBuffer.wrap(var));
     }
     if (field.getType().equals(FieldType.TRACKDATA)) {
-      return readTrackData(length, input);
+      return readTrackData(ByteBuffer.wrap(readBytes((int) Math.ceil(length / 2.0), input)), length);
     }
     if (NumericTypes.contains(field.getType())) {
       boolean negative = false;
@@ -59,71 +60,77 @@ public class BCDMessageReader
         length -= 2; // read two nibbles
         negative = sign == 0x0d;
       }
-      return readNumeric(field, length, negative, input);
+      // packed BCD, half length (rounded-up):
+      return readNumeric(field, length, negative, ByteBuffer.wrap(readBytes((int) Math.ceil(length / 2.0), input)));
     }
     return readBytes(length, input);
   }
 
   /**
-   * Read a BCD-encoded numeric field value from the input stream,
-   * returning a character representation of the numeric value
+   * {@inheritDoc}
+   * <p/>Numeric and track data fields are unpacked from BCD to their character representation,
+   * other fields are returned as a slice of the input buffer
+   */
+  @Override
+  public ByteBuffer readField(final FieldTemplate field, final ByteBuffer input)
+      throws IOException {
+    int length = field.getDimension().getLength();
+    if (field.getDimension().getType() == Dimension.Type.VARIABLE) {
+      // LVAR and LLVAR: 1 byte length specifier, LLLVAR: 2 bytes required:
+      final ByteBuffer var = readSlice((int) Math.ceil(field.getDimension().getVSize() / 2.0), input);
+      length = (int) BCD.toLong(var);
+    }
+    if (field.getType().equals(FieldType.TRACKDATA)) {
+      return ByteBuffer.wrap(readTrackData(readSlice((int) Math.ceil(length / 2.0), input), length));
+    }
+    if (NumericTypes.contains(field.getType())) {
+      boolean negative = false;
+      if (field.getType().equals(FieldType.NUMSIGNED)) {
+        final byte sign = readSlice(1, input).get(0);
+        length -= 2; // read two nibbles
+        negative = sign == 0x0d;
+      }
+      // packed BCD, half length (rounded-up):
+      return ByteBuffer.wrap(readNumeric(field, length, negative, readSlice((int) Math.ceil(length / 2.0), input)));
+    }
+    return readSlice(length, input);
+  }
+
+  /**
+   * Unpack a BCD-encoded numeric field value, returning a character representation
+   * of the numeric value
    * @param field    template describing the field to be read
    * @param length   of the field in the input
    * @param negative flag: is the field to be interpreted as a negative value?
+   * @param data     the packed BCD value
    * @return a byte array representing the numeric value read, as characters
-   * @throws IOException if the required amount of data could not be read
    */
-  private byte[] readNumeric(final FieldTemplate field, final int length, final boolean negative, final DataInputStream input)
-      throws IOException {
-    // packed BCD, half length (rounded-up):
-    final byte[] data = readBytes((int) Math.ceil(length / 2.0), input);
-    String result = BCD.toString(data);
-    final int rlen = result.length();
-    if (rlen > length) // got left-padded zero when converted to BCD
-    {
-      result = result.substring(rlen - length, rlen);
-    }
-    if (field.getType().equals(FieldType.NUMSIGNED)) {
-      result = (negative ? "D" : "C") + result;
+  private byte[] readNumeric(final FieldTemplate field, final int length, final boolean negative, final ByteBuffer data) {
+    final boolean signed = field.getType().equals(FieldType.NUMSIGNED);
+    final byte[] result = new byte[length + (signed ? 1 : 0)];
+    if (signed) {
+      result[0] = (byte) (negative ? 'D' : 'C');
     }
-    return result.getBytes();
+    // skip the left-padded zero when an odd number of digits was converted to BCD
+    BCD.unpack(data, length, BCD.Padding.LEFT, result, signed ? 1 : 0);
+    return result;
   }
 
   /**
-   * Read binary track data from the input stream
-   * @param length of the field in the input
-   * @return character representation of the track data
-   * @throws IOException if the required amount of data could not be read
+   * Unpack binary track data, scanning its BCD digits (see {@link TrackScanner#bcd}) to locate
+   * the track within any sentinels
+   * @param data   the packed track data
+   * @param length number of BCD digits in the track data
+   * @return character representation of the track data; if it is not Track 2 data, all of
+   * its digits are returned, for the field's formatter to reject
    */
-  private byte[] readTrackData(final int length, final DataInputStream input)
+  private byte[] readTrackData(final ByteBuffer data, final int length)
       throws IOException {
-    final String name = "";
-    String pan = "";
-    String exdate = "";
-    String scode = "";
-    String descr = "";
-    final byte[] data = new byte[(int) Math.ceil(length / 2.0)];
-    input.readFully(data);
-    int pos = 0;
-    if (data[0] == 0x37) { // start sentinel
-      pos++;
-    }
-    for (; pos < data.length; pos++) {
-      final byte b = data[pos];
-      if ((b & 0xd0) == 0xd0) {
-        pan = BCD.toString(Arrays.copyOfRange(data, 0, pos));
-        break;
-      }
-      if ((b & 0x0d) == 0x0d) {
-        pan = BCD.toString(Arrays.copyOfRange(data, 0, pos))
-            + ((b & 0xf0) >> 4);
-        break;
-      }
-    }
-    exdate = BCD.toString(Arrays.copyOfRange(data, pos + 1, pos + 3));
-    scode = BCD.toString(Arrays.copyOfRange(data, pos + 3, pos + 3 + 2)).substring(0, 3);
-
-    return (pan + name + "=" + exdate + scode + descr).getBytes();
+    final CharSequence track = TrackScanner.bcd(data, length);
+    final TrackScanner scanner = new TrackScanner(track);
+    final CharSequence result = scanner.scan() != null
+        ? track.subSequence(scanner.getStart(), scanner.getEnd()) : track;
+    return charCodec.getBytes(result.toString());
   }
 
   /**
@@ -133,12 +140,17 @@ public class BCDMessageReader
   public MTI readMTI(final DataInputStream input)
       throws IOException {
     final byte[] data = readBytes(2, input);
-    final StringBuilder mti = new StringBuilder();
-    mti.append((char) (((data[0] & 0xf0) >> 4) + 0x30));
-    mti.append((char) ((data[0] & 0x0f) + 0x30));
-    mti.append((char) (((data[1] & 0xf0) >> 4) + 0x30));
-    mti.append((char) ((data[1] & 0x0f) + 0x30));
-    return MTI.create(mti.toString());
+    return MTI.create((data[0] & 0xff) << 8 | data[1] & 0xff);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public MTI readMTI(final ByteBuffer input)
+      throws IOException {
+    final ByteBuffer data = readSlice(2, input);
+    return MTI.create((data.get(0) & 0xff) << 8 | data.get(1) & 0xff);
   }
 
 }
@@ -1,15 +1,18 @@
 package org.nulleins.formats.iso8583.io;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.nulleins.formats.iso8583.FieldTemplate;
+import org.nulleins.formats.iso8583.MessageException;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
 import org.nulleins.formats.iso8583.types.BCD;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.MTI;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -18,6 +21,9 @@ import java.io.IOException;
  */
 public class BCDMessageWriter
     extends MessageWriter {
+  /** maximum size of a variable field's BCD length specifier */
+  private static final int MaxVarLengthSize = 2;
+
   /**
    * Instantiate a message writer that encodes numeric values as BCD, and
    * character data in the specified character set
@@ -31,7 +37,7 @@ public class BCDMessageWriter
    * {@inheritDoc}
    */
   @Override
-  public void appendMTI(final MTI type, final DataOutputStream output)
+  public void appendMTI(final MTI type, final OutputStream output)
       throws IOException {
     final int mti = type.intValue();
     write(new byte[]{(byte) (mti >> 8), (byte) mti}, output);
@@ -41,10 +47,9 @@ public class BCDMessageWriter
    * {@inheritDoc}
    */
   @Override
-  public void appendField(final FieldTemplate field, final Object data, final DataOutputStream output)
+  public void appendFormattedField(final FieldTemplate field, final byte[] inputValue, final OutputStream output)
       throws IOException {
     final Dimension dim = field.getDimension();
-    final byte[] inputValue = field.format(data);
     String fieldValue = charCodec.getString(inputValue);
     if (dim.getType() == Dimension.Type.VARIABLE) {
       write(getVarLengthSpecifier(dim.getVSize(), fieldValue), output);
@@ -54,17 +59,81 @@ public class BCDMessageWriter
       fieldValue = fieldValue.substring(1);
       //$FALL-THROUGH$
     }
-    final byte[] encodedValue;
     if (field.getType().equals(FieldType.NUMERIC) ||
         field.getType().equals(FieldType.NUMSIGNED) ||
         field.getType().equals(FieldType.DATE) ||
         field.getType().equals(FieldType.TIME) ||
         field.getType().equals(FieldType.EXDATE)) {
-      encodedValue = BCD.valueOf(fieldValue);
+      final byte[] encodedValue = new byte[(fieldValue.length() + 1) / 2];
+      BCD.pack(fieldValue, 0, fieldValue.length(), BCD.Padding.LEFT, encodedValue, 0);
+      write(encodedValue, output);
     } else {
-      encodedValue = fieldValue.getBytes();
+      write(charCodec.getBytes(fieldValue), output);
     }
-    write(encodedValue, output);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>The formatter writes the value's text into the buffer, after the space reserved for
+   * a variable field's length prefix; numeric values are then packed in place (numeric text
+   * is written in ASCII, other values in the message's charset)
+   */
+  @Override
+  public void appendField(
+      final FieldTemplate field, final BufferFormatter formatter, final Object value, final ByteBuffer output)
+      throws IOException {
+    final Dimension dim = field.getDimension();
+    final boolean variable = dim.getType() == Dimension.Type.VARIABLE;
+    final boolean numeric = isNumeric(field.getType());
+    final int start = output.position();
+    final int reserved = variable ? MaxVarLengthSize : 0;
+    if (output.remaining() < reserved) {
+      throw new BufferOverflowException();
+    }
+    output.position(start + reserved);
+    final int text = start + reserved;
+    final int length = field.format(formatter, value, numeric ? CharEncoder.ASCII : charCodec, output);
+    int out = start;
+    if (variable) {
+      out += writeVarLengthSpecifier(dim.getVSize(), length, output, start);
+    }
+    int from = text;
+    if (field.getType().equals(FieldType.NUMSIGNED)) {
+      output.put(out++, (byte) (output.get(from++) - 0x37)); // 'C' => 0xC and 'D' => 0xD
+    }
+    if (numeric) {
+      out += BCD.pack(output, from, text + length, BCD.Padding.LEFT, out);
+    } else {
+      for (; from < text + length; from++) {
+        output.put(out++, output.get(from));
+      }
+    }
+    output.position(out);
+  }
+
+  private static boolean isNumeric(final String type) {
+    return type.equals(FieldType.NUMERIC) ||
+        type.equals(FieldType.NUMSIGNED) ||
+        type.equals(FieldType.DATE) ||
+        type.equals(FieldType.TIME) ||
+        type.equals(FieldType.EXDATE);
+  }
+
+  /**
+   * Write the BCD length specifier for a variable-width field whose value is
+   * <code>valueLength</code> characters long into the buffer at absolute index <code>offset</code>
+   * @return the number of bytes written
+   * @throws MessageException if the length specifier is too long for the space reserved for it
+   */
+  private static int writeVarLengthSpecifier(
+      final int vsize, final int valueLength, final ByteBuffer output, final int offset) {
+    final int length = valueLength % 2 != 0 ? valueLength + 1 : valueLength;
+    final int size = Math.max((BCD.digits(length) + 1) / 2, vsize > 2 ? 2 : 1);
+    if (size > MaxVarLengthSize) {
+      throw new MessageException("Variable field length (" + valueLength + ") too long for BCD length specifier");
+    }
+    BCD.pack(length, output, offset, size);
+    return size;
   }
 
   /**
@@ -79,10 +148,10 @@ public class BCDMessageWriter
     if (length % 2 != 0) { // is odd
       length++;
     }
-    byte[] vspecifier = BCD.valueOf(length);
-    if (vsize > 2 && vspecifier.length < 2) { // LLLVAR: needs filler to make 2-byte length specifier
-      vspecifier = ArrayUtils.add(vspecifier, 0, (byte) 0);
-    }
+    // LLLVAR: needs filler to make 2-byte length specifier
+    final int size = Math.max((BCD.digits(length) + 1) / 2, vsize > 2 ? 2 : 1);
+    final byte[] vspecifier = new byte[size];
+    BCD.pack(length, vspecifier, 0, size);
     return vspecifier;
   }
 
@@ -7,6 +7,7 @@ import org.nulleins.formats.iso8583.types.MTI;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -29,8 +30,7 @@ public class CharMessageReader
   @Override
   public MTI readMTI(final DataInputStream input)
       throws IOException {
-    final byte[] data = readBytes(4, input);
-    return MTI.create(charCodec.getString(data));
+    return toMTI(ByteBuffer.wrap(readBytes(4, input)));
   }
 
   /**
@@ -51,5 +51,52 @@ public class CharMessageReader
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public MTI readMTI(final ByteBuffer input)
+      throws IOException {
+    return toMTI(readSlice(4, input));
+  }
+
+  /**
+   * Answer with the MTI encoded by the four characters remaining in the buffer supplied;
+   * in a single-byte charset, the MTI is resolved from the value of its
+   * digits, without decoding a String
+   * @throws IllegalArgumentException if the characters are not a valid MTI
+   */
+  private MTI toMTI(final ByteBuffer data) {
+    if (charCodec.isSingleByte()) {
+      int code = 0;
+      for (int i = data.position(); i < data.limit(); i++) {
+        final int digit = charCodec.decode(data.get(i)) - '0';
+        if (digit < 0 || digit > 9) {
+          return MTI.create(charCodec.getString(data));
+        }
+        code = code << 4 | digit;
+      }
+      return MTI.create(code);
+    }
+    return MTI.create(charCodec.getString(data));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer readField(final FieldTemplate field, final ByteBuffer input)
+      throws IOException {
+    int length = field.getDimension().getLength();
+    if (field.getDimension().getType() == Dimension.Type.VARIABLE) {
+      final ByteBuffer data = readSlice(field.getDimension().getVSize(), input);
+      length = Integer.parseInt(charCodec.getString(data));
+    }
+    try {
+      return readSlice(length, input);
+    } catch (final Exception e) {
+      throw new IOException("Failed to read field " + field + " from input buffer", e);
+    }
+  }
 
 }
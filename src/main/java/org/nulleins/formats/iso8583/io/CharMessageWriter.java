@@ -1,12 +1,16 @@
 package org.nulleins.formats.iso8583.io;
 
 import org.nulleins.formats.iso8583.FieldTemplate;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.MTI;
 import org.nulleins.formats.iso8583.types.Dimension;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -15,6 +19,9 @@ import java.io.IOException;
  */
 public class CharMessageWriter
     extends MessageWriter {
+  /** the digits 0-9 encoded in the charset, or null if not a single byte per digit */
+  private final byte[] digits;
+
   /**
    * Instantiate a character message writer that encodes the character
    * data in the specified character set
@@ -22,13 +29,20 @@ public class CharMessageWriter
    */
   public CharMessageWriter(final CharEncoder codec) {
     super.charCodec = codec;
+    byte[] encoded;
+    try {
+      encoded = codec.getBytes("0123456789");
+    } catch (final UnsupportedEncodingException e) {
+      encoded = null;
+    }
+    digits = encoded != null && encoded.length == 10 ? encoded : null;
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public void appendMTI(final MTI type, final DataOutputStream output)
+  public void appendMTI(final MTI type, final OutputStream output)
       throws IOException {
     write(type.toString(), output);
   }
@@ -37,9 +51,9 @@ public class CharMessageWriter
    * {@inheritDoc}
    */
   @Override
-  public void appendField(final FieldTemplate field, final Object data, final DataOutputStream output)
+  public void appendFormattedField(final FieldTemplate field, final byte[] value, final OutputStream output)
       throws IOException {
-    final byte[] fieldValue = charCodec.getBytes(field.format(data));
+    final byte[] fieldValue = charCodec.getBytes(value);
     final Dimension dim = field.getDimension();
     if (dim.getType() == Dimension.Type.VARIABLE) {
       final String vsize = String.format("%0" + dim.getVSize() + "d", fieldValue.length);
@@ -48,4 +62,68 @@ public class CharMessageWriter
     write(fieldValue, output);
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>The length of a variable field is only known once its value has been written, so
+   * space is reserved for the length prefix, which is filled-in after the value
+   */
+  @Override
+  public void appendField(
+      final FieldTemplate field, final BufferFormatter formatter, final Object value, final ByteBuffer output)
+      throws IOException {
+    final Dimension dim = field.getDimension();
+    if (dim.getType() != Dimension.Type.VARIABLE) {
+      field.format(formatter, value, charCodec, output);
+      return;
+    }
+    final int vsize = dim.getVSize();
+    final int start = output.position();
+    if (output.remaining() < vsize) {
+      throw new BufferOverflowException();
+    }
+    output.position(start + vsize);
+    final int length = field.format(formatter, value, charCodec, output);
+    final int end = output.position();
+    if (digits != null && length < limit(vsize)) {
+      output.position(start);
+      appendLength(length, vsize, output);
+      output.position(end);
+      return;
+    }
+    // length prefix does not fit in the space reserved: move the value to follow it
+    final byte[] data = new byte[length];
+    output.position(start + vsize);
+    output.get(data);
+    output.position(start);
+    appendLength(length, vsize, output);
+    output.put(data);
+  }
+
+  /** Answer with the smallest length that cannot be written in <code>vsize</code> digits */
+  private static int limit(final int vsize) {
+    int result = 1;
+    for (int i = 0; i < vsize; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+
+  /**
+   * Write the length of a variable field as (at least) <code>vsize</code> zero-padded digits
+   */
+  private void appendLength(final int length, final int vsize, final ByteBuffer output)
+      throws IOException {
+    if (digits == null) {
+      output.put(charCodec.getBytes(String.format("%0" + vsize + "d", length)));
+      return;
+    }
+    int divisor = 1;
+    for (int i = 1; i < vsize || divisor <= length / 10; i++) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      output.put(digits[length / divisor % 10]);
+    }
+  }
+
 }
@@ -1,6 +1,5 @@
 package org.nulleins.formats.iso8583.io;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.nulleins.formats.iso8583.FieldTemplate;
 import org.nulleins.formats.iso8583.types.Bitmap;
 import org.nulleins.formats.iso8583.types.BitmapType;
@@ -10,11 +9,17 @@ import org.nulleins.formats.iso8583.types.MTI;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 
 /**
- * Generic class to read ISO8583 message from a data stream; interpretation of
+ * Generic class to read ISO8583 message from a data stream or a byte buffer; interpretation of
  * numeric fields is deferred to specific subclasses (e.g., BCD, character)
+ * <p/>
+ * When reading from a byte buffer, each read starts at the buffer's current position and
+ * advances it past the data read; field values are returned as slices of the input buffer
+ * wherever their representation does not need to be changed
  * @author phillipsr
  */
 public abstract class MessageReader {
@@ -28,6 +33,15 @@ public abstract class MessageReader {
    */
   public abstract byte[] readField(FieldTemplate field, DataInputStream input) throws IOException;
 
+  /**
+   * Read the value of the supplied field from the input buffer
+   * @param field template describing the next field in the input
+   * @return the value of the field, as a buffer positioned at the start of the field's value
+   * and limited to its length
+   * @throws IOException if the required amount of data cannot be read
+   */
+  public abstract ByteBuffer readField(FieldTemplate field, ByteBuffer input) throws IOException;
+
   /**
    * Read the Message Type Indicator from the input stream
    * @return an MTI object representing the message type being read
@@ -35,6 +49,13 @@ public abstract class MessageReader {
    */
   public abstract MTI readMTI(DataInputStream input) throws IOException;
 
+  /**
+   * Read the Message Type Indicator from the input buffer
+   * @return an MTI object representing the message type being read
+   * @throws IOException if the required amount of data cannot be read
+   */
+  public abstract MTI readMTI(ByteBuffer input) throws IOException;
+
   /**
    * Read an ISO8583 bitmap from the input stream
    * @param bitmapType specifies if the bitmap is binary or hex (character data)
@@ -49,6 +70,55 @@ public abstract class MessageReader {
     return readHexBitmap(input);
   }
 
+  /**
+   * Read an ISO8583 bitmap from the input buffer
+   * @param bitmapType specifies if the bitmap is binary or hex (character data)
+   * @return a Bitmap object initialized from the input data
+   * @throws IOException if the required amount of data cannot be read
+   */
+  public Bitmap readBitmap(final BitmapType bitmapType, final ByteBuffer input)
+      throws IOException {
+    if (bitmapType == BitmapType.BINARY) {
+      return readBinaryBitmap(input);
+    }
+    return readHexBitmap(input);
+  }
+
+  /**
+   * Read a binary bitmap from the input buffer
+   * @return a Bitmap object initialized from the input data
+   * @throws IOException if the required amount of data cannot be read
+   */
+  private Bitmap readBinaryBitmap(final ByteBuffer input)
+      throws IOException {
+    final int start = input.position();
+    try {
+      return new Bitmap(input);
+    } catch (final BufferUnderflowException e) {
+      input.position(start);
+      throw new IOException("Failed to read binary bitmap from input buffer ("
+          + input.remaining() + " bytes remaining)", e);
+    }
+  }
+
+  /**
+   * Read a hex string bitmap from the input buffer
+   * @return a Bitmap object initialized from the input data
+   * @throws IOException if the required amount of data cannot be read
+   */
+  private Bitmap readHexBitmap(final ByteBuffer input)
+      throws IOException {
+    final Bitmap result = new Bitmap();
+    result.setHex(Bitmap.Id.PRIMARY, charCodec.getString(readSlice(16, input)));
+    if (result.isBitmapPresent(Bitmap.Id.SECONDARY)) {
+      result.setHex(Bitmap.Id.SECONDARY, charCodec.getString(readSlice(16, input)));
+      if (result.isBitmapPresent(Bitmap.Id.TERTIARY)) {
+        result.setHex(Bitmap.Id.TERTIARY, charCodec.getString(readSlice(16, input)));
+      }
+    }
+    return result;
+  }
+
   /**
    * Read a binary bitmap from the input stream
    * @return a Bitmap object initialized from the input data
@@ -57,18 +127,20 @@ public abstract class MessageReader {
   private Bitmap readBinaryBitmap(final DataInputStream input)
       throws IOException {
     // read the first bitmap
-    byte[] bitmap1 = readBytes(8, input);
+    final byte[] bitmap = new byte[24];
+    int size = 8;
+    input.readFully(bitmap, 0, 8);
     // read secondary bitmap (if present):
-    if ((bitmap1[0] & (byte) 0x80) != 0) {
-      final byte[] bitmap2 = readBytes(8, input);
-      bitmap1 = ArrayUtils.addAll(bitmap1, bitmap2);
+    if ((bitmap[0] & (byte) 0x80) != 0) {
+      input.readFully(bitmap, 8, 8);
+      size += 8;
       // read tertiary bitmap (if present):
-      if ((bitmap2[0] & (byte) 0x80) == 0x80) {
-        final byte[] bitmap3 = readBytes(8, input);
-        bitmap1 = ArrayUtils.addAll(bitmap1, bitmap3);
+      if ((bitmap[8] & (byte) 0x80) != 0) {
+        input.readFully(bitmap, 16, 8);
+        size += 8;
       }
     }
-    return new Bitmap(bitmap1);
+    return new Bitmap(ByteBuffer.wrap(bitmap, 0, size));
   }
 
   /**
@@ -78,20 +150,14 @@ public abstract class MessageReader {
    */
   private Bitmap readHexBitmap(final DataInputStream input)
       throws IOException {
-    // read the first bitmap
-    final String bitmap1 = charCodec.getString(readBytes(16, input));
-
-    Bitmap result = Bitmap.parse(bitmap1);
-
+    final Bitmap result = new Bitmap();
+    result.setHex(Bitmap.Id.PRIMARY, charCodec.getString(readBytes(16, input)));
     // read secondary bitmap (if present):
     if (result.isBitmapPresent(Bitmap.Id.SECONDARY)) {
-      final String bitmap2 = charCodec.getString(readBytes(16, input));
-      result = Bitmap.parse(bitmap1 + bitmap2);
-      ;
+      result.setHex(Bitmap.Id.SECONDARY, charCodec.getString(readBytes(16, input)));
       // read tertiary bitmap (if present):
       if (result.isBitmapPresent(Bitmap.Id.TERTIARY)) {
-        final String bitmap3 = charCodec.getString(readBytes(16, input));
-        result = Bitmap.parse(bitmap1 + bitmap2 + bitmap3);
+        result.setHex(Bitmap.Id.TERTIARY, charCodec.getString(readBytes(16, input)));
       }
     }
     return result;
@@ -110,7 +176,16 @@ public abstract class MessageReader {
     return charCodec.getString(data);
   }
 
-  ;
+  /**
+   * Read the header field from the input buffer
+   * @param size of the header to be read
+   * @return the header as a string
+   * @throws IOException if the required amount of data cannot be read
+   */
+  public String readHeader(final int size, final ByteBuffer input)
+      throws IOException {
+    return charCodec.getString(readSlice(size, input));
+  }
 
   /**
    * Helper method to read fully a number of bytes
@@ -129,4 +204,23 @@ public abstract class MessageReader {
     }
   }
 
+  /**
+   * Helper method to take a slice of a number of bytes from the input buffer,
+   * without copying the data
+   * @param size number of bytes to be read
+   * @return a new buffer sharing the input's content, from its current position for <code>size</code> bytes
+   * @throws IOException if the required amount of data is not available in the input buffer
+   */
+  protected ByteBuffer readSlice(final int size, final ByteBuffer input)
+      throws IOException {
+    if (size < 0 || size > input.remaining()) {
+      throw new IOException("Failed to read fully " + size + " bytes from input buffer ("
+          + input.remaining() + " bytes remaining)");
+    }
+    final ByteBuffer result = input.slice();
+    result.limit(size);
+    input.position(input.position() + size);
+    return result;
+  }
+
 }
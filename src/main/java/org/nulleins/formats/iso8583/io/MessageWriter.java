@@ -1,14 +1,16 @@
 package org.nulleins.formats.iso8583.io;
 
 import org.nulleins.formats.iso8583.FieldTemplate;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
 import org.nulleins.formats.iso8583.types.Bitmap;
 import org.nulleins.formats.iso8583.types.BitmapType;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.MTI;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -20,17 +22,17 @@ public abstract class MessageWriter {
   /** specifies the character encoding for text data (ASCII, EBCDIC) */
   protected CharEncoder charCodec;
 
-  protected void write(final String data, final DataOutputStream output)
+  protected void write(final String data, final OutputStream output)
       throws UnsupportedEncodingException, IOException {
     write(charCodec.getBytes(data), output);
   }
 
-  protected void write(final byte[] data, final DataOutputStream output)
+  protected void write(final byte[] data, final OutputStream output)
       throws UnsupportedEncodingException, IOException {
     output.write(data);
   }
 
-  protected void write(final byte data, final DataOutputStream output)
+  protected void write(final byte data, final OutputStream output)
       throws UnsupportedEncodingException, IOException {
     output.write(data);
   }
@@ -41,7 +43,7 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  public void appendHeader(final String header, final DataOutputStream output)
+  public void appendHeader(final String header, final OutputStream output)
       throws IOException {
     output.write(charCodec.getBytes(header));
   }
@@ -52,7 +54,7 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  public abstract void appendMTI(MTI type, DataOutputStream output) throws IOException;
+  public abstract void appendMTI(MTI type, OutputStream output) throws IOException;
 
   /**
    * Write the supplied field to the output stream
@@ -61,7 +63,34 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  public abstract void appendField(FieldTemplate field, Object data, DataOutputStream output) throws IOException;
+  public void appendField(final FieldTemplate field, final Object data, final OutputStream output)
+      throws IOException {
+    appendFormattedField(field, field.format(data), output);
+  }
+
+  /**
+   * Write the supplied field value, already formatted by the field's type formatter,
+   * to the output stream
+   * @param field  template describing field to be written
+   * @param value  formatted value of the field to output
+   * @param output stream to append data to
+   * @throws IOException if the data could not be written tot he output stream
+   */
+  public abstract void appendFormattedField(FieldTemplate field, byte[] value, OutputStream output)
+      throws IOException;
+
+  /**
+   * Write the supplied field to the output buffer, at its position, the formatter writing
+   * the field's value directly into the buffer rather than answering a formatted copy
+   * @param field     template describing field to be written
+   * @param formatter buffer formatter bound to the field's type
+   * @param value     value of the field to output
+   * @param output    buffer to append data to
+   * @throws IOException                      if the field could not be encoded
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  public abstract void appendField(FieldTemplate field, BufferFormatter formatter, Object value, ByteBuffer output)
+      throws IOException;
 
   /**
    * Write the supplied bitmap to the output stream
@@ -70,7 +99,7 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  public void appendBitmap(final Bitmap bitmap, final BitmapType type, final DataOutputStream output)
+  public void appendBitmap(final Bitmap bitmap, final BitmapType type, final OutputStream output)
       throws IOException {
     if (type == BitmapType.BINARY) {
       appendBinaryBitmap(bitmap, output);
@@ -85,7 +114,7 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  private void appendBinaryBitmap(final Bitmap bitmap, final DataOutputStream output)
+  private void appendBinaryBitmap(final Bitmap bitmap, final OutputStream output)
       throws IOException {
     output.write(bitmap.asBinary(Bitmap.Id.PRIMARY));
     if (bitmap.isBitmapPresent(Bitmap.Id.SECONDARY)) {
@@ -102,7 +131,7 @@ public abstract class MessageWriter {
    * @param output stream to append data to
    * @throws IOException if the data could not be written tot he output stream
    */
-  private void appendHexBitmap(final Bitmap bitmap, final DataOutputStream output)
+  private void appendHexBitmap(final Bitmap bitmap, final OutputStream output)
       throws IOException {
     final byte[] bitmap1 = charCodec.getBytes(bitmap.asHex(Bitmap.Id.PRIMARY));
     output.write(bitmap1);
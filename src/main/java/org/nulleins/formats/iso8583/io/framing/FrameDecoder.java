@@ -0,0 +1,157 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import org.nulleins.formats.iso8583.MessageException;
+import org.nulleins.formats.iso8583.MessageFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+
+/**
+ * Decoder splitting a stream of length-prefixed ISO8583 messages into frames, each parsed
+ * by a message factory and passed to a message handler
+ * <p/>
+ * Data read from a (typically non-blocking) channel is accumulated in a buffer allocated
+ * once for the decoder, large enough to hold the largest frame allowed, so partial frames
+ * are retained between reads; complete frames are parsed in place, from a slice of that
+ * buffer. A decoder holds the state of one connection, and is not thread-safe: it is
+ * intended to be used by the selector thread servicing the connection
+ * <p/>
+ * Where the factory parses lazily, each frame is copied before parsing, as the messages
+ * must not refer to the decoder's buffer, whose content is overwritten by later reads
+ * @author phillipsr
+ */
+public class FrameDecoder {
+  private final MessageFactory factory;
+  private final LengthHeader header;
+  private final int maxFrameLength;
+  /** accumulated data, in fill mode (position is the end of the data) between calls */
+  private final ByteBuffer buffer;
+
+  /**
+   * Instantiate a decoder for frames of up to the maximum length the header can represent
+   * @param factory used to parse the message in each frame
+   * @param header  type of length header prefixing each frame
+   */
+  public FrameDecoder(final MessageFactory factory, final LengthHeader header) {
+    this(factory, header, header != null ? header.getMaxLength() : 0);
+  }
+
+  /**
+   * Instantiate a decoder
+   * @param factory        used to parse the message in each frame
+   * @param header         type of length header prefixing each frame
+   * @param maxFrameLength largest message length accepted (excluding the header)
+   * @throws IllegalArgumentException if the factory or header is null, or the maximum length
+   *                                  is not positive or cannot be represented by the header
+   */
+  public FrameDecoder(final MessageFactory factory, final LengthHeader header, final int maxFrameLength) {
+    if (factory == null || header == null) {
+      throw new IllegalArgumentException("Message factory and length header are required");
+    }
+    if (maxFrameLength <= 0 || maxFrameLength > header.getMaxLength()) {
+      throw new IllegalArgumentException(
+          "Maximum frame length must be in the range 1.." + header.getMaxLength() + " for " + header + " header");
+    }
+    this.factory = factory;
+    this.header = header;
+    this.maxFrameLength = maxFrameLength;
+    this.buffer = ByteBuffer.allocateDirect(header.getSize() + maxFrameLength);
+  }
+
+  /**
+   * Read the data available from the channel, passing each message completed by the data to
+   * the handler
+   * @param channel from which to read (usually a non-blocking socket channel)
+   * @param handler to which each complete message is passed
+   * @return the number of bytes read, or -1 if the channel has reached end-of-stream
+   * @throws IOException      if reading from the channel fails
+   * @throws MessageException if a length header is invalid or exceeds the maximum frame length,
+   *                          in which case all the data buffered is discarded, as the frame
+   *                          boundary is unknown: data read subsequently is expected to start a
+   *                          frame. A frame whose message cannot be parsed or handled is passed to
+   *                          the handler's {@link MessageHandler#onError}, and the frames following
+   *                          it are decoded
+   */
+  public int read(final ReadableByteChannel channel, final MessageHandler handler)
+      throws IOException {
+    final int result = channel.read(buffer);
+    if (result > 0) {
+      decodeFrames(handler);
+    }
+    return result;
+  }
+
+  /**
+   * Decode the data supplied (e.g., read by other means than a channel), passing each message
+   * completed by the data to the handler; the input buffer's position is advanced to its limit
+   * @param input   data following that previously decoded
+   * @param handler to which each complete message is passed
+   * @throws MessageException if a length header is invalid or exceeds the maximum frame length;
+   *                          data is discarded, and frames in error are reported, as for {@link #read}
+   */
+  public void decode(final ByteBuffer input, final MessageHandler handler) {
+    while (input.hasRemaining()) {
+      final ByteBuffer chunk = input.duplicate();
+      chunk.limit(chunk.position() + Math.min(chunk.remaining(), buffer.remaining()));
+      buffer.put(chunk);
+      input.position(chunk.position());
+      decodeFrames(handler);
+    }
+  }
+
+  /** Answer with the number of bytes held of a frame not yet complete */
+  public int getPending() {
+    return buffer.position();
+  }
+
+  /**
+   * Parse each complete frame held in the buffer, retaining any incomplete frame for
+   * completion by subsequent reads; frames in error are passed to the handler's
+   * <code>onError</code>
+   */
+  private void decodeFrames(final MessageHandler handler) {
+    buffer.flip();
+    try {
+      final int headerSize = header.getSize();
+      while (buffer.remaining() >= headerSize) {
+        final int start = buffer.position();
+        final int length;
+        try {
+          length = header.read(buffer, start);
+        } catch (final MessageException e) {
+          buffer.position(buffer.limit()); // discard the data, as the frame boundary is unknown
+          throw e;
+        }
+        if (length > maxFrameLength) {
+          buffer.position(buffer.limit()); // discard the data, as the frame boundary is unknown
+          throw new MessageException(
+              "Frame length " + length + " exceeds maximum (" + maxFrameLength + ")");
+        }
+        final int end = start + headerSize + length;
+        if (end > buffer.limit()) {
+          break;
+        }
+        final ByteBuffer frame = buffer.duplicate();
+        frame.limit(end).position(start + headerSize);
+        buffer.position(end);
+        // a frame in error is reported, and the frames following it are still delivered
+        try {
+          handler.onMessage(factory.parse(factory.isLazy() ? copy(frame.duplicate()) : frame.slice()));
+        } catch (final IOException | RuntimeException e) {
+          handler.onError(frame.asReadOnlyBuffer(), e);
+        }
+      }
+    } finally {
+      buffer.compact();
+    }
+  }
+
+  private static ByteBuffer copy(final ByteBuffer frame) {
+    final byte[] result = new byte[frame.remaining()];
+    frame.get(result);
+    return ByteBuffer.wrap(result);
+  }
+
+}
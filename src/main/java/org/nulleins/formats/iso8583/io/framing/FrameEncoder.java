@@ -0,0 +1,93 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import org.nulleins.formats.iso8583.Message;
+import org.nulleins.formats.iso8583.MessageFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * Encoder writing ISO8583 messages as length-prefixed frames onto a (typically non-blocking)
+ * channel
+ * <p/>
+ * Messages are queued as a length header and the message data, which are written together
+ * with a gathering write, rather than copying the message data after the header; data the
+ * channel does not accept is retained until the next <code>flush</code>. An encoder holds the
+ * state of one connection, and is not thread-safe
+ * @author phillipsr
+ */
+public class FrameEncoder {
+  private final MessageFactory factory;
+  private final LengthHeader header;
+  /** headers and message data not yet written, in output order */
+  private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+
+  /**
+   * Instantiate an encoder
+   * @param factory used to format each message
+   * @param header  type of length header with which to prefix each message
+   * @throws IllegalArgumentException if the factory or header is null
+   */
+  public FrameEncoder(final MessageFactory factory, final LengthHeader header) {
+    if (factory == null || header == null) {
+      throw new IllegalArgumentException("Message factory and length header are required");
+    }
+    this.factory = factory;
+    this.header = header;
+  }
+
+  /**
+   * Queue the message for output, formatted with its length header
+   * @param message to be written
+   * @throws IllegalArgumentException if the message is too long for the length header
+   * @throws org.nulleins.formats.iso8583.MessageException if the message could not be formatted
+   */
+  public void enqueue(final Message message) {
+    enqueue(factory.getMessageData(message));
+  }
+
+  /**
+   * Queue the message data supplied for output, with its length header; the data is not
+   * copied, and must not be changed until it has been written
+   * @param data a formatted message
+   * @throws IllegalArgumentException if the message is too long for the length header
+   */
+  public void enqueue(final byte[] data) {
+    final ByteBuffer prefix = ByteBuffer.allocate(header.getSize());
+    header.write(data.length, prefix);
+    prefix.flip();
+    pending.add(prefix);
+    pending.add(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Write as much of the queued data as the channel will accept
+   * @param channel to write to
+   * @return true if all the queued data has been written; otherwise, the caller should
+   * flush again when the channel is ready for writing
+   * @throws IOException if writing to the channel fails
+   */
+  public boolean flush(final GatheringByteChannel channel)
+      throws IOException {
+    while (!pending.isEmpty()) {
+      final ByteBuffer[] buffers = pending.toArray(new ByteBuffer[pending.size()]);
+      if (channel.write(buffers) == 0) {
+        break;
+      }
+      while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+        pending.remove();
+      }
+    }
+    return pending.isEmpty();
+  }
+
+  /** Answer with true if there is queued data not yet written */
+  public boolean hasPending() {
+    return !pending.isEmpty();
+  }
+
+}
@@ -0,0 +1,115 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import org.nulleins.formats.iso8583.MessageException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Enumeration of the length headers used to frame ISO8583 messages on a stream
+ * transport; the length given in the header is that of the message following it,
+ * excluding the header itself
+ * @author phillipsr
+ */
+public enum LengthHeader {
+  /** two byte, big-endian unsigned binary length */
+  BINARY(2, 0xffff) {
+    @Override
+    public int read(final ByteBuffer input, final int index) {
+      return (input.get(index) & 0xff) << 8 | input.get(index + 1) & 0xff;
+    }
+
+    @Override
+    void encode(final int length, final ByteBuffer output) {
+      output.putShort((short) length);
+    }
+  },
+  /** four ASCII decimal digits */
+  ASCII(4, 9999) {
+    @Override
+    public int read(final ByteBuffer input, final int index) {
+      int result = 0;
+      for (int i = index; i < index + 4; i++) {
+        final int digit = input.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          throw new MessageException("Invalid ASCII length header: non-digit at offset " + (i - index));
+        }
+        result = result * 10 + digit;
+      }
+      return result;
+    }
+
+    @Override
+    void encode(final int length, final ByteBuffer output) {
+      for (int divisor = 1000; divisor > 0; divisor /= 10) {
+        output.put((byte) ('0' + length / divisor % 10));
+      }
+    }
+  },
+  /** two byte packed BCD, four decimal digits */
+  BCD(2, 9999) {
+    @Override
+    public int read(final ByteBuffer input, final int index) {
+      int result = 0;
+      for (int i = index; i < index + 2; i++) {
+        final int value = input.get(i) & 0xff;
+        final int high = value >> 4;
+        final int low = value & 0x0f;
+        if (high > 9 || low > 9) {
+          throw new MessageException("Invalid BCD length header: non-decimal nibble at offset " + (i - index));
+        }
+        result = result * 100 + high * 10 + low;
+      }
+      return result;
+    }
+
+    @Override
+    void encode(final int length, final ByteBuffer output) {
+      output.put((byte) ((length / 1000) << 4 | length / 100 % 10));
+      output.put((byte) ((length / 10 % 10) << 4 | length % 10));
+    }
+  };
+
+  private final int size;
+  private final int maxLength;
+
+  private LengthHeader(final int size, final int maxLength) {
+    this.size = size;
+    this.maxLength = maxLength;
+  }
+
+  /** Answer with the size of this header, in bytes */
+  public int getSize() {
+    return size;
+  }
+
+  /** Answer with the largest message length this header can represent */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * Read the message length from the header held in the input buffer at <code>index</code>;
+   * the buffer's position is not changed
+   * @param input buffer holding the complete header
+   * @param index of the first byte of the header
+   * @return the length of the message following the header
+   * @throws MessageException if the header is not a valid length
+   */
+  public abstract int read(ByteBuffer input, int index);
+
+  /**
+   * Write a header for a message of <code>length</code> bytes at the output buffer's position,
+   * advancing the position past the header
+   * @throws IllegalArgumentException if the length cannot be represented by this header
+   */
+  public void write(final int length, final ByteBuffer output) {
+    if (length < 0 || length > maxLength) {
+      throw new IllegalArgumentException(
+          "Message length " + length + " cannot be represented by " + this + " header (max " + maxLength + ")");
+    }
+    encode(length, output);
+  }
+
+  abstract void encode(int length, ByteBuffer output);
+
+}
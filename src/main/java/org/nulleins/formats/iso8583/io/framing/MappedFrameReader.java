@@ -0,0 +1,222 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import org.nulleins.formats.iso8583.MessageException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Reader for files of length-prefixed ISO8583 messages, e.g., batch or log files, that
+ * memory-maps the file and answers each frame as a slice of the mapping, so that message
+ * data is not copied onto the heap; each frame can be parsed directly with
+ * <code>MessageFactory.parse(ByteBuffer)</code>
+ * <p/>
+ * As a single mapping is limited to 2GB, the file is mapped in regions; each region overlaps
+ * the next by the largest frame the header allows, so that every frame lies entirely within
+ * the region in which it starts, and files of any size can be read
+ * <p/>
+ * The frames can be read sequentially, with the reader's iterator, or in parallel, with its
+ * spliterator (or <code>frames(true)</code>): this first locates every frame by scanning the
+ * length headers, and then splits the frames evenly by count. The frames answered remain valid
+ * after the reader is closed, as a mapping persists until its buffers are garbage collected
+ * @author phillipsr
+ */
+public class MappedFrameReader
+    implements Iterable<ByteBuffer>, Closeable {
+  /** size of each mapped region, excluding the overlap with the next region */
+  private static final int REGION_SIZE = 1 << 30;
+
+  private final FileChannel channel;
+  private final LengthHeader header;
+  private final long size;
+  private final int regionSize;
+  private final ByteBuffer[] regions;
+
+  /**
+   * Open and map the file supplied
+   * @param file   holding framed messages
+   * @param header type of length header prefixing each message
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedFrameReader(final Path file, final LengthHeader header)
+      throws IOException {
+    this(file, header, REGION_SIZE);
+  }
+
+  /**
+   * Open and map the file supplied, in regions of the size specified
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  MappedFrameReader(final Path file, final LengthHeader header, final int regionSize)
+      throws IOException {
+    if (header == null) {
+      throw new IllegalArgumentException("Length header cannot be null");
+    }
+    this.header = header;
+    this.regionSize = regionSize;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      size = channel.size();
+      final long overlap = header.getSize() + header.getMaxLength();
+      regions = new ByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+      for (int i = 0; i < regions.length; i++) {
+        final long start = (long) i * regionSize;
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize + overlap, size - start));
+      }
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Answer with the size of the file, in bytes */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Answer with an iterator over the frames in the file, in file order; the iterator's
+   * <code>next()</code> throws a <code>MessageException</code> if the next frame is truncated or
+   * has an invalid length header
+   */
+  @Override
+  public Iterator<ByteBuffer> iterator() {
+    return new Iterator<ByteBuffer>() {
+      private long offset;
+
+      @Override
+      public boolean hasNext() {
+        return offset < size;
+      }
+
+      @Override
+      public ByteBuffer next() {
+        if (offset >= size) {
+          throw new NoSuchElementException();
+        }
+        final ByteBuffer result = frameAt(offset);
+        offset += header.getSize() + result.remaining();
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Answer with a spliterator over the frames in the file, having first located each frame
+   * @throws MessageException if a frame is truncated or has an invalid length header
+   */
+  @Override
+  public Spliterator<ByteBuffer> spliterator() {
+    long[] offsets = new long[1024];
+    int count = 0;
+    for (long offset = 0; offset < size; offset += header.getSize() + frameAt(offset).remaining()) {
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count * 2);
+      }
+      offsets[count++] = offset;
+    }
+    return new FrameSpliterator(offsets, 0, count);
+  }
+
+  /**
+   * Answer with a stream of the frames in the file
+   * @param parallel if true, answer with a parallel stream
+   */
+  public Stream<ByteBuffer> frames(final boolean parallel) {
+    return StreamSupport.stream(spliterator(), parallel);
+  }
+
+  /**
+   * Close the file; the frames already answered remain valid
+   */
+  @Override
+  public void close()
+      throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Answer with the frame whose length header is at <code>offset</code>, as a slice of the
+   * region in which it starts
+   * @throws MessageException if the frame is truncated, or its length header is invalid
+   */
+  private ByteBuffer frameAt(final long offset) {
+    final int index = (int) (offset / regionSize);
+    final ByteBuffer region = regions[index];
+    final int start = (int) (offset - (long) index * regionSize);
+    if (start + header.getSize() > region.limit()) {
+      throw new MessageException("Truncated length header at offset " + offset);
+    }
+    final int end = start + header.getSize() + header.read(region, start);
+    if (end > region.limit()) {
+      throw new MessageException("Truncated frame at offset " + offset);
+    }
+    final ByteBuffer result = region.duplicate();
+    result.limit(end).position(start + header.getSize());
+    return result.slice();
+  }
+
+  /** Spliterator over a range of the located frames */
+  private final class FrameSpliterator
+      implements Spliterator<ByteBuffer> {
+    private final long[] offsets;
+    private int from;
+    private final int to;
+
+    private FrameSpliterator(final long[] offsets, final int from, final int to) {
+      this.offsets = offsets;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super ByteBuffer> action) {
+      if (from >= to) {
+        return false;
+      }
+      action.accept(frameAt(offsets[from++]));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super ByteBuffer> action) {
+      while (from < to) {
+        action.accept(frameAt(offsets[from++]));
+      }
+    }
+
+    @Override
+    public Spliterator<ByteBuffer> trySplit() {
+      final int middle = (from + to) >>> 1;
+      if (middle <= from) {
+        return null;
+      }
+      final Spliterator<ByteBuffer> result = new FrameSpliterator(offsets, from, middle);
+      from = middle;
+      return result;
+    }
+
+    @Override
+    public long estimateSize() {
+      return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+  }
+
+}
@@ -0,0 +1,28 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import org.nulleins.formats.iso8583.Message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Callback to which each message decoded from a framed stream is passed
+ * @author phillipsr
+ */
+public interface MessageHandler {
+
+  /**
+   * Handle a message decoded from the stream
+   * @param message the message parsed from a complete frame
+   */
+  void onMessage(Message message);
+
+  /**
+   * Handle a complete frame whose message could not be parsed, or for which
+   * {@link #onMessage} failed; decoding continues with the next frame
+   * @param frame read-only view of the frame's message data (excluding the length header),
+   *              only valid for the duration of the call
+   * @param cause the exception thrown parsing or handling the message
+   */
+  void onError(ByteBuffer frame, Exception cause);
+
+}
@@ -0,0 +1,44 @@
+package org.nulleins.formats.iso8583.spring;
+
+import org.nulleins.formats.iso8583.MessageFactory;
+import org.nulleins.formats.iso8583.SchemaArchive;
+import org.springframework.context.support.GenericXmlApplicationContext;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Command-line tool creating a {@link SchemaArchive} from a message factory defined in a
+ * Spring schema definition:
+ * <pre>java org.nulleins.formats.iso8583.spring.SchemaArchiver &lt;context-xml&gt; &lt;archive-file&gt; [factory-bean-id]</pre>
+ * where the context is a Spring resource location (e.g., <code>classpath:schema.xml</code>)
+ * @author phillipsr
+ */
+public final class SchemaArchiver {
+
+  private SchemaArchiver() {
+  }
+
+  /**
+   * Create a schema archive from a message factory defined in a Spring context
+   * @param args Spring context resource location, archive file name and (optionally)
+   *             the bean id of the factory, if the context defines more than one
+   */
+  public static void main(final String[] args)
+      throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("usage: SchemaArchiver <context-xml> <archive-file> [factory-bean-id]");
+      System.exit(1);
+    }
+    try (final GenericXmlApplicationContext context = new GenericXmlApplicationContext(args[0]);
+         final OutputStream output = new FileOutputStream(args[1])) {
+      final MessageFactory factory = args.length == 3
+          ? context.getBean(args[2], MessageFactory.class)
+          : context.getBean(MessageFactory.class);
+      SchemaArchive.write(factory, output);
+    }
+  }
+
+}
@@ -54,6 +54,14 @@ public class SchemaDefinitionParser
     messageSet.addPropertyValue("id", element.getAttribute("id"));
     messageSet.addPropertyValue("header", element.getAttribute("header"));
     messageSet.addPropertyValue("strict", element.getAttribute("strict"));
+    final String lazy = element.getAttribute("lazy");
+    if (!lazy.isEmpty()) {
+      messageSet.addPropertyValue("lazy", lazy);
+    }
+    final String longNumbers = element.getAttribute("longNumbers");
+    if (!longNumbers.isEmpty()) {
+      messageSet.addPropertyValue("longNumbers", longNumbers);
+    }
     final BitmapType bitmapType = BitmapType.valueOf(element.getAttribute("bitmapType").trim().toUpperCase());
     messageSet.addPropertyValue("bitmapType", bitmapType.toString());
     final ContentType contentType = ContentType.valueOf(element.getAttribute("contentType").trim().toUpperCase());
@@ -0,0 +1,164 @@
+package org.nulleins.formats.iso8583.spring;
+
+import org.nulleins.formats.iso8583.MessageFactory;
+import org.nulleins.formats.iso8583.SchemaDiff;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Watcher of a schema definition file (a Spring context file holding an <code>&lt;iso:schema&gt;</code>),
+ * that reloads the message templates of a live message factory whenever the file is changed
+ * <p/>
+ * The file is checked for changes periodically, on a background thread; when changed, the schema
+ * is parsed and compiled on that thread, and then atomically replaces the factory's templates (see
+ * {@link MessageFactory#reload}), so that messages being parsed or written complete with the
+ * previous schema. If the changed schema cannot be loaded, the factory's schema is unchanged, and
+ * the file is next reloaded when changed again
+ * <p/>
+ * Only the message templates are reloaded: the factory's other properties (header, content type,
+ * etc.) and its formatters are unchanged; the templates' field types must be those of formatters
+ * registered in the factory
+ * @author phillipsr
+ */
+public class SchemaReloader {
+  private final MessageFactory factory;
+  private final File file;
+  private final String beanId;
+  private Listener listener;
+  private ScheduledExecutorService executor;
+  /** modification time and length of the file when last loaded, guarded by this reloader's monitor */
+  private long lastModified;
+  private long lastLength;
+
+  /**
+   * Receiver of the outcome of each reload
+   */
+  public interface Listener {
+    /** The schema was reloaded, with the differences summarized */
+    void reloaded(SchemaDiff diff);
+
+    /** The schema could not be reloaded, and the factory's schema is unchanged */
+    void failed(File file, Exception cause);
+  }
+
+  /**
+   * @param factory (initialized) whose schema is to be reloaded
+   * @param file    holding the schema definition, which must define a single message factory
+   */
+  public SchemaReloader(final MessageFactory factory, final File file) {
+    this(factory, file, null);
+  }
+
+  /**
+   * @param factory (initialized) whose schema is to be reloaded
+   * @param file    holding the schema definition
+   * @param beanId  id of the schema in the file, if it defines more than one (may be null)
+   */
+  public SchemaReloader(final MessageFactory factory, final File file, final String beanId) {
+    if (factory == null || file == null) {
+      throw new IllegalArgumentException("Message factory and schema file cannot be null");
+    }
+    this.factory = factory;
+    this.file = file;
+    this.beanId = beanId;
+  }
+
+  public synchronized void setListener(final Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Start checking the schema file for changes, every <code>period</code> milliseconds;
+   * the file as it is when started is taken as that already loaded by the factory
+   * @throws IllegalStateException if already started
+   */
+  public synchronized void start(final long period) {
+    if (executor != null) {
+      throw new IllegalStateException("Schema reloader already started for: " + file);
+    }
+    lastModified = file.lastModified();
+    lastLength = file.length();
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable task) {
+        final Thread result = new Thread(task, "iso8583-schema-reloader");
+        result.setDaemon(true);
+        return result;
+      }
+    });
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        checkForChanges();
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop checking the schema file for changes; a reload in progress is completed */
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Reload the schema, if the file has changed since last loaded
+   * @return the differences, or null if the file has not changed or could not be reloaded
+   */
+  public synchronized SchemaDiff checkForChanges() {
+    final long modified = file.lastModified();
+    final long length = file.length();
+    if (modified == lastModified && length == lastLength) {
+      return null;
+    }
+    lastModified = modified;
+    lastLength = length;
+    try {
+      return reload();
+    } catch (final RuntimeException e) {
+      return null; // reported to the listener
+    }
+  }
+
+  /**
+   * Reload the schema from the file, whether changed or not, notifying the listener
+   * @return the differences between the previous and reloaded schemas
+   * @throws RuntimeException if the schema could not be loaded or compiled, in which case the
+   *                          factory's schema is unchanged
+   */
+  public synchronized SchemaDiff reload() {
+    try {
+      final SchemaDiff result = factory.reload(load().getMessages());
+      if (listener != null) {
+        listener.reloaded(result);
+      }
+      return result;
+    } catch (final RuntimeException e) {
+      if (listener != null) {
+        listener.failed(file, e);
+      }
+      throw e;
+    }
+  }
+
+  /** Answer with the message factory defined in the schema file */
+  private MessageFactory load() {
+    final GenericXmlApplicationContext context = new GenericXmlApplicationContext();
+    try {
+      context.load(new FileSystemResource(file));
+      context.refresh();
+      return beanId != null ? context.getBean(beanId, MessageFactory.class) : context.getBean(MessageFactory.class);
+    } finally {
+      context.close();
+    }
+  }
+
+}
@@ -1,18 +1,39 @@
 package org.nulleins.formats.iso8583.types;
 
-import org.apache.commons.lang.ArrayUtils;
-
 import java.math.BigInteger;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
 
 /**
  * Utilities to manipulate (Packed) Binary Coded Decimal values, as no standard
  * third-party library found (mail me if you know of one...)
+ * <p/>
+ * Values are packed and unpacked directly between longs or character sequences and
+ * a caller-supplied byte array or buffer region; unpacking uses a lookup table giving
+ * the two digit characters of each of the 256 byte values
  * @author Converted from an old C library (author unknown)
  */
 public class BCD {
-  /** regex to validate values passed in as strings */
-  private static final Pattern NumberMatcher = Pattern.compile("[0-9]*");
+  /**
+   * Where the filler nibble is placed when an odd number of digits is packed into
+   * whole bytes
+   */
+  public enum Padding {
+    /** filler precedes the digits (value is right-justified, as for numbers) */
+    LEFT,
+    /** filler follows the digits (value is left-justified) */
+    RIGHT
+  }
+
+  /** the digit characters for each byte value: byte b is at [2b] and [2b + 1] */
+  private static final char[] Digits = new char[512];
+  private static final char[] Nibbles = "0123456789ABCDEF".toCharArray();
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      Digits[b * 2] = Nibbles[b >> 4];
+      Digits[b * 2 + 1] = Nibbles[b & 0x0f];
+    }
+  }
 
   /**
    * Answer with a byte array being the BCD representation of the numberic string supplied
@@ -25,14 +46,11 @@ public class BCD {
       throw new IllegalArgumentException("Cannot convert <null> to BCD");
     }
     final String candidate = value.trim();
-    if (!NumberMatcher.matcher(candidate).matches()) {
-      throw new IllegalArgumentException("Can only convert strings of digits to BCD");
-    }
-    byte[] result = valueOf(new BigInteger(candidate));
-    final int vlength = candidate.length() / 2;
-    while (result.length < vlength) {
-      result = ArrayUtils.add(result, 0, (byte) 0);
+    if (candidate.isEmpty()) {
+      throw new IllegalArgumentException("Cannot convert empty string to BCD");
     }
+    final byte[] result = new byte[(candidate.length() + 1) / 2];
+    pack(candidate, 0, candidate.length(), Padding.LEFT, result, 0);
     return result;
   }
 
@@ -40,24 +58,11 @@ public class BCD {
    * Answer with a byte array being the BCD representation of the long supplied
    * @param value
    * @return
+   * @throws IllegalArgumentException if the value is negative
    */
   public static byte[] valueOf(final long value) {
-    final int nbDigits = (int) (Math.log10(value) + 1);
-    final int bytes = nbDigits % 2 == 0 ? nbDigits / 2 : (nbDigits + 1) / 2;
-    final byte[] result = new byte[bytes];
-    long candidate = value;
-    for (int i = 0; i < nbDigits; i++) {
-      byte register = (byte) (candidate % 10);
-      candidate /= 10;
-      if ((i % 2 == 0) || (i == nbDigits - 1 && (nbDigits % 2 != 0))) {
-        result[i / 2] = register;
-        continue;
-      }
-      register = (byte) (register << 4);
-      result[i / 2] |= register;
-    }
-
-    swapOrder(bytes, result);
+    final byte[] result = new byte[(digits(value) + 1) / 2];
+    pack(value, result, 0, result.length);
     return result;
   }
 
@@ -65,38 +70,207 @@ public class BCD {
    * Answer with a byte array being the BCD representation of the BigInteger supplied
    * @param value
    * @return
-   * @throws IllegalArgumentException if the value is null
+   * @throws IllegalArgumentException if the value is null or negative
    */
   public static byte[] valueOf(final BigInteger value) {
     if (value == null) {
       throw new IllegalArgumentException("Cannot convert <null> to BCD");
     }
-    BigInteger candidate = value;
-    int nbDigits = (int) (Math.log10(candidate.doubleValue()) + 1);
-    int bytes = nbDigits % 2 == 0 ? nbDigits / 2 : (nbDigits + 1) / 2;
-    byte result[] = new byte[bytes];
-
-    for (int i = 0; i < nbDigits; i++) {
-      byte register = candidate.mod(BigInteger.TEN).byteValue();
-      candidate = candidate.divide(BigInteger.TEN);
-      if ((i % 2 == 0) || (i == nbDigits - 1 && (nbDigits % 2 != 0))) {
-        result[i / 2] = register;
-        continue;
-      }
-      register = (byte) (register << 4);
-      result[i / 2] |= register;
+    if (value.bitLength() < 64) {
+      return valueOf(value.longValue());
+    }
+    return valueOf(value.toString());
+  }
+
+  /**
+   * Answer with the number of decimal digits in the (non-negative) value supplied
+   * @throws IllegalArgumentException if the value is negative
+   */
+  public static int digits(final long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Cannot convert negative value to BCD: " + value);
+    }
+    int result = 1;
+    for (long limit = 10; result < 19 && value >= limit; limit *= 10) {
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * Pack the value supplied into <code>length</code> bytes of <code>dest</code>, starting at
+   * <code>offset</code>, right-justified and left-padded with zeros
+   * @param value  non-negative value to pack
+   * @param dest   array to receive the BCD value
+   * @param offset of the first byte to write
+   * @param length number of bytes to write
+   * @throws IllegalArgumentException if the value is negative or requires more than
+   *                                  <code>length</code> bytes
+   */
+  public static void pack(final long value, final byte[] dest, final int offset, final int length) {
+    if (digits(value) > length * 2) {
+      throw new IllegalArgumentException("Value " + value + " cannot be packed into " + length + " BCD bytes");
+    }
+    long candidate = value;
+    for (int i = offset + length - 1; i >= offset; i--) {
+      final int low = (int) (candidate % 10);
+      candidate /= 10;
+      final int high = (int) (candidate % 10);
+      candidate /= 10;
+      dest[i] = (byte) ((high << 4) | low);
+    }
+  }
+
+  /**
+   * Pack the digits <code>from</code> (inclusive) <code>to</code> (exclusive) of the character
+   * sequence supplied into <code>dest</code>, starting at <code>offset</code>; an odd number
+   * of digits is padded with a zero nibble placed as specified by <code>padding</code>
+   * @return the number of bytes written
+   * @throws IllegalArgumentException if any of the characters is not a decimal digit
+   */
+  public static int pack(
+      final CharSequence digits, final int from, final int to,
+      final Padding padding, final byte[] dest, final int offset) {
+    int out = offset;
+    int i = from;
+    if ((to - from) % 2 != 0 && padding == Padding.LEFT) {
+      dest[out++] = (byte) digit(digits, i++);
+    }
+    for (; i + 1 < to; i += 2) {
+      dest[out++] = (byte) ((digit(digits, i) << 4) | digit(digits, i + 1));
+    }
+    if (i < to) { // odd number of digits, right padded
+      dest[out++] = (byte) (digit(digits, i) << 4);
+    }
+    return out - offset;
+  }
+
+  /**
+   * Pack the digits of the character sequence supplied into the buffer, at its position,
+   * advancing the position past the bytes written
+   * @throws IllegalArgumentException if any of the characters is not a decimal digit
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  public static void pack(final CharSequence digits, final Padding padding, final ByteBuffer dest) {
+    final int length = digits.length();
+    int i = 0;
+    if (length % 2 != 0 && padding == Padding.LEFT) {
+      dest.put((byte) digit(digits, i++));
+    }
+    for (; i + 1 < length; i += 2) {
+      dest.put((byte) ((digit(digits, i) << 4) | digit(digits, i + 1)));
     }
+    if (i < length) {
+      dest.put((byte) (digit(digits, i) << 4));
+    }
+  }
+
+  /**
+   * Pack the (ASCII) digit characters held in the buffer between the absolute indexes
+   * <code>from</code> (inclusive) and <code>to</code> (exclusive), writing the BCD value into the
+   * same buffer, starting at absolute index <code>offset</code>; as the packed value is never
+   * longer than the digits, it may be packed in place (<code>offset &lt;= from</code>). The
+   * buffer's position is not changed
+   * @return the number of bytes written
+   * @throws IllegalArgumentException if any of the characters is not a decimal digit
+   */
+  public static int pack(
+      final ByteBuffer buffer, final int from, final int to, final Padding padding, final int offset) {
+    int out = offset;
+    int i = from;
+    if ((to - from) % 2 != 0 && padding == Padding.LEFT) {
+      buffer.put(out++, (byte) digit(buffer, i++));
+    }
+    for (; i + 1 < to; i += 2) {
+      buffer.put(out++, (byte) ((digit(buffer, i) << 4) | digit(buffer, i + 1)));
+    }
+    if (i < to) {
+      buffer.put(out++, (byte) (digit(buffer, i) << 4));
+    }
+    return out - offset;
+  }
 
-    swapOrder(bytes, result);
+  /**
+   * Pack the value supplied into <code>length</code> bytes of the buffer, starting at absolute
+   * index <code>offset</code>, right-justified and left-padded with zeros; the buffer's position
+   * is not changed
+   * @throws IllegalArgumentException if the value is negative or requires more than
+   *                                  <code>length</code> bytes
+   */
+  public static void pack(final long value, final ByteBuffer dest, final int offset, final int length) {
+    if (digits(value) > length * 2) {
+      throw new IllegalArgumentException("Value " + value + " cannot be packed into " + length + " BCD bytes");
+    }
+    long candidate = value;
+    for (int i = offset + length - 1; i >= offset; i--) {
+      final int low = (int) (candidate % 10);
+      candidate /= 10;
+      final int high = (int) (candidate % 10);
+      candidate /= 10;
+      dest.put(i, (byte) ((high << 4) | low));
+    }
+  }
+
+  private static int digit(final ByteBuffer digits, final int index) {
+    final int result = digits.get(index) - '0';
+    if (result < 0 || result > 9) {
+      throw new IllegalArgumentException("Can only convert strings of digits to BCD");
+    }
     return result;
   }
 
-  private static void swapOrder(final int bytes, final byte[] result) {
-    for (int i = 0; i < bytes / 2; i++) {
-      final byte register = result[i];
-      result[i] = result[bytes - i - 1];
-      result[bytes - i - 1] = register;
+  private static int digit(final CharSequence digits, final int index) {
+    final int result = digits.charAt(index) - '0';
+    if (result < 0 || result > 9) {
+      throw new IllegalArgumentException("Can only convert strings of digits to BCD");
     }
+    return result;
+  }
+
+  /**
+   * Unpack <code>count</code> digits from the BCD value held in the remaining content of the
+   * buffer, as (ASCII) digit characters into <code>dest</code> starting at <code>offset</code>;
+   * where the buffer holds more digits than required, the filler digits are skipped from the
+   * side specified by <code>padding</code>. The buffer's position is not changed
+   * @return the number of digits written
+   * @throws IllegalArgumentException if the buffer holds fewer than <code>count</code> digits
+   */
+  public static int unpack(
+      final ByteBuffer bcd, final int count, final Padding padding, final byte[] dest, final int offset) {
+    final int available = bcd.remaining() * 2;
+    if (count > available) {
+      throw new IllegalArgumentException(
+          "BCD value holds " + available + " digits, " + count + " required");
+    }
+    final int start = bcd.position() * 2 + (padding == Padding.LEFT ? available - count : 0);
+    for (int i = 0; i < count; i++) {
+      final int nibble = start + i;
+      dest[offset + i] = (byte) Digits[(bcd.get(nibble >> 1) & 0xff) * 2 + (nibble & 1)];
+    }
+    return count;
+  }
+
+  /**
+   * Answer with the value of the BCD number held in the remaining content of the buffer;
+   * the buffer's position is not changed
+   * @throws IllegalArgumentException if the buffer holds more than 18 digits, or a nibble
+   *                                  is not a decimal digit
+   */
+  public static long toLong(final ByteBuffer bcd) {
+    if (bcd.remaining() > 9) {
+      throw new IllegalArgumentException("BCD value too long to convert to long: " + toString(bcd));
+    }
+    long result = 0;
+    for (int i = bcd.position(); i < bcd.limit(); i++) {
+      final int value = bcd.get(i) & 0xff;
+      final int high = value >> 4;
+      final int low = value & 0x0f;
+      if (high > 9 || low > 9) {
+        throw new IllegalArgumentException("Invalid BCD digit in value: " + toString(bcd));
+      }
+      result = result * 100 + high * 10 + low;
+    }
+    return result;
   }
 
   /**
@@ -106,21 +280,42 @@ public class BCD {
    * @return
    */
   public static String toString(final byte value) {
-    byte[] nibbles = new byte[2];
-    nibbles[1] = (byte) ((value & 0x0f));
-    byte b = (byte) (value & 0xf0);
-    b >>>= 4;
-    nibbles[0] = (byte) ((b & 0x0f));
-    return "" + nibbles[0] + nibbles[1];
+    return new String(Digits, (value & 0xff) * 2, 2);
+  }
+
+  /**
+   * Append the two digits of the BCD (byte) value supplied to the target
+   * @return the target
+   */
+  public static StringBuilder append(final StringBuilder target, final byte value) {
+    final int index = (value & 0xff) * 2;
+    return target.append(Digits[index]).append(Digits[index + 1]);
   }
 
   public static String toString(final byte[] bcd) {
-    StringBuilder result = new StringBuilder();
-    for (byte b : bcd) {
-      result.append(toString(b));
+    final char[] result = new char[bcd.length * 2];
+    for (int i = 0; i < bcd.length; i++) {
+      final int index = (bcd[i] & 0xff) * 2;
+      result[i * 2] = Digits[index];
+      result[i * 2 + 1] = Digits[index + 1];
     }
+    return new String(result);
+  }
 
-    return result.toString();
+  /**
+   * Answer with a string representation of the BCD value held in the remaining
+   * content of the buffer supplied; the buffer's position is not changed
+   * @param bcd
+   * @return
+   */
+  public static String toString(final ByteBuffer bcd) {
+    final char[] result = new char[bcd.remaining() * 2];
+    for (int i = bcd.position(), out = 0; i < bcd.limit(); i++) {
+      final int index = (bcd.get(i) & 0xff) * 2;
+      result[out++] = Digits[index];
+      result[out++] = Digits[index + 1];
+    }
+    return new String(result);
   }
 
-}
\ No newline at end of file
+}
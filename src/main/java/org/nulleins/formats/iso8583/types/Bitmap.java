@@ -1,17 +1,33 @@
 package org.nulleins.formats.iso8583.types;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.BitSet;
-import java.util.regex.Pattern;
 
 
 /**
  * Implementation of the ISO8583 bitmap type, with facilities to create, parse and format a
  * message's bitmap in a number of formats
+ * <p/>
+ * Each of the three bitmaps is held in a <code>long</code>, with the bit for the first field
+ * of the bitmap in the least significant position, so that the fields present can be iterated
+ * with <code>nextSetField</code>
  * @author phillipsr
  */
 public class Bitmap {
-  private static final Pattern HexMatcher = Pattern.compile("[0-9A-Fa-f]+");
+  private static final char[] HexDigits = "0123456789ABCDEF".toCharArray();
+  /** value of each hex digit character, indexed by character (-1 if not a hex digit) */
+  private static final byte[] HexValues = new byte[128];
+
+  static {
+    Arrays.fill(HexValues, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      HexValues['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HexValues['A' + i] = (byte) (10 + i);
+      HexValues['a' + i] = (byte) (10 + i);
+    }
+  }
 
   public enum Id {
     PRIMARY(0), SECONDARY(1), TERTIARY(2);
@@ -23,10 +39,11 @@ public class Bitmap {
   }
 
   /**
-   * bitsets hold the three bitmaps available to a message, and
-   * are indexed by the <code>Id.index</code> from the enum above
+   * bitmaps hold the three bitmaps available to a message, and are indexed by the
+   * <code>Id.index</code> from the enum above; field <code>n</code> is bit
+   * <code>(n - 1) % 64</code> of bitmap <code>(n - 1) / 64</code>
    */
-  private final BitSet[] bitmaps = new BitSet[]{new BitSet(), new BitSet(), new BitSet()};
+  private final long[] bitmaps = new long[3];
 
   public Bitmap() {
   }
@@ -49,49 +66,91 @@ public class Bitmap {
       throw new IllegalArgumentException(
           "Hex bitmap must be 16, 32 or 48 characters in size (got: " + hexlength + " chars)");
     }
-    if (!HexMatcher.matcher(hexBitmap).matches()) {
-      throw new IllegalArgumentException("Hex bitmap must contain only hexadecimal digits (0-9A-F)");
-    }
     final Bitmap result = new Bitmap();
-    result.bitmaps[Id.PRIMARY.index] = BitsetUtil.hex2Bitset(hexBitmap.substring(0, 16));
-    if (hexlength > 16) {
-      result.bitmaps[Id.SECONDARY.index] = BitsetUtil.hex2Bitset(hexBitmap.substring(16, 32));
-    }
-    if (hexlength > 32) {
-      result.bitmaps[Id.TERTIARY.index] = BitsetUtil.hex2Bitset(hexBitmap.substring(32));
+    for (int map = 0; map < hexlength / 16; map++) {
+      result.bitmaps[map] = parseHex(hexBitmap, map * 16);
     }
     return result;
   }
 
   /**
+   * Create a bitmap from the supplied binary bitmap data, being the big-endian
+   * primary bitmap, optionally followed by the secondary and tertiary bitmaps
    * @param binBitmap
+   * @throws IllegalArgumentException if the bitmap data is less than 8 bytes in size
    */
   public Bitmap(final byte... binBitmap) {
     if (binBitmap == null || binBitmap.length < 8) {
       throw new IllegalArgumentException("Bin bitmap must be >= 8 bytes in size");
     }
-    final int length = binBitmap.length;
-    if (length > 16) {
-      bitmaps[Id.TERTIARY.index] = BitsetUtil.bin2Bitset(Arrays.copyOfRange(binBitmap, 16, 24));
+    final ByteBuffer data = ByteBuffer.wrap(binBitmap);
+    for (int map = 0; map < 3 && data.remaining() >= 8; map++) {
+      bitmaps[map] = Long.reverse(data.getLong());
+    }
+  }
+
+  /**
+   * Create a bitmap by reading the binary primary bitmap from the buffer's current position,
+   * followed by the secondary and tertiary bitmaps, if their presence is indicated; the
+   * buffer's position is advanced past the bitmaps read
+   * @param binBitmap buffer holding a big-endian binary bitmap
+   * @throws java.nio.BufferUnderflowException if the buffer does not hold the complete bitmap
+   */
+  public Bitmap(final ByteBuffer binBitmap) {
+    bitmaps[Id.PRIMARY.index] = Long.reverse(binBitmap.getLong());
+    if (isBitmapPresent(Id.SECONDARY)) {
+      bitmaps[Id.SECONDARY.index] = Long.reverse(binBitmap.getLong());
+      if (isBitmapPresent(Id.TERTIARY)) {
+        bitmaps[Id.TERTIARY.index] = Long.reverse(binBitmap.getLong());
+      }
+    }
+  }
+
+  /**
+   * Set one of the bitmaps from its hexadecimal representation
+   * @param map the bitmap to set
+   * @param hex 16 hexadecimal digits representing the bitmap
+   * @throws IllegalArgumentException if the value is not a 16 digit hexadecimal string
+   */
+  public void setHex(final Id map, final CharSequence hex) {
+    if (hex == null || hex.length() != 16) {
+      throw new IllegalArgumentException("Hex bitmap must be 16 characters in size");
     }
-    if (length > 8) {
-      bitmaps[Id.SECONDARY.index] = BitsetUtil.bin2Bitset(Arrays.copyOfRange(binBitmap, 8, 16));
+    bitmaps[map.index] = parseHex(hex, 0);
+  }
+
+  /**
+   * Answer with the value of the 16 hex digits starting at <code>offset</code>, as a bitmap
+   * @throws IllegalArgumentException if any of the characters is not a hexadecimal digit
+   */
+  private static long parseHex(final CharSequence hex, final int offset) {
+    long result = 0;
+    for (int i = offset; i < offset + 16; i++) {
+      final char digit = hex.charAt(i);
+      final int value = digit < HexValues.length ? HexValues[digit] : -1;
+      if (value < 0) {
+        throw new IllegalArgumentException("Hex bitmap must contain only hexadecimal digits (0-9A-F)");
+      }
+      result = (result << 4) | value;
     }
-    bitmaps[Id.PRIMARY.index] = BitsetUtil.bin2Bitset(Arrays.copyOfRange(binBitmap, 0, 9));
+    return Long.reverse(result);
   }
 
   public String asHex(final Id map) {
-    return BitsetUtil.bitset2Hex(bitmaps[map.index], 16);
+    final long bits = Long.reverse(bitmaps[map.index]);
+    final char[] result = new char[16];
+    for (int i = 15, shift = 0; i >= 0; i--, shift += 4) {
+      result[i] = HexDigits[(int) (bits >>> shift) & 0x0f];
+    }
+    return new String(result);
   }
 
   public byte[] asBinary(final Id map) {
-    return BitsetUtil.bitset2bin(bitmaps[map.index], 8);
+    return ByteBuffer.allocate(8).putLong(Long.reverse(bitmaps[map.index])).array();
   }
 
   public void clear() {
-    bitmaps[Id.PRIMARY.index].clear();
-    bitmaps[Id.SECONDARY.index].clear();
-    bitmaps[Id.TERTIARY.index].clear();
+    Arrays.fill(bitmaps, 0L);
   }
 
   /**
@@ -103,78 +162,70 @@ public class Bitmap {
       throw new IllegalArgumentException(
           "fieldNb can only be: {2..64} or {66..128} or {130..192} (fieldNb=" + fieldNb + ")");
     }
-    final Id bitmapId = getBitmapIdForField(fieldNb);
-    final BitSet bitmap = bitmaps[bitmapId.index];
-    bitmap.set(getFieldPosInBitmap(fieldNb, bitmapId));
-    setBitmapPresent(bitmapId);
+    final int index = fieldNb - 1;
+    bitmaps[index >>> 6] |= 1L << index;
+    setBitmapPresent(index >>> 6);
   }
 
   /**
    * @param fieldNb
    * @return
    */
-  private Id getBitmapIdForField(final int fieldNb) {
-    if (fieldNb <= 64) {
-      return Id.PRIMARY;
-    }
-    if (fieldNb > 64 && fieldNb <= 128) {
-      return Id.SECONDARY;
-    }
-    return Id.TERTIARY;
+  public boolean isFieldPresent(final int fieldNb) {
+    final int index = fieldNb - 1;
+    return index >= 0 && index < 192 && (bitmaps[index >>> 6] & (1L << index)) != 0;
   }
 
-  private int getFieldPosInBitmap(final int fieldNb, final Id bitmapId) {
-    switch (bitmapId) {
-      case PRIMARY:
-        return fieldNb - 1;
-      case SECONDARY:
-        return fieldNb - 65;
-      case TERTIARY:
-        return fieldNb - 129;
-      default:
-        return 0; // unreachable as Id is enum
+  /**
+   * Answer with the number of the first field present at or after field <code>fieldNb</code>;
+   * the bits indicating the presence of the secondary and tertiary bitmaps (fields 1 and 65)
+   * are not reported as fields
+   * @param fieldNb field number from which to search
+   * @return the next field number present, or -1 if there are no further fields present
+   */
+  public int nextSetField(final int fieldNb) {
+    final int index = Math.max(fieldNb, 1) - 1;
+    if (index >= 192) {
+      return -1;
+    }
+    int map = index >>> 6;
+    long bits = fieldBits(map) & (-1L << index);
+    while (bits == 0) {
+      if (++map == bitmaps.length) {
+        return -1;
+      }
+      bits = fieldBits(map);
     }
+    return (map << 6) + Long.numberOfTrailingZeros(bits) + 1;
   }
 
-  /**
-   * @param fieldNb
-   * @return
-   */
-  public boolean isFieldPresent(final int fieldNb) {
-    final Id bitmapId = getBitmapIdForField(fieldNb);
-    final BitSet bitmap = bitmaps[bitmapId.index];
-    final int pos = getFieldPosInBitmap(fieldNb, bitmapId);
-    return bitmap.get(pos);
+  /** Answer with the bits of bitmap <code>map</code> that represent fields, excluding bitmap indicators */
+  private long fieldBits(final int map) {
+    return map < Id.TERTIARY.index ? bitmaps[map] & ~1L : bitmaps[map];
   }
 
   public boolean isBitmapPresent(final Id map) {
     if (map == Id.PRIMARY) {
       return true;
     }
-    final BitSet bitmap = bitmaps[map.index - 1];
-    return bitmap.get(0);
+    return (bitmaps[map.index - 1] & 1L) != 0;
   }
 
-  private void setBitmapPresent(final Id bitmapId) {
-    if (bitmapId == Id.PRIMARY) {
-      return; // always present
-    }
-    bitmaps[bitmapId.index - 1].set(0);
-
+  private void setBitmapPresent(final int index) {
     // if tertiary bitmap is present, then secondary is implicitly present
-    if (bitmapId == Id.TERTIARY) {
-      setBitmapPresent(Id.SECONDARY);
+    for (int map = index; map > 0; map--) {
+      bitmaps[map - 1] |= 1L;
     }
   }
 
   @Override
   public String toString() {
     final StringBuilder result = new StringBuilder();
-    result.append(BitsetUtil.bitset2Hex(bitmaps[Id.PRIMARY.index], 16));
+    result.append(asHex(Id.PRIMARY));
     if (isBitmapPresent(Id.SECONDARY)) {
-      result.append(BitsetUtil.bitset2Hex(bitmaps[Id.SECONDARY.index], 16));
+      result.append(asHex(Id.SECONDARY));
       if (isBitmapPresent(Id.TERTIARY)) {
-        result.append(BitsetUtil.bitset2Hex(bitmaps[Id.TERTIARY.index], 16));
+        result.append(asHex(Id.TERTIARY));
       }
     }
     return result.toString();
@@ -1,16 +1,27 @@
 package org.nulleins.formats.iso8583.types;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
  * Holds the character set that should be used for text encoding and decoding,
  * and provides the methods for encoding/decoding to/from byte[]/String
+ * <p/>
+ * For single-byte charsets (e.g., ASCII, ISO-8859-1 and the EBCDIC code pages), the mapping
+ * between each of the 256 byte values and its character is computed once, when the encoder
+ * is created, so that text is transcoded by table lookup rather than by the JDK's generic
+ * charset coders; characters outside of the first 256 fall back to the charset itself
  * @author phillipsr
  */
 public class CharEncoder {
   public static final CharEncoder ASCII = new CharEncoder("US-ASCII");
   private final Charset charset;
+  /** character of each byte value, or null if not a single-byte charset */
+  private final char[] decodeTable;
+  /** byte encoding each of the characters 0-255, or null if not a single-byte charset */
+  private final byte[] encodeTable;
 
   /**
    * Set the charset that should be used for writing text field values
@@ -25,6 +36,53 @@ public class CharEncoder {
       throw new IllegalArgumentException("charset [" + charsetName + "] not supported by JVM");
     }
     this.charset = Charset.forName(charsetName);
+    final boolean singleByte = isSingleByte(charset);
+    decodeTable = singleByte ? createDecodeTable(charset) : null;
+    encodeTable = singleByte ? createEncodeTable(charset) : null;
+  }
+
+  private static boolean isSingleByte(final Charset charset) {
+    return charset.canEncode()
+        && charset.newEncoder().maxBytesPerChar() == 1.0f
+        && charset.newDecoder().maxCharsPerByte() == 1.0f;
+  }
+
+  private static char[] createDecodeTable(final Charset charset) {
+    final byte[] data = new byte[256];
+    for (int b = 0; b < 256; b++) {
+      data[b] = (byte) b;
+    }
+    final char[] result = new String(data, charset).toCharArray();
+    if (result.length != 256) {
+      throw new IllegalStateException("charset [" + charset + "] did not decode one character per byte");
+    }
+    return result;
+  }
+
+  /** unmappable characters are encoded as the charset's replacement, as by <code>String.getBytes</code> */
+  private static byte[] createEncodeTable(final Charset charset) {
+    final char[] chars = new char[256];
+    for (int c = 0; c < 256; c++) {
+      chars[c] = (char) c;
+    }
+    final byte[] result = new String(chars).getBytes(charset);
+    if (result.length != 256) {
+      throw new IllegalStateException("charset [" + charset + "] did not encode one byte per character");
+    }
+    return result;
+  }
+
+  /** Answer with the charset used by this encoder */
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Does this encoder transcode by table lookup, i.e., is its charset one which encodes
+   * each character in a single byte?
+   */
+  public boolean isSingleByte() {
+    return decodeTable != null;
   }
 
   @Override
@@ -33,6 +91,33 @@ public class CharEncoder {
     return charset.name();
   }
 
+  /**
+   * Answer with the character encoded by the byte supplied, in this (single-byte) encoding
+   * @throws IllegalStateException if this is not a single-byte encoding
+   */
+  public char decode(final byte value) {
+    if (decodeTable == null) {
+      throw new IllegalStateException("charset [" + charset + "] is not a single-byte encoding");
+    }
+    return decodeTable[value & 0xff];
+  }
+
+  /**
+   * Answer with the byte encoding the character supplied (one of the first 256 characters)
+   * in this (single-byte) encoding
+   * @throws IllegalStateException    if this is not a single-byte encoding
+   * @throws IllegalArgumentException if the character is not one of the first 256 characters
+   */
+  public byte encode(final char value) {
+    if (encodeTable == null) {
+      throw new IllegalStateException("charset [" + charset + "] is not a single-byte encoding");
+    }
+    if (value >= encodeTable.length) {
+      throw new IllegalArgumentException("Character [" + value + "] cannot be encoded by table lookup");
+    }
+    return encodeTable[value];
+  }
+
   /**
    * Answer with a String in this character encoding, initialized from the byte data supplied
    * @param data bytes to be converted
@@ -42,7 +127,48 @@ public class CharEncoder {
   public String
   getString(final byte[] data)
       throws UnsupportedEncodingException {
-    return new String(data, charset.name());
+    return getString(data, 0, data.length);
+  }
+
+  /**
+   * Answer with a String in this character encoding, initialized from <code>length</code>
+   * bytes of the data supplied, starting at <code>offset</code>
+   * @param data   bytes to be converted
+   * @param offset of the first byte to be converted
+   * @param length number of bytes to be converted
+   * @return a String using this character encoding
+   */
+  public String
+  getString(final byte[] data, final int offset, final int length) {
+    if (decodeTable == null) {
+      return new String(data, offset, length, charset);
+    }
+    final char[] result = new char[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = decodeTable[data[offset + i] & 0xff];
+    }
+    return new String(result);
+  }
+
+  /**
+   * Answer with a String in this character encoding, initialized from the remaining
+   * content of the buffer supplied; the buffer's position is not changed
+   * @param data buffer holding the bytes to be converted
+   * @return a String using this character encoding
+   */
+  public String
+  getString(final ByteBuffer data) {
+    if (decodeTable == null) {
+      return charset.decode(data.duplicate()).toString();
+    }
+    if (data.hasArray()) {
+      return getString(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+    final char[] result = new char[data.remaining()];
+    for (int i = 0, index = data.position(); i < result.length; i++, index++) {
+      result[i] = decodeTable[data.get(index) & 0xff];
+    }
+    return new String(result);
   }
 
   /**
@@ -54,7 +180,24 @@ public class CharEncoder {
   public byte[]
   getBytes(final String data)
       throws UnsupportedEncodingException {
-    return data.getBytes(charset.name());
+    if (encodeTable == null || !isTableEncodable(data)) {
+      return data.getBytes(charset);
+    }
+    final byte[] result = new byte[data.length()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = encodeTable[data.charAt(i)];
+    }
+    return result;
+  }
+
+  /** can all of the characters of the text be encoded using the encode table? */
+  private boolean isTableEncodable(final CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) >= encodeTable.length) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -69,4 +212,61 @@ public class CharEncoder {
     return getBytes(new String(data));
   }
 
+  /**
+   * Encode the text supplied in this character encoding into the output buffer, at its
+   * position, advancing the position past the bytes written
+   * @param text   to be encoded
+   * @param output buffer to receive the encoded text
+   * @return the number of bytes written
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  public int encode(final CharSequence text, final ByteBuffer output) {
+    if (encodeTable == null || !isTableEncodable(text)) {
+      final byte[] data = text.toString().getBytes(charset);
+      output.put(data);
+      return data.length;
+    }
+    final int length = text.length();
+    if (output.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+    if (output.hasArray()) {
+      final byte[] dest = output.array();
+      final int offset = output.arrayOffset() + output.position();
+      for (int i = 0; i < length; i++) {
+        dest[offset + i] = encodeTable[text.charAt(i)];
+      }
+      output.position(output.position() + length);
+    } else {
+      for (int i = 0; i < length; i++) {
+        output.put(encodeTable[text.charAt(i)]);
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encode <code>count</code> repetitions of the character supplied in this character
+   * encoding into the output buffer, at its position (e.g., to pad a field)
+   * @return the number of bytes written
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  public int fill(final char c, final int count, final ByteBuffer output) {
+    if (encodeTable != null && c < encodeTable.length) {
+      if (output.remaining() < count) {
+        throw new BufferOverflowException();
+      }
+      final byte value = encodeTable[c];
+      for (int i = 0; i < count; i++) {
+        output.put(value);
+      }
+      return count;
+    }
+    final byte[] data = String.valueOf(c).getBytes(charset);
+    for (int i = 0; i < count; i++) {
+      output.put(data);
+    }
+    return data.length * count;
+  }
+
 }
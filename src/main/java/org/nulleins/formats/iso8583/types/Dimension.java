@@ -50,6 +50,20 @@ public final class Dimension {
     return length;
   }
 
+  @Override
+  public boolean equals(final Object other) {
+    if (!(other instanceof Dimension)) {
+      return false;
+    }
+    final Dimension that = (Dimension) other;
+    return type == that.type && vSize == that.vSize && length == that.length;
+  }
+
+  @Override
+  public int hashCode() {
+    return (type.ordinal() * 31 + vSize) * 31 + length;
+  }
+
   @Override
   public String
   toString() {
@@ -3,39 +3,82 @@ package org.nulleins.formats.iso8583.types;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Representation of an ISO8583 Message Type Indicator
+ * <p/>
+ * MTIs are canonical: there is exactly one instance for each valid message type, created
+ * once, and identified by its index (see {@link #getIndex}), so that the templates and plans
+ * for each type may be held in an array; the message type read from an input message is
+ * resolved from its numeric value without a String or regular expression
  * @author phillipsr
  */
 public final class MTI
     implements Comparable<MTI> {
   // regex defining valid MTI values
   private static final String ValidMTI = "[0129][123456789][0123489][012345]";
+  /** the digits valid in each position of an MTI, as in <code>ValidMTI</code> */
+  private static final String[] ValidDigits = {"0129", "123456789", "0123489", "012345"};
 
-  private static final Pattern ValidMTIMatcher = Pattern.compile(ValidMTI);
+  /** the number of valid MTIs, one more than the highest index of an MTI */
+  public static final int COUNT;
+  /** the valid MTIs, by the decimal value of their four digits; null where not valid */
+  private static final MTI[] Codes = new MTI[10000];
+
+  static {
+    int index = 0;
+    for (int code = 0; code < Codes.length; code++) {
+      final char[] digits = {
+          (char) ('0' + code / 1000), (char) ('0' + code / 100 % 10),
+          (char) ('0' + code / 10 % 10), (char) ('0' + code % 10)};
+      if (isValid(digits)) {
+        Codes[code] = new MTI(digits, index++);
+      }
+    }
+    COUNT = index;
+  }
 
   private final String value;
+  /** the numeric (packed BCD) value of the MTI, e.g., 0x0200 */
+  private final int code;
+  private final int index;
+
+  private MTI(final char[] digits, final int index) {
+    value = new String(digits);
+    code = Integer.parseInt(value, 16);
+    this.index = index;
+  }
+
+  /** are the four characters supplied a valid MTI? */
+  private static boolean isValid(final char[] code) {
+    for (int i = 0; i < ValidDigits.length; i++) {
+      if (ValidDigits[i].indexOf(code[i]) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   /**
    * @param code
+   * @return the MTI represented by the code supplied
    * @throws IllegalArgumentException if the code is null, not 4 chars in length,
    *                                  or does not conform to the valid MTI pattern: <code>[0129][123456789][0123489][012345]</code>
    */
-  private MTI(final char[] code) {
+  private static MTI create(final char[] code) {
     if (code == null || code.length != 4) {
       throw new IllegalArgumentException(
           "MTI must not be null and four chars long [" + Arrays.toString(code) + "]");
     }
-    value = new String(code).trim();
+    final String value = new String(code).trim();
     if (value.length() != 4) {
       throw new IllegalArgumentException("MTI must be exactly 4 digits in length, got [" + value + "]");
     }
-    if (!ValidMTIMatcher.matcher(value).matches()) {
+    if (!isValid(code)) {
       throw new IllegalArgumentException("MTI must be numeric and conform to pattern: [" + ValidMTI
           + "]: got [" + value + "]");
     }
+    return Codes[Integer.parseInt(value)];
   }
 
   /**
@@ -44,7 +87,13 @@ public final class MTI
    * @return
    */
   public static MTI create(final String code) {
-    return new MTI(code.toCharArray());
+    if (code.length() == 4) {
+      final int decimal = decimal(code.charAt(0), code.charAt(1), code.charAt(2), code.charAt(3));
+      if (decimal >= 0 && Codes[decimal] != null) {
+        return Codes[decimal];
+      }
+    }
+    return create(code.toCharArray());
   }
 
   /**
@@ -53,12 +102,28 @@ public final class MTI
    * @return
    */
   public static MTI create(final int code) {
-    char[] mti = new char[]{
+    final char[] mti = new char[]{
         (char) (((code & 0xf000) >> 12) + 0x30),
         (char) (((code & 0x0f00) >> 8) + 0x30),
         (char) (((code & 0x00f0) >> 4) + 0x30),
         (char) (((code & 0x000f)) + 0x30)};
-    return new MTI(mti);
+    final int decimal = decimal(mti[0], mti[1], mti[2], mti[3]);
+    if (decimal >= 0 && Codes[decimal] != null) {
+      return Codes[decimal];
+    }
+    return create(mti);
+  }
+
+  /** Answer with the decimal value of the four characters supplied, or -1 if any is not a digit */
+  private static int decimal(final char c0, final char c1, final char c2, final char c3) {
+    final int d0 = c0 - '0';
+    final int d1 = c1 - '0';
+    final int d2 = c2 - '0';
+    final int d3 = c3 - '0';
+    if ((d0 | d1 | d2 | d3) < 0 || d0 > 9 || d1 > 9 || d2 > 9 || d3 > 9) {
+      return -1;
+    }
+    return d0 * 1000 + d1 * 100 + d2 * 10 + d3;
   }
 
   private static final Map<Character, String> versions = new HashMap<Character, String>() {{
@@ -120,6 +185,33 @@ public final class MTI
     return messageOrigins.get(value.charAt(ORIGIN_POS));
   }
 
+  /** Answer with true if this is a request or advice, which expects a response */
+  public boolean isRequest() {
+    final char function = value.charAt(FUNCTION_POS);
+    return function == '0' || function == '2';
+  }
+
+  /** Answer with true if this is a response to a request or advice */
+  public boolean isResponse() {
+    final char function = value.charAt(FUNCTION_POS);
+    return function == '1' || function == '3';
+  }
+
+  /**
+   * Answer with the type of the response to this request or advice, e.g., 0210 for 0200;
+   * the response to a repeated message is that to the original, e.g., 0410 for 0401
+   * @throws IllegalStateException if this is not a request or advice
+   */
+  public MTI getResponse() {
+    if (!isRequest()) {
+      throw new IllegalStateException("MTI " + value + " is not a request or advice: has no response type");
+    }
+    final char[] result = value.toCharArray();
+    result[FUNCTION_POS]++;
+    result[ORIGIN_POS] = (char) (result[ORIGIN_POS] & ~1);
+    return create(result);
+  }
+
   public String describe() {
     return value + " (version=" + getVersion()
         + " class=" + getMessageClass()
@@ -133,23 +225,32 @@ public final class MTI
     return value;
   }
 
+  /** MTIs are canonical, so are only equal to themselves */
   @Override
   public boolean equals(final Object other) {
-    return this == other || !(other == null || other.getClass() != this.getClass()) && value.equals(((MTI) other).value);
+    return this == other;
   }
 
   @Override
   public int hashCode() {
-    return value.hashCode();
+    return code;
   }
 
   public int intValue() {
-    return Integer.parseInt(value, 16);
+    return code;
+  }
+
+  /**
+   * Answer with the index of this MTI amongst all valid MTIs, from zero to {@link #COUNT} - 1,
+   * in the order of their values
+   */
+  public int getIndex() {
+    return index;
   }
 
   @Override
   public int compareTo(final MTI other) {
-    return value.compareTo(other.value);
+    return index - other.index;
   }
 
 }
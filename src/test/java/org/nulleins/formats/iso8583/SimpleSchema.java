@@ -0,0 +1,46 @@
+package org.nulleins.formats.iso8583;
+
+import org.nulleins.formats.iso8583.types.BitmapType;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.FieldType;
+import org.nulleins.formats.iso8583.types.MTI;
+
+
+/**
+ * Minimal schemas, with no header and a hex bitmap, shared by tests that need a factory
+ * but not a Spring context
+ * @author phillipsr
+ */
+public final class SimpleSchema {
+  /** request message type, with a single fixed(6) numeric field (2) */
+  public static final MTI Request = MTI.create(0x0200);
+
+  private SimpleSchema() {
+  }
+
+  /** Answer with an initialized factory defining the {@link #Request} message */
+  public static MessageFactory create() {
+    return create(new MTI[]{Request}, new String[]{"2", FieldType.NUMERIC, "fixed(6)", "TestField"});
+  }
+
+  /**
+   * Answer with an initialized factory defining a message of each type supplied, with the fields supplied
+   * @param types  of the messages
+   * @param fields of each message, as {number, type, dimension, name}
+   */
+  public static MessageFactory create(final MTI[] types, final String[]... fields) {
+    final MessageFactory result = new MessageFactory();
+    result.setHeader("");
+    for (final MTI type : types) {
+      final MessageTemplate template = MessageTemplate.create("", type, BitmapType.HEX);
+      for (final String[] field : fields) {
+        template.addField(
+            new FieldTemplate(Integer.parseInt(field[0]), field[1], Dimension.parse(field[2]), field[3], ""));
+      }
+      result.addMessage(template);
+    }
+    result.initialize();
+    return result;
+  }
+
+}
@@ -0,0 +1,77 @@
+package org.nulleins.formats.iso8583;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nulleins.formats.iso8583.io.framing.LengthHeader;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestBatchParser {
+  private MessageFactory factory;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParseInOrderWithErrors() {
+    final List<ByteBuffer> records = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      final String value = i % 100 == 99 ? "00X" + String.format("%03d", i % 1000) : String.format("%06d", i);
+      records.add(ByteBuffer.wrap(("0200" + "4000000000000000" + value).getBytes()));
+    }
+    final List<ParseResult> results = new BatchParser(factory).parse(records);
+
+    Assert.assertEquals(2000, results.size());
+    for (int i = 0; i < 2000; i++) {
+      final ParseResult result = results.get(i);
+      Assert.assertEquals(i, result.getIndex());
+      if (i % 100 == 99) {
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(result.getError() instanceof MessageException);
+      } else {
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(BigInteger.valueOf(i), result.getMessage().getFieldValue(2));
+      }
+    }
+  }
+
+  @Test
+  public void testParseFramedFile()
+      throws IOException {
+    final ByteBuffer data = ByteBuffer.allocate(3 * 28 + 10);
+    for (int i = 1; i <= 3; i++) {
+      LengthHeader.BINARY.write(26, data);
+      data.put(("0200" + "4000000000000000" + "00000" + i).getBytes());
+    }
+    // truncated final record
+    LengthHeader.BINARY.write(26, data);
+    data.put("0200".getBytes());
+    final File file = folder.newFile("batch.dat");
+    Files.write(file.toPath(), data.array());
+
+    final List<ParseResult> results = new BatchParser(factory).parse(file.toPath(), LengthHeader.BINARY);
+    Assert.assertEquals(4, results.size());
+    Assert.assertEquals(BigInteger.valueOf(3), results.get(2).getMessage().getFieldValue(2));
+    Assert.assertFalse(results.get(3).isSuccess());
+    Assert.assertEquals(3, results.get(3).getIndex());
+  }
+
+  @Before
+  public void createFactory() {
+    factory = SimpleSchema.create();
+  }
+
+}
@@ -16,6 +16,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -74,6 +75,14 @@ public class TestBinary {
 
     byte[] odata = factory.getMessageData(message);
     Assert.assertTrue(ArrayUtils.isEquals(expectData, odata));
+
+    // parse the same message from a direct buffer, without copying its content
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data).flip();
+    Message bufferMessage = factory.parse(buffer);
+    Assert.assertFalse(buffer.hasRemaining());
+    Assert.assertEquals(message.getFields(), bufferMessage.getFields());
+    Assert.assertTrue(ArrayUtils.isEquals(expectData, factory.getMessageData(bufferMessage)));
   }
 
   @Test
@@ -107,6 +116,11 @@ public class TestBinary {
 
     byte[] odata = factory.getMessageData(message);
     Assert.assertTrue(ArrayUtils.isEquals(expectData, odata));
+
+    // the stream writer, formatting each field to a byte array, writes the same data
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    factory.writeToStream(message, stream);
+    Assert.assertTrue(ArrayUtils.isEquals(expectData, stream.toByteArray()));
   }
 
 
@@ -58,6 +58,7 @@ public class TestBinaryDecode {
     Assert.assertEquals(371234567890006L, track2data.getPrimaryAccountNumber());
     Assert.assertEquals(612, track2data.getExpirationDate());
     Assert.assertEquals(101, track2data.getServiceCode());
+    Assert.assertEquals("02020376100000", track2data.getDiscretionaryData());
     Assert.assertEquals("12345678", message.getFieldValue(41));
     Assert.assertEquals("1234567896", message.getFieldValue(42));
     Assert.assertEquals("001638", message.getFieldValue(62));
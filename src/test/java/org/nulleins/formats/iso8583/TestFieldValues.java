@@ -0,0 +1,90 @@
+package org.nulleins.formats.iso8583;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestFieldValues {
+
+  @Test
+  public void testPutGetRemove() {
+    FieldValues fields = new FieldValues();
+    Assert.assertTrue(fields.isEmpty());
+    Assert.assertNull(fields.put(2, "value2"));
+    Assert.assertNull(fields.put(192, "value192"));
+    Assert.assertEquals("value2", fields.put(2, "other2"));
+    Assert.assertEquals(2, fields.size());
+    Assert.assertEquals("other2", fields.get(2));
+    Assert.assertEquals("value192", fields.get(Integer.valueOf(192)));
+    Assert.assertNull(fields.get(3));
+    Assert.assertNull(fields.get("2"));
+
+    Assert.assertEquals("other2", fields.remove(2));
+    Assert.assertNull(fields.remove(2));
+    Assert.assertEquals(1, fields.size());
+    Assert.assertFalse(fields.containsKey(2));
+  }
+
+  @Test
+  public void testNullValuePresent() {
+    FieldValues fields = new FieldValues();
+    fields.put(64, null);
+    Assert.assertTrue(fields.containsKey(64));
+    Assert.assertTrue(fields.isPresent(64));
+    Assert.assertNull(fields.get(64));
+    Assert.assertEquals(1, fields.size());
+  }
+
+  @Test
+  public void testIterationOrder() {
+    FieldValues fields = new FieldValues();
+    for (int number : new int[]{128, 3, 64, 65, 2, 191}) {
+      fields.put(number, "field" + number);
+    }
+    Assert.assertEquals(Arrays.asList(2, 3, 64, 65, 128, 191), Arrays.asList(fields.keySet().toArray()));
+    Assert.assertEquals(64, fields.nextPresent(4));
+    Assert.assertEquals(128, fields.nextPresent(66));
+    Assert.assertEquals(-1, fields.nextPresent(192));
+  }
+
+  @Test
+  public void testMapView() {
+    Map<Integer, Object> expect = new HashMap<>();
+    expect.put(2, "pan");
+    expect.put(4, 100L);
+    expect.put(41, null);
+    FieldValues fields = new FieldValues(expect);
+    Assert.assertEquals(expect, fields);
+    Assert.assertEquals(expect.hashCode(), fields.hashCode());
+
+    // updates via entries and iterator write through to the field values
+    for (Map.Entry<Integer, Object> entry : fields.entrySet()) {
+      if (entry.getKey() == 4) {
+        entry.setValue(200L);
+      }
+    }
+    Assert.assertEquals(200L, fields.get(4));
+    Iterator<Integer> keys = fields.keySet().iterator();
+    keys.next();
+    keys.remove();
+    Assert.assertFalse(fields.containsKey(2));
+
+    fields.clear();
+    Assert.assertTrue(fields.isEmpty());
+    Assert.assertEquals(-1, fields.nextPresent(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFieldNumberOutOfRange() {
+    new FieldValues().put(193, "value");
+  }
+
+}
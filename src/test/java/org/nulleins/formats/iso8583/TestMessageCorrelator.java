@@ -0,0 +1,104 @@
+package org.nulleins.formats.iso8583;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nulleins.formats.iso8583.types.FieldType;
+import org.nulleins.formats.iso8583.types.MTI;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestMessageCorrelator {
+  private static final MTI Request = MTI.create(0x0200);
+  private static final MTI Response = MTI.create(0x0210);
+  private MessageFactory factory;
+  private MessageCorrelator correlator;
+
+  @Test
+  public void testResponseCompletesRequest()
+      throws Exception {
+    final CompletableFuture<Message> first = correlator.register(request(12, "RRN000000001"), 30, TimeUnit.SECONDS);
+    final CompletableFuture<Message> second = correlator.register(request(13, "RRN000000002"), 30, TimeUnit.SECONDS);
+    Assert.assertEquals(2, correlator.getPendingCount());
+
+    // response parsed from the wire: STAN is parsed as a BigInteger, set in request as an int
+    final Message response = factory.parse(
+        ("0210" + "0020000008800000" + "000013" + "RRN000000002" + "TERM0001").getBytes());
+    Assert.assertTrue(correlator.complete(response));
+    Assert.assertFalse(first.isDone());
+    Assert.assertSame(response, second.get());
+    Assert.assertEquals(1, correlator.getPendingCount());
+
+    // a duplicate response has no outstanding request
+    Assert.assertFalse(correlator.complete(response));
+  }
+
+  @Test
+  public void testRequestTypeDoesNotComplete() {
+    final CompletableFuture<Message> future = correlator.register(request(12, "RRN000000001"), 30, TimeUnit.SECONDS);
+    // a repeated request with the same key is not a response
+    Assert.assertFalse(correlator.complete(request(12, "RRN000000001")));
+    Assert.assertFalse(future.isDone());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDuplicateRequest() {
+    correlator.register(request(12, "RRN000000001"), 30, TimeUnit.SECONDS);
+    correlator.register(request(12, "RRN000000001"), 30, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testExpiry()
+      throws InterruptedException {
+    final CompletableFuture<Message> expired = correlator.register(request(12, "RRN000000001"), 0, TimeUnit.MILLISECONDS);
+    final CompletableFuture<Message> cancelled = correlator.register(request(13, "RRN000000002"), 30, TimeUnit.SECONDS);
+    final CompletableFuture<Message> waiting = correlator.register(request(14, "RRN000000003"), 30, TimeUnit.SECONDS);
+    // a timeout too long to be added to the current time must not expire the request
+    final CompletableFuture<Message> indefinite =
+        correlator.register(request(15, "RRN000000004"), Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    cancelled.cancel(false);
+
+    Assert.assertEquals(1, correlator.expire());
+    Assert.assertEquals(2, correlator.getPendingCount());
+    Assert.assertFalse(waiting.isDone());
+    Assert.assertFalse(indefinite.isDone());
+    try {
+      expired.get();
+      Assert.fail("Expected request to time-out");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRegisterResponse() {
+    correlator.register(factory.create(Response), 30, TimeUnit.SECONDS);
+  }
+
+  private Message request(final int stan, final String rrn) {
+    final Message result = factory.create(Request);
+    result.setFieldValue(11, stan);
+    result.setFieldValue(37, rrn);
+    result.setFieldValue(41, "TERM0001");
+    return result;
+  }
+
+  @Before
+  public void createFactory() {
+    factory = SimpleSchema.create(new MTI[]{Request, Response},
+        new String[]{"11", FieldType.NUMERIC, "fixed(6)", "STAN"},
+        new String[]{"37", FieldType.ALPHANUMPAD, "fixed(12)", "RRN"},
+        new String[]{"41", FieldType.ALPHANUMSYMBOL, "fixed(8)", "TerminalId"});
+    correlator = new MessageCorrelator(factory);
+  }
+
+}
@@ -1,12 +1,15 @@
 package org.nulleins.formats.iso8583;
 
 import junit.framework.Assert;
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import org.nulleins.formats.iso8583.formatters.NIBBSDateFormatter;
 import org.nulleins.formats.iso8583.FieldTemplate;
 import org.nulleins.formats.iso8583.Message;
 import org.nulleins.formats.iso8583.MessageFactory;
 import org.nulleins.formats.iso8583.MessageTemplate;
+import org.nulleins.formats.iso8583.formatters.TypeFormatter;
 import org.nulleins.formats.iso8583.types.BitmapType;
 import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.ContentType;
@@ -14,9 +17,21 @@ import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 import org.nulleins.formats.iso8583.types.MTI;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -110,6 +125,262 @@ public class TestMessageFactory {
     message.removeField(3);
   }
 
+  @Test
+  public void testParseWithCompiledPlan()
+      throws IOException, ParseException {
+    Message message = factory.parse(("ISO015000077" + "0200" + "4000000000000000" + "000012").getBytes());
+    Assert.assertEquals(RequestMessage, message.getMTI());
+    Assert.assertEquals(BigInteger.valueOf(12), message.getFieldValue(2));
+  }
+
+  @Test
+  public void testParseMessageAddedAfterInitialize()
+      throws IOException, ParseException {
+    MTI response = MTI.create(0x0210);
+    MessageTemplate template = MessageTemplate.create("ISO015000077", response, BitmapType.HEX);
+    template.addField(new FieldTemplate(3, FieldType.NUMERIC, Dimension.parse("fixed(6)"), "ProcessingCode", ""));
+    factory.addMessage(template);
+
+    Message message = factory.parse(("ISO015000077" + "0210" + "2000000000000000" + "000300").getBytes());
+    Assert.assertEquals(response, message.getMTI());
+    Assert.assertEquals(BigInteger.valueOf(300), message.getFieldValue(3));
+  }
+
+  @Test
+  public void testWriteWithCompiledPlan()
+      throws IOException {
+    Map<Integer, Object> params = new HashMap<>();
+    params.put(2, 12);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    factory.writeFromNumberMap(RequestMessage, params, output);
+    Assert.assertEquals("ISO015000077" + "0200" + "4000000000000000" + "000012", output.toString());
+
+    // plan is reused for subsequent messages of the same type
+    params.put(2, 345);
+    output.reset();
+    factory.writeFromNumberMap(RequestMessage, params, output);
+    Assert.assertEquals("ISO015000077" + "0200" + "4000000000000000" + "000345", output.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWriteUndefinedMessage()
+      throws IOException {
+    Map<Integer, Object> params = new HashMap<>();
+    params.put(2, 12);
+    factory.writeFromNumberMap(MTI.create(0x0210), params, new ByteArrayOutputStream());
+  }
+
+  @Test(expected = MessageException.class)
+  public void testParseUndefinedField()
+      throws IOException, ParseException {
+    // bitmap declares fields 2 and 3, but only field 2 is defined in the template
+    factory.parse(("ISO015000077" + "0200" + "6000000000000000" + "000012" + "000300").getBytes());
+  }
+
+  @Test
+  public void testLazyParse()
+      throws IOException, ParseException {
+    factory.setLazy(true);
+    Message message = factory.parse(("ISO015000077" + "0200" + "4000000000000000" + "000012").getBytes());
+    Assert.assertEquals(RequestMessage, message.getMTI());
+    // field value is parsed on first request, and then retained
+    Object value = message.getFieldValue(2);
+    Assert.assertEquals(BigInteger.valueOf(12), value);
+    Assert.assertSame(value, message.getFieldValue(2));
+    Assert.assertEquals(BigInteger.valueOf(12), message.getFields().get(2));
+  }
+
+  @Test
+  public void testLazyParseFieldMap()
+      throws IOException, ParseException {
+    factory.setLazy(true);
+    Message message = factory.parse(("ISO015000077" + "0200" + "4000000000000000" + "000012").getBytes());
+    // requesting the field map parses all the deferred fields
+    Map<Integer, Object> fields = message.getFields();
+    Assert.assertEquals(BigInteger.valueOf(12), fields.get(2));
+    Assert.assertEquals(BigInteger.valueOf(12), message.getNamedFields().get("TestField"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    factory.writeToStream(message, output);
+    Assert.assertEquals("ISO015000077" + "0200" + "4000000000000000" + "000012", output.toString());
+  }
+
+  @Test
+  public void testStreamMatchesBufferEbcdic()
+      throws IOException {
+    MessageFactory ebcdic = new MessageFactory();
+    ebcdic.setBitmapType(BitmapType.BINARY);
+    ebcdic.setContentType(ContentType.BCD);
+    ebcdic.setCharset(new CharEncoder("Cp1047"));
+    ebcdic.setHeader("ISO015000077");
+    MessageTemplate template = MessageTemplate.create("ISO015000077", RequestMessage, BitmapType.BINARY);
+    template.addField(new FieldTemplate(2, FieldType.NUMERIC, Dimension.parse("fixed(6)"), "TestField", ""));
+    template.addField(new FieldTemplate(41, FieldType.ALPHANUMSYMBOL, Dimension.parse("fixed(8)"), "TermId", ""));
+    template.addField(new FieldTemplate(43, FieldType.ALPHANUMSYMBOL, Dimension.parse("llvar(20)"), "TermName", ""));
+    ebcdic.addMessage(template);
+    ebcdic.initialize();
+
+    Message message = ebcdic.create(RequestMessage);
+    message.setFieldValue(2, 12);
+    message.setFieldValue(41, "ATM-1");
+    message.setFieldValue(43, "DUB87");
+    byte[] data = ebcdic.getMessageData(message);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ebcdic.writeToStream(message, output);
+    Assert.assertTrue(Arrays.equals(data, output.toByteArray()));
+    // text fields are encoded in the factory's charset
+    Assert.assertTrue(new String(data, "Cp1047").contains("ATM-1   "));
+  }
+
+  @Test
+  public void testLazyParseDefersErrors()
+      throws IOException, ParseException {
+    factory.setLazy(true);
+    // field is framed correctly, but its content is not numeric: only reported when the value is requested
+    Message message = factory.parse(("ISO015000077" + "0200" + "4000000000000000" + "0000X2").getBytes());
+    try {
+      message.getFieldValue(2);
+      Assert.fail("Expected MessageException parsing non-numeric field");
+    } catch (final MessageException e) {
+      Assert.assertNotNull(e.getCause());
+    }
+  }
+
+  @Test
+  public void testEncodeToBuffer() {
+    Message message = factory.create(RequestMessage);
+    message.setFieldValue(2, 12);
+    ByteBuffer output = ByteBuffer.allocate(64);
+    output.put((byte) '#');
+    Assert.assertEquals(38, factory.encode(message, output));
+    Assert.assertEquals(39, output.position());
+    Assert.assertEquals("#ISO015000077" + "0200" + "4000000000000000" + "000012", new String(output.array(), 0, 39));
+
+    // insufficient space: buffer position is left unchanged
+    output = ByteBuffer.allocate(20);
+    try {
+      factory.encode(message, output);
+      Assert.fail("Expected BufferOverflowException");
+    } catch (final BufferOverflowException e) {
+      Assert.assertEquals(0, output.position());
+    }
+  }
+
+  @Test
+  public void testEncodeToThreadBuffer() {
+    Message message = factory.create(RequestMessage);
+    message.setFieldValue(2, 12);
+    ByteBuffer first = factory.encode(message);
+    Assert.assertEquals(38, first.remaining());
+    message.setFieldValue(2, 345);
+    ByteBuffer second = factory.encode(message);
+    Assert.assertSame(first, second);
+    byte[] data = new byte[second.remaining()];
+    second.get(data);
+    Assert.assertEquals("ISO015000077" + "0200" + "4000000000000000" + "000345", new String(data));
+  }
+
+  @Test(expected = MessageException.class)
+  public void testEncodeBufferGrowthLimited() {
+    // a formatter overflowing a buffer of its own must not grow the encode buffer without limit
+    factory.addFormatter("overflow", new TypeFormatter<Object>() {
+      @Override
+      public Object parse(final String type, final Dimension dimension, final int position, final byte[] data) {
+        return null;
+      }
+
+      @Override
+      public byte[] format(final String type, final Object data, final Dimension dimension) {
+        throw new BufferOverflowException();
+      }
+
+      @Override
+      public boolean isValid(final Object value, final String type, final Dimension dimension) {
+        return true;
+      }
+    });
+    MessageTemplate template = MessageTemplate.create("ISO015000077", MTI.create(0x0400), BitmapType.HEX);
+    template.addField(new FieldTemplate(2, "overflow", Dimension.parse("fixed(6)"), "Overflow", ""));
+    factory.addMessage(template);
+    Message message = factory.create(MTI.create(0x0400));
+    message.setFieldValue(2, 12);
+    factory.encode(message);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParseUninitialized()
+      throws IOException, ParseException {
+    new MessageFactory().parse(("ISO015000077" + "0200" + "4000000000000000" + "000012").getBytes());
+  }
+
+  @Test
+  public void testFormatterAddedBeforeInitialize()
+      throws IOException, ParseException {
+    MessageFactory target = new MessageFactory();
+    target.setHeader("ISO015000077");
+    MessageTemplate template = MessageTemplate.create("ISO015000077", RequestMessage, BitmapType.HEX);
+    template.addField(new FieldTemplate(7, "nibbsdate", Dimension.parse("fixed(12)"), "TransmissionDateTime", ""));
+    target.addMessage(template);
+    target.addFormatter("nibbsdate", new NIBBSDateFormatter());
+    target.initialize();
+
+    Message message = target.parse(("ISO015000077" + "0200" + "0200000000000000" + "140130123456").getBytes());
+    Assert.assertEquals(new DateTime(2014, 1, 30, 12, 34, 56), message.getFieldValue(7));
+  }
+
+  @Test
+  public void testLongNumbers()
+      throws IOException, ParseException {
+    MessageFactory target = new MessageFactory();
+    target.setHeader("ISO015000077");
+    MessageTemplate template = MessageTemplate.create("ISO015000077", RequestMessage, BitmapType.HEX);
+    template.addField(new FieldTemplate(2, "n", Dimension.parse("llvar(19)"), "AccountNumber", ""));
+    template.addField(new FieldTemplate(4, "n", Dimension.parse("fixed(12)"), "TransactionAmount", ""));
+    target.addMessage(template);
+    target.setLongNumbers(true);
+    target.initialize();
+
+    byte[] data = ("ISO015000077" + "0200" + "5000000000000000" + "195432818929192000000" + "000000001200").getBytes();
+    Message message = target.parse(data);
+    Assert.assertEquals(new BigInteger("5432818929192000000"), message.getFieldValue(2));
+    Assert.assertEquals(1200L, message.getFieldValue(4));
+    Assert.assertTrue(Arrays.equals(data, target.getMessageData(message)));
+  }
+
+  @Test
+  public void testSchemaChangedWhileParsing()
+      throws Exception {
+    final byte[] data = ("ISO015000077" + "0200" + "4000000000000000" + "000012").getBytes();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Set<Future<Integer>> results = new HashSet<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call()
+              throws Exception {
+            int parsed = 0;
+            for (; parsed < 2000; parsed++) {
+              Assert.assertEquals(BigInteger.valueOf(12), factory.parse(data).getFieldValue(2));
+            }
+            return parsed;
+          }
+        }));
+      }
+      // each message added replaces the factory's schema while the parsing threads run
+      for (int mti : new int[]{0x0100, 0x0110, 0x0210, 0x0220, 0x0230, 0x0400, 0x0410, 0x0420}) {
+        MessageTemplate template = MessageTemplate.create("ISO015000077", MTI.create(mti), BitmapType.HEX);
+        template.addField(new FieldTemplate(3, FieldType.NUMERIC, Dimension.parse("fixed(6)"), "ProcessingCode", ""));
+        factory.addMessage(template);
+      }
+      for (final Future<Integer> result : results) {
+        Assert.assertEquals(2000, result.get().intValue());
+      }
+      Assert.assertEquals(9, factory.getMessages().size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private static final String MESSAGE_FACTORY_DESCRIPTION =
       "MessageFactory id=testFactory description='Test Message Schema' "
           + "header=ISO015000077 contentType=TEXT charset=US-ASCII bitmapType=HEX messages# 1";
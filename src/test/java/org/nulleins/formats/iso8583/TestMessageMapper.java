@@ -0,0 +1,194 @@
+package org.nulleins.formats.iso8583;
+
+import org.joda.time.LocalTime;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nulleins.formats.iso8583.types.MTI;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+
+/**
+ * @author phillipsr
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("TestXsd-context.xml")
+public class TestMessageMapper {
+  private static final String ExpectedMessage =
+      "ISO0150000770200F238000108A180000000004000000000" +
+          "135432*******920010100000000000120923000000618172" +
+          "1011121117041029937278626262ATM-10101       DUB87" +
+          "                                   12353863579271840004C999";
+
+  @Resource
+  private MessageFactory messages;
+
+  @IsoMessage("0200")
+  public static class PaymentRequest {
+    @IsoField(2)
+    CardNumber cardNumber;
+    @IsoField(3)
+    int processingCode;
+    @IsoField(4)
+    BigInteger amount;
+    @IsoField(7)
+    Date transDateTime;
+    @IsoField(11)
+    int stan;
+    @IsoField(12)
+    Date transTimeLocal;
+    @IsoField(13)
+    Date transDateLocal;
+    @IsoField(32)
+    Integer acquirerId;
+    @IsoField(37)
+    long extReference;
+    @IsoField(41)
+    String cardTermId;
+    @IsoField(43)
+    String cardTermName;
+    @IsoField(48)
+    long msisdn;
+    @IsoField(49)
+    int currencyCode;
+    private int originalData;
+
+    @IsoField(90)
+    public int getOriginalData() {
+      return originalData;
+    }
+
+    public void setOriginalData(final int originalData) {
+      this.originalData = originalData;
+    }
+  }
+
+  /** the fields of a payment request required by the receiver */
+  @IsoMessage("0200")
+  public static class PaymentSummary {
+    @IsoField(2)
+    String maskedCardNumber;
+    @IsoField(4)
+    long amount;
+    @IsoField(7)
+    Date transDateTime;
+    @IsoField(12)
+    LocalTime transTimeLocal;
+    @IsoField(41)
+    String cardTermId;
+    @IsoField(90)
+    Integer originalData;
+  }
+
+  public static class Unmapped {
+  }
+
+  @IsoMessage("0200")
+  public static class InvalidField {
+    @IsoField(5)
+    int settlementAmount;
+  }
+
+  private PaymentRequest createRequest()
+      throws ParseException {
+    final SimpleDateFormat df = new SimpleDateFormat("dd-MM-yyyy");
+    final PaymentRequest result = new PaymentRequest();
+    result.cardNumber = new CardNumber(5432818929192L);
+    result.processingCode = 1010;
+    result.amount = new BigInteger("12");
+    result.transDateTime = df.parse("23-09-2015");
+    result.stan = 618172;
+    result.transTimeLocal = new SimpleDateFormat("HH:mm:ss").parse("10:11:12");
+    result.transDateLocal = df.parse("17-11-2016");
+    result.acquirerId = 1029;
+    result.extReference = 937278626262L;
+    result.cardTermId = "ATM-10101";
+    result.cardTermName = "DUB87";
+    result.msisdn = 353863579271L;
+    result.currencyCode = 840;
+    result.setOriginalData(999);
+    return result;
+  }
+
+  @Test
+  public void testEncode()
+      throws ParseException {
+    final MessageMapper<PaymentRequest> mapper = messages.getMapper(PaymentRequest.class);
+    Assert.assertEquals(MTI.create("0200"), mapper.getType());
+    Assert.assertSame(mapper, messages.getMapper(PaymentRequest.class));
+
+    final PaymentRequest request = createRequest();
+    Assert.assertEquals(ExpectedMessage, new String(mapper.getMessageData(request)));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(ExpectedMessage.length() - 1);
+    try {
+      mapper.encode(request, buffer);
+      Assert.fail("Expected the message to overflow the buffer");
+    } catch (final BufferOverflowException e) {
+      Assert.assertEquals(0, buffer.position());
+    }
+  }
+
+  @Test
+  public void testEncodeDefaultValue()
+      throws ParseException {
+    final PaymentRequest request = createRequest();
+    request.acquirerId = null;
+    final String message = new String(messages.getMapper(PaymentRequest.class).getMessageData(request));
+    Assert.assertEquals(ExpectedMessage.replace("041029", "010"), message);
+  }
+
+  @Test
+  public void testDecode()
+      throws IOException {
+    final PaymentSummary summary = messages.getMapper(PaymentSummary.class).decode(ExpectedMessage.getBytes());
+
+    Assert.assertEquals("5432*******92", summary.maskedCardNumber);
+    Assert.assertEquals(12L, summary.amount);
+    Assert.assertNotNull(summary.transDateTime);
+    Assert.assertEquals(new LocalTime(10, 11, 12), summary.transTimeLocal);
+    Assert.assertEquals("ATM-10101", summary.cardTermId);
+    Assert.assertEquals(Integer.valueOf(999), summary.originalData);
+  }
+
+  @Test
+  public void testRoundTrip()
+      throws ParseException, IOException {
+    final MessageMapper<PaymentRequest> mapper = messages.getMapper(PaymentRequest.class);
+    final ByteBuffer buffer = ByteBuffer.allocate(512);
+    mapper.encode(createRequest(), buffer);
+    buffer.flip();
+
+    final PaymentSummary summary = messages.getMapper(PaymentSummary.class).decode(buffer);
+    Assert.assertFalse(buffer.hasRemaining());
+    Assert.assertEquals(12L, summary.amount);
+    Assert.assertEquals("ATM-10101", summary.cardTermId);
+  }
+
+  @Test(expected = MessageException.class)
+  public void testDecodeWrongType()
+      throws IOException {
+    messages.getMapper(PaymentSummary.class).decode(ExpectedMessage.replace("0200F2", "0400F2").getBytes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotAnnotated() {
+    messages.getMapper(Unmapped.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFieldNotDefined() {
+    messages.getMapper(InvalidField.class);
+  }
+
+}
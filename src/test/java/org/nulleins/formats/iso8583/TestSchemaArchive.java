@@ -0,0 +1,74 @@
+package org.nulleins.formats.iso8583;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nulleins.formats.iso8583.types.MTI;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+
+/**
+ * @author phillipsr
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("TestXsd-context.xml")
+public class TestSchemaArchive {
+  private static final String BeanMessage =
+      "ISO0150000770200F238000108A180000000004000000000" +
+          "135432*******920010100000000000120923000000618172" +
+          "1011121117041029937278626262ATM-10101       DUB87" +
+          "                                   12353863579271840004C999";
+
+  @Resource
+  private MessageFactory messages;
+
+  private static byte[] archive(final MessageFactory factory)
+      throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SchemaArchive.write(factory, output);
+    return output.toByteArray();
+  }
+
+  @Test
+  public void testReadArchive()
+      throws IOException {
+    final MessageFactory factory = SchemaArchive.read(new ByteArrayInputStream(archive(messages)));
+
+    Assert.assertEquals(messages.toString(), factory.toString());
+    for (final MessageTemplate template : messages.getMessages()) {
+      final MessageTemplate copy = factory.getTemplate(template.getMessageTypeIndicator());
+      Assert.assertEquals(template.toString(), copy.toString());
+      Assert.assertEquals(template.getFields().keySet(), copy.getFields().keySet());
+      for (final FieldTemplate field : template.getFields().values()) {
+        Assert.assertEquals(field.toString(), copy.getField(field.getNumber()).toString());
+        Assert.assertEquals(field.getDefaultValue(), copy.getField(field.getNumber()).getDefaultValue());
+      }
+    }
+    // an archive of the schema read is identical to the original
+    Assert.assertArrayEquals(archive(messages), archive(factory));
+  }
+
+  @Test
+  public void testParseAndWrite()
+      throws Exception {
+    final MessageFactory factory = SchemaArchive.read(new ByteArrayInputStream(archive(messages)));
+
+    final Message message = factory.parse(BeanMessage.getBytes());
+    Assert.assertEquals(MTI.create("0200"), message.getMTI());
+    Assert.assertEquals("ATM-10101", message.getFieldValue(41));
+    Assert.assertEquals(BeanMessage, new String(factory.getMessageData(message)));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidArchive()
+      throws IOException {
+    SchemaArchive.read(new ByteArrayInputStream("<iso:schema/>".getBytes()));
+  }
+
+}
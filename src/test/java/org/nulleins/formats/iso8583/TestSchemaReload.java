@@ -0,0 +1,161 @@
+package org.nulleins.formats.iso8583;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nulleins.formats.iso8583.spring.SchemaReloader;
+import org.nulleins.formats.iso8583.types.Dimension;
+import org.nulleins.formats.iso8583.types.MTI;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestSchemaReload {
+  private static final MTI Request = MTI.create("0200");
+
+  private File schemaFile;
+  private GenericXmlApplicationContext context;
+  private MessageFactory factory;
+
+  @Before
+  public void setup()
+      throws IOException {
+    schemaFile = File.createTempFile("TestSchemaReload", ".xml");
+    try (final InputStream schema = getClass().getResourceAsStream("TestXsd-context.xml")) {
+      Files.copy(schema, schemaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    context = new GenericXmlApplicationContext(new FileSystemResource(schemaFile));
+    factory = context.getBean(MessageFactory.class);
+  }
+
+  @After
+  public void teardown() {
+    context.close();
+    schemaFile.delete();
+  }
+
+  /** replace text in the schema file, marking it as modified */
+  private void editSchema(final String from, final String to)
+      throws IOException {
+    final String schema = new String(Files.readAllBytes(schemaFile.toPath()), StandardCharsets.UTF_8);
+    Assert.assertTrue(schema.contains(from));
+    Files.write(schemaFile.toPath(), schema.replace(from, to).getBytes(StandardCharsets.UTF_8));
+    schemaFile.setLastModified(schemaFile.lastModified() + 2000);
+  }
+
+  @Test
+  public void testReloadChangedSchema()
+      throws IOException {
+    final SchemaReloader reloader = new SchemaReloader(factory, schemaFile);
+    reloader.start(60000);
+    try {
+      Assert.assertNull(reloader.checkForChanges());
+      final long version = factory.getSchemaVersion();
+      final MessageTemplate previous = factory.getTemplate(Request);
+
+      editSchema("dim=\"fixed(12)\" type=\"n\"/>\n            <iso:field f=\"7\"",
+          "dim=\"fixed(15)\" type=\"n\"/>\n            <iso:field f=\"5\" name=\"settlementAmount\" dim=\"fixed(12)\" type=\"n\"/>\n"
+              + "            <iso:field f=\"7\"");
+      editSchema("<iso:field f=\"90\" name=\"originalData\" desc=\"Original data elements\" dim=\"lllvar(4)\" type=\"xn\"/>", "");
+
+      final SchemaDiff diff = reloader.checkForChanges();
+      Assert.assertNotNull(diff);
+      Assert.assertEquals(version, diff.getFromVersion());
+      Assert.assertEquals(version + 1, factory.getSchemaVersion());
+      Assert.assertEquals(factory.getSchemaVersion(), diff.getToVersion());
+
+      final List<SchemaDiff.Change> changes = diff.getChanges();
+      Assert.assertEquals(diff.toString(), 3, changes.size());
+      Assert.assertEquals(SchemaDiff.Kind.CHANGED, changes.get(0).getKind());
+      Assert.assertEquals(Integer.valueOf(4), changes.get(0).getField());
+      Assert.assertEquals(SchemaDiff.Kind.ADDED, changes.get(1).getKind());
+      Assert.assertEquals(Integer.valueOf(5), changes.get(1).getField());
+      Assert.assertEquals(SchemaDiff.Kind.REMOVED, changes.get(2).getKind());
+      Assert.assertEquals(Integer.valueOf(90), changes.get(2).getField());
+
+      final MessageTemplate reloaded = factory.getTemplate(Request);
+      Assert.assertNotSame(previous, reloaded);
+      Assert.assertEquals(Dimension.parse("fixed(15)"), reloaded.getField(4).getDimension());
+      Assert.assertFalse(reloaded.getFields().containsKey(90));
+      // the previous template is unchanged, for messages created with it
+      Assert.assertEquals(Dimension.parse("fixed(12)"), previous.getField(4).getDimension());
+      Assert.assertTrue(previous.getFields().containsKey(90));
+    } finally {
+      reloader.stop();
+    }
+  }
+
+  @Test
+  public void testReloadInvalidSchema()
+      throws IOException {
+    final SchemaReloader reloader = new SchemaReloader(factory, schemaFile);
+    final Exception[] failure = new Exception[1];
+    reloader.setListener(new SchemaReloader.Listener() {
+      @Override
+      public void reloaded(final SchemaDiff diff) {
+        Assert.fail("Schema should not have been reloaded: " + diff);
+      }
+
+      @Override
+      public void failed(final File file, final Exception cause) {
+        failure[0] = cause;
+      }
+    });
+    final long version = factory.getSchemaVersion();
+    final MessageTemplate previous = factory.getTemplate(Request);
+
+    editSchema("type=\"xn\"", "type=\"undefined\"");
+    try {
+      reloader.reload();
+      Assert.fail("Expected the schema not to compile");
+    } catch (final MessageException e) {
+      Assert.assertSame(e, failure[0]);
+    }
+    Assert.assertEquals(version, factory.getSchemaVersion());
+    Assert.assertSame(previous, factory.getTemplate(Request));
+  }
+
+  @Test
+  public void testReloadOnChange()
+      throws IOException, InterruptedException {
+    final SchemaReloader reloader = new SchemaReloader(factory, schemaFile);
+    final CountDownLatch reloaded = new CountDownLatch(1);
+    final SchemaDiff[] result = new SchemaDiff[1];
+    reloader.setListener(new SchemaReloader.Listener() {
+      @Override
+      public void reloaded(final SchemaDiff diff) {
+        result[0] = diff;
+        reloaded.countDown();
+      }
+
+      @Override
+      public void failed(final File file, final Exception cause) {
+      }
+    });
+    reloader.start(10);
+    try {
+      editSchema("<iso:message type=\"0400\"", "<iso:message type=\"0410\"");
+      Assert.assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+    } finally {
+      reloader.stop();
+    }
+    Assert.assertEquals(2, result[0].getChanges().size());
+    Assert.assertNull(factory.getTemplate(MTI.create("0400")));
+    Assert.assertNotNull(factory.getTemplate(MTI.create("0410")));
+  }
+
+}
@@ -18,6 +18,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
@@ -69,6 +70,49 @@ public class TestStreamedMessage {
     Assert.assertEquals(BigInteger.valueOf(818), response.getFieldValue(49));
   }
 
+  @Test
+  public void testParseHeapBuffer()
+      throws IOException {
+    // two messages back-to-back: each parse should consume exactly one message
+    final ByteBuffer input = ByteBuffer.wrap((Payment_Request + Payment_Request).getBytes());
+
+    Message first = factory.parse(input);
+    Assert.assertEquals(Payment_Request.length(), input.position());
+    Message second = factory.parse(input);
+    Assert.assertFalse(input.hasRemaining());
+
+    Assert.assertEquals(first.getFields(), second.getFields());
+    Assert.assertEquals("CIB08520263", second.getFieldValue(41));
+  }
+
+  @Test
+  public void testParseDirectBuffer()
+      throws ParseException, IOException {
+    final byte[] data = Payment_Request.getBytes();
+    final ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+    input.put(data).flip();
+
+    Message response = factory.parse(input);
+
+    Assert.assertEquals(factory.parse(data).getFields(), response.getFields());
+    Assert.assertEquals(BigInteger.valueOf(5264391220494002L), response.getFieldValue(2));
+    Assert.assertEquals("CIB-57357HOSPITAL     CAIRO          EG0", response.getFieldValue(43));
+    Assert.assertEquals(BigInteger.valueOf(818), response.getFieldValue(49));
+  }
+
+  @Test(expected = IOException.class)
+  public void testParseTruncatedBuffer()
+      throws IOException {
+    factory.parse(ByteBuffer.wrap(Payment_Request.substring(0, Payment_Request.length() - 4).getBytes()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseNullBuffer()
+      throws IOException {
+    ByteBuffer input = null;
+    factory.parse(input);
+  }
+
   @Test(expected = MessageException.class)
   public void testParseUnknownMessage()
       throws ParseException, IOException {
@@ -173,6 +173,52 @@ public class TestXsd {
     Assert.assertTrue(response.isValid());
   }
 
+  @Test
+  public void testPopulateBeanFromMessage()
+      throws ParseException, IOException {
+    Message message = messages.parse(ExpectedBeanMessage.getBytes());
+    message.removeField(2); // masked card number, cannot be set as a CardNumber
+
+    PaymentRequestBean bean = messages.populateBean(message, new PaymentRequestBean());
+
+    Assert.assertEquals(new BigInteger("12"), bean.getAmount());
+    Assert.assertEquals(1029, bean.getAcquierID());
+    Assert.assertEquals(937278626262L, bean.getExtReference());
+    Assert.assertEquals("ATM-10101", bean.getCardTermId());
+    Assert.assertEquals("DUB87", bean.getCardTermName());
+    Assert.assertEquals(353863579271L, bean.getMsisdn());
+    Assert.assertEquals(840, bean.getCurrencyCode());
+    Assert.assertNull(bean.getCardNumber());
+  }
+
+  @Test
+  public void testPopulateBeanKeepsUnsetProperties()
+      throws ParseException, IOException {
+    Message message = messages.parse(ExpectedBeanMessage.getBytes());
+    message.removeField(2);
+    message.removeField(43);
+    message.removeField(49);
+
+    PaymentRequestBean bean = new PaymentRequestBean();
+    bean.setCardTermName("PRESET");
+    bean.setCurrencyCode(978);
+    bean.setCardTermId("PRESET");
+    messages.populateBean(message, bean);
+
+    // properties with no value in the message are unchanged, the others are set
+    Assert.assertEquals("PRESET", bean.getCardTermName());
+    Assert.assertEquals(978, bean.getCurrencyCode());
+    Assert.assertEquals("ATM-10101", bean.getCardTermId());
+    Assert.assertEquals(new BigInteger("12"), bean.getAmount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPopulateBeanInvalidValue()
+      throws ParseException, IOException {
+    Message message = messages.parse(ExpectedBeanMessage.getBytes());
+    messages.populateBean(message, new PaymentRequestBean());
+  }
+
   @Test
   public void testParseBeanMessageAsMap()
       throws ParseException, IOException {
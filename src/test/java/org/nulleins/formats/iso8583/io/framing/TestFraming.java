@@ -0,0 +1,196 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nulleins.formats.iso8583.Message;
+import org.nulleins.formats.iso8583.MessageException;
+import org.nulleins.formats.iso8583.MessageFactory;
+import org.nulleins.formats.iso8583.SimpleSchema;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestFraming {
+  private static final byte[] Request = ("0200" + "4000000000000000" + "000012").getBytes();
+
+  private MessageFactory factory;
+  private final List<Message> received = new ArrayList<>();
+  private final List<String> rejected = new ArrayList<>();
+  private final MessageHandler handler = new MessageHandler() {
+    @Override
+    public void onMessage(final Message message) {
+      received.add(message);
+    }
+
+    @Override
+    public void onError(final ByteBuffer frame, final Exception cause) {
+      final byte[] data = new byte[frame.remaining()];
+      frame.get(data);
+      rejected.add(new String(data));
+    }
+  };
+
+  @Test
+  public void testLengthHeaders() {
+    final ByteBuffer buffer = ByteBuffer.allocate(4);
+    LengthHeader.BINARY.write(0x1234, buffer);
+    Assert.assertEquals(0x1234, LengthHeader.BINARY.read(buffer, 0));
+    Assert.assertEquals(2, buffer.position());
+
+    buffer.clear();
+    LengthHeader.ASCII.write(385, buffer);
+    Assert.assertEquals("0385", new String(buffer.array()));
+    Assert.assertEquals(385, LengthHeader.ASCII.read(buffer, 0));
+
+    buffer.clear();
+    LengthHeader.BCD.write(1234, buffer);
+    Assert.assertEquals(0x12, buffer.get(0));
+    Assert.assertEquals(0x34, buffer.get(1));
+    Assert.assertEquals(1234, LengthHeader.BCD.read(buffer, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLengthTooLongForHeader() {
+    LengthHeader.ASCII.write(10000, ByteBuffer.allocate(4));
+  }
+
+  @Test(expected = MessageException.class)
+  public void testInvalidAsciiHeader() {
+    LengthHeader.ASCII.read(ByteBuffer.wrap("00A1".getBytes()), 0);
+  }
+
+  @Test
+  public void testChannelRoundTrip()
+      throws IOException {
+    final Pipe pipe = Pipe.open();
+    final FrameEncoder encoder = new FrameEncoder(factory, LengthHeader.BINARY);
+    for (int i = 1; i <= 3; i++) {
+      final Message message = factory.create(SimpleSchema.Request);
+      message.setFieldValue(2, i);
+      encoder.enqueue(message);
+    }
+    Assert.assertTrue(encoder.flush(pipe.sink()));
+    Assert.assertFalse(encoder.hasPending());
+    pipe.sink().close();
+
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.BINARY, 512);
+    while (decoder.read(pipe.source(), handler) >= 0) {
+      // read to end of stream
+    }
+    Assert.assertEquals(3, received.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(BigInteger.valueOf(i + 1), received.get(i).getFieldValue(2));
+    }
+    Assert.assertEquals(0, decoder.getPending());
+  }
+
+  @Test
+  public void testPartialFrames()
+      throws IOException {
+    final ByteBuffer frames = ByteBuffer.allocate(2 * (4 + Request.length));
+    for (int i = 0; i < 2; i++) {
+      LengthHeader.ASCII.write(Request.length, frames);
+      frames.put(Request);
+    }
+    frames.flip();
+
+    // deliver the two frames a byte at a time
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.ASCII, 512);
+    while (frames.hasRemaining()) {
+      final ByteBuffer chunk = frames.duplicate();
+      chunk.limit(frames.position() + 1);
+      decoder.decode(chunk, handler);
+      frames.position(chunk.position());
+      if (frames.position() == 4 + Request.length) {
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals(0, decoder.getPending());
+      }
+    }
+    Assert.assertEquals(2, received.size());
+    Assert.assertEquals(BigInteger.valueOf(12), received.get(1).getFieldValue(2));
+  }
+
+  @Test
+  public void testLazyFramesCopied()
+      throws IOException {
+    factory.setLazy(true);
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.BCD, 512);
+    final ByteBuffer frame = ByteBuffer.allocate(2 + Request.length);
+    LengthHeader.BCD.write(Request.length, frame);
+    frame.put(Request).flip();
+    decoder.decode(frame.duplicate(), handler);
+    // a subsequent frame overwrites the decoder's buffer before the first message's field is read
+    final byte[] other = ("0200" + "4000000000000000" + "999999").getBytes();
+    final ByteBuffer next = ByteBuffer.allocate(2 + other.length);
+    LengthHeader.BCD.write(other.length, next);
+    next.put(other).flip();
+    decoder.decode(next, handler);
+
+    Assert.assertEquals(BigInteger.valueOf(12), received.get(0).getFieldValue(2));
+    Assert.assertEquals(BigInteger.valueOf(999999), received.get(1).getFieldValue(2));
+  }
+
+  @Test(expected = MessageException.class)
+  public void testFrameTooLong()
+      throws IOException {
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.BINARY, 16);
+    final ByteBuffer frame = ByteBuffer.allocate(2 + Request.length);
+    LengthHeader.BINARY.write(Request.length, frame);
+    frame.put(Request).flip();
+    decoder.decode(frame, handler);
+  }
+
+  @Test
+  public void testBadHeaderDiscarded()
+      throws IOException {
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.ASCII, 512);
+    try {
+      decoder.decode(ByteBuffer.wrap(("00A1" + new String(Request)).getBytes()), handler);
+      Assert.fail("Expected the length header to be rejected");
+    } catch (final MessageException e) {
+      Assert.assertEquals(0, decoder.getPending());
+    }
+    // the connection recovers with the next frame
+    final ByteBuffer frame = ByteBuffer.allocate(4 + Request.length);
+    LengthHeader.ASCII.write(Request.length, frame);
+    frame.put(Request).flip();
+    decoder.decode(frame, handler);
+    Assert.assertEquals(1, received.size());
+    Assert.assertEquals(BigInteger.valueOf(12), received.get(0).getFieldValue(2));
+  }
+
+  @Test
+  public void testBadFrameReported()
+      throws IOException {
+    final byte[] bad = ("0200" + "4000000000000000" + "0000X2").getBytes();
+    final ByteBuffer frames = ByteBuffer.allocate(2 * (4 + Request.length));
+    LengthHeader.ASCII.write(bad.length, frames);
+    frames.put(bad);
+    LengthHeader.ASCII.write(Request.length, frames);
+    frames.put(Request).flip();
+
+    // both frames are delivered in a single read: the good frame is not held back by the bad one
+    final FrameDecoder decoder = new FrameDecoder(factory, LengthHeader.ASCII, 512);
+    decoder.decode(frames, handler);
+    Assert.assertEquals(1, rejected.size());
+    Assert.assertEquals(new String(bad), rejected.get(0));
+    Assert.assertEquals(1, received.size());
+    Assert.assertEquals(BigInteger.valueOf(12), received.get(0).getFieldValue(2));
+    Assert.assertEquals(0, decoder.getPending());
+  }
+
+  @Before
+  public void createFactory() {
+    factory = SimpleSchema.create();
+  }
+
+}
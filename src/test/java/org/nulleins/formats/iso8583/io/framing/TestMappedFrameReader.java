@@ -0,0 +1,109 @@
+package org.nulleins.formats.iso8583.io.framing;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nulleins.formats.iso8583.MessageException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestMappedFrameReader {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testIterateAcrossRegions()
+      throws IOException {
+    final Path file = writeFrames(500);
+    // small regions, so that frames span the region boundaries
+    try (final MappedFrameReader reader = new MappedFrameReader(file, LengthHeader.ASCII, 100)) {
+      int count = 0;
+      for (final ByteBuffer frame : reader) {
+        Assert.assertEquals(frameData(count), decode(frame));
+        count++;
+      }
+      Assert.assertEquals(500, count);
+    }
+  }
+
+  @Test
+  public void testParallelFramesInOrder()
+      throws IOException {
+    final Path file = writeFrames(5000);
+    final List<String> expect = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      expect.add(frameData(i));
+    }
+    try (final MappedFrameReader reader = new MappedFrameReader(file, LengthHeader.ASCII, 4096)) {
+      Assert.assertEquals(5000, reader.spliterator().estimateSize());
+      final List<String> frames = reader.frames(true).map(TestMappedFrameReader::decode).collect(Collectors.toList());
+      Assert.assertEquals(expect, frames);
+    }
+  }
+
+  @Test
+  public void testTruncatedFrame()
+      throws IOException {
+    final Path file = folder.newFile("truncated.dat").toPath();
+    Files.write(file, ("0003abc" + "0010abc").getBytes());
+    try (final MappedFrameReader reader = new MappedFrameReader(file, LengthHeader.ASCII)) {
+      final Iterator<ByteBuffer> frames = reader.iterator();
+      Assert.assertEquals("abc", decode(frames.next()));
+      Assert.assertTrue(frames.hasNext());
+      try {
+        frames.next();
+        Assert.fail("Expected truncated frame to be reported");
+      } catch (final MessageException e) {
+        Assert.assertTrue(e.getMessage().contains("offset 7"));
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyFile()
+      throws IOException {
+    try (final MappedFrameReader reader = new MappedFrameReader(folder.newFile("empty.dat").toPath(), LengthHeader.BINARY)) {
+      Assert.assertFalse(reader.iterator().hasNext());
+      Assert.assertEquals(0, reader.frames(false).count());
+    }
+  }
+
+  private Path writeFrames(final int count)
+      throws IOException {
+    final StringBuilder data = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      final String frame = frameData(i);
+      data.append(String.format("%04d", frame.length())).append(frame);
+    }
+    final Path result = folder.newFile().toPath();
+    Files.write(result, data.toString().getBytes());
+    return result;
+  }
+
+  private static String frameData(final int index) {
+    final StringBuilder result = new StringBuilder("frame" + index);
+    for (int i = 0; i < index % 7; i++) {
+      result.append('.');
+    }
+    return result.toString();
+  }
+
+  private static String decode(final ByteBuffer frame) {
+    final byte[] result = new byte[frame.remaining()];
+    frame.get(result);
+    return new String(result);
+  }
+
+}
@@ -1,14 +1,21 @@
 package org.nulleins.formats.iso8583.types;
 
 import junit.framework.Assert;
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.nulleins.formats.iso8583.MessageException;
 import org.nulleins.formats.iso8583.formatters.AlphaFormatter;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
+import org.nulleins.formats.iso8583.formatters.NIBBSDateFormatter;
 import org.nulleins.formats.iso8583.formatters.TypeFormatter;
+import org.nulleins.formats.iso8583.formatters.TypeFormatterAdapter;
 
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.util.Arrays;
+import java.util.regex.Pattern;
 
 
 /**
@@ -79,6 +86,33 @@ public class TestAlphaTypes {
     Assert.assertEquals(testData + "  ", result);
   }
 
+  @Test
+  public void testFormatAlphaFixToBuffer() {
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+
+    int length = ((BufferFormatter) formatter).format(FieldType.ALPHA, "Data", Dimension.parse("fixed(6)"), ebcdic, buffer);
+    Assert.assertEquals(6, length);
+    Assert.assertEquals(6, buffer.position());
+    buffer.flip();
+    Assert.assertEquals("Data  ", ebcdic.getString(buffer));
+  }
+
+  @Test
+  public void testAdaptedFormatter() {
+    Assert.assertSame(formatter, TypeFormatterAdapter.adapt(formatter));
+    Assert.assertNull(TypeFormatterAdapter.adapt(null));
+
+    // a formatter only implementing the TypeFormatter API has its output re-encoded
+    BufferFormatter adapted = TypeFormatterAdapter.adapt(new NIBBSDateFormatter());
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    int length = adapted.format("nibbsdate", new DateTime(2012, 12, 12, 12, 12, 0), Dimension.parse("fixed(12)"), ebcdic, buffer);
+    Assert.assertEquals(12, length);
+    buffer.flip();
+    Assert.assertEquals("121212121200", ebcdic.getString(buffer));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void
   testFormatAlphaInvalid() {
@@ -98,4 +132,40 @@ public class TestAlphaTypes {
   }
 
 
+  @Test
+  public void testValidateAsPattern() {
+    String[][] types = {
+        {FieldType.ALPHA, "[a-zA-Z]*"}, {FieldType.ALPHANUM, "[a-zA-Z0-9]*"}, {FieldType.ALPHANUMPAD, "[a-zA-Z 0-9]*"},
+        {FieldType.ALPHASYMBOL, "[ -~&&[^0-9]]*"}, {FieldType.ALPHANUMSYMBOL, "[ -~]*"},
+        {FieldType.NUMSYMBOL, "[ -~&&[^a-zA-Z]]*"}, {FieldType.TRACKDATA, "[ -~]*"}};
+    Dimension dim = Dimension.parse("llvar(10)");
+    for (String[] type : types) {
+      Pattern pattern = Pattern.compile(type[1]);
+      for (char c = 0; c < 300; c++) {
+        String value = " x" + c + "1 ";
+        Assert.assertEquals(type[0] + ":" + (int) c,
+            pattern.matcher(value.trim()).matches(), formatter.isValid(value, type[0], dim));
+      }
+    }
+  }
+
+  @Test
+  public void testParseTrimmedFromBuffer()
+      throws ParseException, UnsupportedEncodingException {
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    TypeFormatter<String> field43 =
+        new AlphaFormatter(ebcdic).forField(FieldType.ALPHANUMSYMBOL, Dimension.parse("fixed(40)"));
+    ByteBuffer data = ByteBuffer.wrap(ebcdic.getBytes("  DUB87 Main St.                        "));
+    Assert.assertEquals("DUB87 Main St.", field43.parse(FieldType.ALPHANUMSYMBOL, Dimension.parse("fixed(40)"), data));
+    Assert.assertEquals(0, data.position());
+
+    TypeFormatter<String> alpha = new AlphaFormatter(ebcdic).forField(FieldType.ALPHA, Dimension.parse("fixed(6)"));
+    try {
+      alpha.parse(FieldType.ALPHA, Dimension.parse("fixed(6)"), ByteBuffer.wrap(ebcdic.getBytes(" Ab1  ")));
+      Assert.fail("digit accepted in alpha field");
+    } catch (ParseException e) {
+      Assert.assertEquals("Invalid data parsed for field (a) value=[Ab1]", e.getMessage());
+    }
+  }
+
 }
@@ -6,6 +6,8 @@ import org.junit.Test;
 import org.nulleins.formats.iso8583.types.BCD;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 /**
@@ -23,6 +25,17 @@ public class TestBCD {
     Assert.assertTrue(ArrayUtils.isEquals(data, new byte[]{0x15}));
   }
 
+  @Test
+  public void testPackInPlace() {
+    ByteBuffer buffer = ByteBuffer.wrap("xx12345".getBytes());
+    Assert.assertEquals(3, BCD.pack(buffer, 2, 7, BCD.Padding.LEFT, 0));
+    Assert.assertEquals(0, buffer.position());
+    Assert.assertEquals("012345", BCD.toString((ByteBuffer) buffer.duplicate().limit(3)));
+
+    BCD.pack(120, buffer, 3, 2);
+    Assert.assertEquals("0120", BCD.toString((ByteBuffer) buffer.duplicate().position(3).limit(5)));
+  }
+
   @Test
   public void testStringConvert() {
     String test = "1232199";
@@ -87,4 +100,66 @@ public class TestBCD {
     Assert.assertTrue(ArrayUtils.isEquals(data, new byte[]{(byte) 0x01, (byte) 0x23}));
   }
 
+  @Test
+  public void testZero() {
+    Assert.assertTrue(ArrayUtils.isEquals(BCD.valueOf(0), new byte[]{0x00}));
+    Assert.assertTrue(ArrayUtils.isEquals(BCD.valueOf(BigInteger.ZERO), new byte[]{0x00}));
+  }
+
+  @Test
+  public void testLongValues() {
+    Assert.assertEquals(19, BCD.digits(Long.MAX_VALUE));
+    Assert.assertEquals("09223372036854775807", BCD.toString(BCD.valueOf(Long.MAX_VALUE)));
+    Assert.assertEquals("012345678901234567890123",
+        BCD.toString(BCD.valueOf(new BigInteger("12345678901234567890123"))));
+  }
+
+  @Test
+  public void testPackLongIntoRegion() {
+    byte[] data = new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+    BCD.pack(123, data, 1, 2);
+    Assert.assertTrue(ArrayUtils.isEquals(data, new byte[]{(byte) 0xff, 0x01, 0x23, (byte) 0xff}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPackLongOverflow() {
+    BCD.pack(12345, new byte[2], 0, 2);
+  }
+
+  @Test
+  public void testPackPadding() {
+    byte[] data = new byte[2];
+    Assert.assertEquals(2, BCD.pack("123", 0, 3, BCD.Padding.LEFT, data, 0));
+    Assert.assertTrue(ArrayUtils.isEquals(data, new byte[]{0x01, 0x23}));
+    Assert.assertEquals(2, BCD.pack("123", 0, 3, BCD.Padding.RIGHT, data, 0));
+    Assert.assertTrue(ArrayUtils.isEquals(data, new byte[]{0x12, 0x30}));
+
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    BCD.pack("12345", BCD.Padding.LEFT, buffer);
+    Assert.assertEquals(3, buffer.position());
+    Assert.assertTrue(ArrayUtils.isEquals(Arrays.copyOf(buffer.array(), 3), new byte[]{0x01, 0x23, 0x45}));
+  }
+
+  @Test
+  public void testUnpackPadding() {
+    ByteBuffer bcd = ByteBuffer.wrap(new byte[]{0x01, 0x23});
+    byte[] digits = new byte[4];
+    BCD.unpack(bcd, 3, BCD.Padding.LEFT, digits, 1);
+    Assert.assertEquals("123", new String(digits, 1, 3));
+    BCD.unpack(ByteBuffer.wrap(new byte[]{0x12, 0x30}), 3, BCD.Padding.RIGHT, digits, 0);
+    Assert.assertEquals("123", new String(digits, 0, 3));
+    Assert.assertEquals(0, bcd.position());
+  }
+
+  @Test
+  public void testToLong() {
+    Assert.assertEquals(999, BCD.toLong(ByteBuffer.wrap(new byte[]{0x09, (byte) 0x99})));
+    Assert.assertEquals(5432818929192L, BCD.toLong(ByteBuffer.wrap(BCD.valueOf(5432818929192L))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonDigit() {
+    BCD.valueOf("12a4");
+  }
+
 }
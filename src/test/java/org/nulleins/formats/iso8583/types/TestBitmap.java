@@ -4,6 +4,9 @@ import junit.framework.Assert;
 import org.junit.Test;
 import org.nulleins.formats.iso8583.types.Bitmap;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 
 /**
  * @author phillipsr
@@ -300,4 +303,52 @@ public class TestBitmap {
     Bitmap.parse("4210001102C048044210001102C048044210001102C04804");
   }
 
+  @Test
+  public void testNextSetField() {
+    Bitmap target = Bitmap.parse("4210001102C04804");
+    StringBuilder fields = new StringBuilder();
+    for (int i = target.nextSetField(1); i > 0; i = target.nextSetField(i + 1)) {
+      fields.append(i).append(' ');
+    }
+    Assert.assertEquals("2 7 12 28 32 39 41 42 50 53 62 ", fields.toString());
+  }
+
+  @Test
+  public void testNextSetFieldSkipsBitmapIndicators() {
+    Bitmap target = new Bitmap();
+    target.setField(64);
+    target.setField(66);
+    target.setField(192);
+    Assert.assertTrue(target.isFieldPresent(1));
+    Assert.assertTrue(target.isFieldPresent(65));
+    Assert.assertEquals(64, target.nextSetField(1));
+    Assert.assertEquals(66, target.nextSetField(65));
+    Assert.assertEquals(192, target.nextSetField(67));
+    Assert.assertEquals(-1, target.nextSetField(193));
+  }
+
+  @Test
+  public void testBitmapFromBuffer() {
+    ByteBuffer data = ByteBuffer.wrap(concatData(concatData(BIN1, BIN2), BIN));
+    Bitmap target = new Bitmap(data);
+    // secondary bitmap indicated, tertiary not: following data is not read
+    Assert.assertEquals(16, data.position());
+    Assert.assertTrue(Arrays.equals(BIN1, target.asBinary(Bitmap.Id.PRIMARY)));
+    Assert.assertTrue(Arrays.equals(BIN2, target.asBinary(Bitmap.Id.SECONDARY)));
+    Assert.assertEquals("82400000000000080800000000004000", target.toString());
+  }
+
+  @Test
+  public void testSetHex() {
+    Bitmap target = Bitmap.parse("E440000000000008");
+    target.setHex(Bitmap.Id.SECONDARY, "0000000000000040");
+    Assert.assertEquals(Bitmap.parse(HEX1 + HEX2).toString(), target.toString());
+    Assert.assertTrue(target.isFieldPresent(122));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetHexNonHex() {
+    new Bitmap().setHex(Bitmap.Id.PRIMARY, "000000000000004g");
+  }
+
 }
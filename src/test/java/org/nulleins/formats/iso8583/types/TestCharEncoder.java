@@ -0,0 +1,80 @@
+package org.nulleins.formats.iso8583.types;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * @author phillipsr
+ */
+public class TestCharEncoder {
+  private static final String[] SingleByte = {"IBM1047", "IBM037", "US-ASCII", "ISO-8859-1", "windows-1252"};
+  private static final String Text = "Hello World: café €10 中 [123]";
+
+  @Test
+  public void testSingleByte() {
+    for (String name : SingleByte) {
+      Assert.assertTrue(name, new CharEncoder(name).isSingleByte());
+    }
+    Assert.assertFalse(new CharEncoder("UTF-8").isSingleByte());
+  }
+
+  @Test
+  public void testDecodeAsJdk()
+      throws UnsupportedEncodingException {
+    final byte[] data = new byte[256];
+    for (int b = 0; b < data.length; b++) {
+      data[b] = (byte) b;
+    }
+    for (String name : SingleByte) {
+      final CharEncoder encoder = new CharEncoder(name);
+      final String expect = new String(data, Charset.forName(name));
+      Assert.assertEquals(name, expect, encoder.getString(data));
+      Assert.assertEquals(name, expect.substring(16, 48), encoder.getString(data, 16, 32));
+
+      final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+      direct.put(data).flip();
+      Assert.assertEquals(name, expect, encoder.getString(direct));
+      Assert.assertEquals(0, direct.position());
+    }
+  }
+
+  @Test
+  public void testEncodeAsJdk()
+      throws UnsupportedEncodingException {
+    for (String name : SingleByte) {
+      final CharEncoder encoder = new CharEncoder(name);
+      // includes characters unmappable in some charsets, and beyond the encode table
+      final byte[] expect = Text.getBytes(Charset.forName(name));
+      Assert.assertTrue(name, Arrays.equals(expect, encoder.getBytes(Text)));
+
+      for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+        buffer.put((byte) 0);
+        Assert.assertEquals(name, expect.length, encoder.encode(Text, buffer));
+        Assert.assertEquals(3, encoder.fill(' ', 3, buffer));
+        buffer.flip();
+        buffer.get();
+        final byte[] written = new byte[expect.length];
+        buffer.get(written);
+        Assert.assertTrue(name, Arrays.equals(expect, written));
+        Assert.assertEquals(encoder.getBytes("   ")[0], buffer.get());
+      }
+    }
+  }
+
+  @Test
+  public void testEbcdic()
+      throws UnsupportedEncodingException {
+    final CharEncoder ebcdic = new CharEncoder("IBM1047");
+    final byte[] expect = new byte[]{(byte) 0xc8, (byte) 0x85, (byte) 0x93, (byte) 0x93, (byte) 0x96,
+        0x40, (byte) 0xe6, (byte) 0x96, (byte) 0x99, (byte) 0x93, (byte) 0x84};
+    Assert.assertTrue(Arrays.equals(expect, ebcdic.getBytes("Hello World")));
+    Assert.assertEquals("Hello World", ebcdic.getString(expect));
+  }
+
+}
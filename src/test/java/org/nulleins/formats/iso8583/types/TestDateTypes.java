@@ -3,11 +3,15 @@ package org.nulleins.formats.iso8583.types;
 import junit.framework.Assert;
 import org.joda.time.DateTime;
 import org.joda.time.LocalTime;
+import org.joda.time.format.DateTimeFormat;
 import org.junit.Test;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
 import org.nulleins.formats.iso8583.formatters.DateFormatter;
 import org.nulleins.formats.iso8583.formatters.TimeFormatter;
 import org.nulleins.formats.iso8583.formatters.TypeFormatter;
 
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.ParsePosition;
@@ -133,4 +137,57 @@ public class TestDateTypes {
     timeFormatter.format(FieldType.TIME, "12121212", Dimension.parse("FIXED(6)"));
   }
 
+  @Test
+  public void testDecodeAsJoda()
+      throws ParseException {
+    String[][] cases = {
+        {FieldType.DATE, "MMddHHmmss", "0304054133"}, {FieldType.DATE, "MMddHHmmss", "1231235959"},
+        {FieldType.DATE, "MMdd", "0229"}, {FieldType.EXDATE, "yyMM", "4912"}, {FieldType.EXDATE, "yyMM", "5001"}};
+    for (String[] test : cases) {
+      Dimension dim = Dimension.parse("FIXED(" + test[2].length() + ")");
+      DateTime expect = DateTimeFormat.forPattern(test[1]).parseDateTime(test[2]);
+      Assert.assertEquals(expect, dateFormatter.parse(test[0], dim, test[2].length(), test[2].getBytes()));
+      // formatter bound to the field's format when the schema is compiled
+      Assert.assertEquals(expect, dateFormatter.forField(test[0], dim).parse(test[0], dim, ByteBuffer.wrap(test[2].getBytes())));
+    }
+    for (int year = 0; year < 100; year++) {
+      String expiry = String.format("%02d11", year);
+      Assert.assertEquals(DateTimeFormat.forPattern("yyMM").parseDateTime(expiry),
+          dateFormatter.parse(FieldType.EXDATE, Dimension.parse("FIXED(4)"), 4, expiry.getBytes()));
+    }
+  }
+
+  @Test(expected = ParseException.class)
+  public void testDecodeDateOutOfRange()
+      throws ParseException {
+    dateFormatter.parse(FieldType.DATE, Dimension.parse("FIXED(10)"), ByteBuffer.wrap("1304054133".getBytes()));
+  }
+
+  @Test
+  public void testEncodeToBuffer()
+      throws ParseException, UnsupportedEncodingException {
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    DateTime dateTime = new DateTime(2014, 1, 30, 12, 34, 56);
+    String[][] cases = {{FieldType.DATE, "FIXED(10)"}, {FieldType.DATE, "FIXED(4)"}, {FieldType.EXDATE, "FIXED(4)"}};
+    for (String[] test : cases) {
+      Dimension dim = Dimension.parse(test[1]);
+      String expect = new String(dateFormatter.format(test[0], dateTime, dim));
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      Assert.assertEquals(expect.length(),
+          ((BufferFormatter) dateFormatter.forField(test[0], dim)).format(test[0], dateTime, dim, ebcdic, buffer));
+      buffer.flip();
+      Assert.assertEquals(expect, ebcdic.getString(buffer));
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    Assert.assertEquals(6, ((BufferFormatter) timeFormatter).format(
+        FieldType.TIME, new LocalTime(9, 5, 7), Dimension.parse("FIXED(6)"), ebcdic, buffer));
+    buffer.flip();
+    Assert.assertEquals("090507", ebcdic.getString(buffer));
+
+    TypeFormatter<LocalTime> ebcdicTime = new TimeFormatter(ebcdic);
+    Assert.assertEquals(new LocalTime(9, 5, 7), ebcdicTime.parse(FieldType.TIME, Dimension.parse("FIXED(6)"),
+        ByteBuffer.wrap(ebcdic.getBytes("090507"))));
+  }
+
 }
@@ -56,4 +56,41 @@ public class TestMTI {
     MTI.create("02000");
   }
 
+  @Test
+  public void testResponseType() {
+    Assert.assertEquals(MTI.create("0210"), MTI.create("0200").getResponse());
+    Assert.assertEquals(MTI.create("0430"), MTI.create("0421").getResponse());
+    Assert.assertEquals(MTI.create("1812"), MTI.create("1802").getResponse());
+    Assert.assertTrue(MTI.create("0200").isRequest());
+    Assert.assertTrue(MTI.create("0220").isRequest());
+    Assert.assertFalse(MTI.create("0210").isRequest());
+    Assert.assertTrue(MTI.create("0230").isResponse());
+    Assert.assertFalse(MTI.create("0240").isResponse());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoResponseType() {
+    MTI.create("0210").getResponse();
+  }
+
+  @Test
+  public void testCanonical() {
+    Assert.assertSame(MTI.create("0200"), MTI.create(0x0200));
+    Assert.assertSame(MTI.create("0210"), MTI.create("0200").getResponse());
+    Assert.assertEquals(0x0200, MTI.create("0200").intValue());
+  }
+
+  @Test
+  public void testIndex() {
+    Assert.assertEquals(0, MTI.create("0100").getIndex());
+    Assert.assertEquals(MTI.COUNT - 1, MTI.create("9995").getIndex());
+    Assert.assertEquals(4 * 9 * 7 * 6, MTI.COUNT);
+    Assert.assertTrue(MTI.create("0200").compareTo(MTI.create("0210")) < 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMTIBinaryNotDecimal() {
+    MTI.create(0x02a0);
+  }
+
 }
@@ -2,10 +2,14 @@ package org.nulleins.formats.iso8583.types;
 
 import junit.framework.Assert;
 import org.junit.Test;
+import org.nulleins.formats.iso8583.formatters.BufferFormatter;
+import org.nulleins.formats.iso8583.formatters.LongNumberFormatter;
 import org.nulleins.formats.iso8583.formatters.NumberFormatter;
 import org.nulleins.formats.iso8583.formatters.TypeFormatter;
 
+import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.util.Arrays;
@@ -144,4 +148,57 @@ public class TestNumTypes {
     }
   }
 
+  @Test
+  public void testParseLongNumbers()
+      throws ParseException, UnsupportedEncodingException {
+    TypeFormatter<Number> longFormatter = new LongNumberFormatter(CharEncoder.ASCII);
+    Assert.assertEquals(123456789012L, longFormatter.parse(FieldType.NUMERIC, Dimension.parse("FIXED(12)"),
+        ByteBuffer.wrap("123456789012".getBytes())));
+    Assert.assertEquals(-1234L, longFormatter.parse(FieldType.NUMSIGNED, Dimension.parse("FIXED(5)"),
+        ByteBuffer.wrap("D1234".getBytes())));
+    Assert.assertEquals(new BigInteger("1234567890123456789"), longFormatter.parse(FieldType.NUMERIC,
+        Dimension.parse("LLVAR(19)"), ByteBuffer.wrap("1234567890123456789".getBytes())));
+
+    // digits parsed directly from the encoded data
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    Assert.assertEquals(42L, new LongNumberFormatter(ebcdic).parse(FieldType.NUMERIC, Dimension.parse("FIXED(6)"),
+        ByteBuffer.wrap(ebcdic.getBytes("000042"))));
+  }
+
+  @Test(expected = ParseException.class)
+  public void testParseLongNumberBad()
+      throws ParseException {
+    new LongNumberFormatter(CharEncoder.ASCII).parse(FieldType.NUMERIC, Dimension.parse("FIXED(8)"),
+        ByteBuffer.wrap("1234567Z".getBytes()));
+  }
+
+  @Test
+  public void testFormatLongToBuffer() {
+    CharEncoder ebcdic = new CharEncoder("IBM1047");
+    BufferFormatter bufferFormatter = (BufferFormatter) formatter;
+    Object[][] cases = {
+        {FieldType.NUMERIC, 123L, "FIXED(6)"}, {FieldType.NUMERIC, 123, "LLVAR(6)"},
+        {FieldType.NUMSIGNED, -123, "FIXED(5)"}, {FieldType.NUMSIGNED, 123L, "LLVAR(5)"},
+        {FieldType.NUMERIC, BigInteger.valueOf(999999999999L), "FIXED(12)"}, {FieldType.NUMERIC, "0042", "FIXED(6)"}};
+    for (Object[] test : cases) {
+      Dimension dim = Dimension.parse((String) test[2]);
+      String expect = new String(formatter.format((String) test[0], test[1], dim));
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      Assert.assertEquals(expect.length(), bufferFormatter.format((String) test[0], test[1], dim, ebcdic, buffer));
+      buffer.flip();
+      Assert.assertEquals(expect, ebcdic.getString(buffer));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFormatLongTooLong() {
+    try {
+      ((BufferFormatter) formatter).format(
+          FieldType.NUMSIGNED, -123456L, Dimension.parse("FIXED(5)"), CharEncoder.ASCII, ByteBuffer.allocate(16));
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Field data length (7) exceeds field maximum (5)"));
+      throw e;
+    }
+  }
+
 }
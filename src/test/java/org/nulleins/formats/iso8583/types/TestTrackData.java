@@ -12,6 +12,7 @@ import org.nulleins.formats.iso8583.types.CharEncoder;
 import org.nulleins.formats.iso8583.types.Dimension;
 import org.nulleins.formats.iso8583.types.FieldType;
 
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -65,6 +66,49 @@ public class TestTrackData {
     Assert.assertTrue(value.getType() == TrackData.Track.TRACK3);
   }
 
+  @Test
+  public void testParseFromBuffer()
+      throws ParseException {
+    final ByteBuffer buffer = ByteBuffer.wrap(";1234567890123456789=1015123456?XX".getBytes());
+    buffer.limit(buffer.limit() - 2);
+    TrackData value = formatter.parse(FieldType.TRACKDATA, Dimension.parse("LLVAR(80)"), buffer);
+
+    Assert.assertTrue(value.getType() == TrackData.Track.TRACK2);
+    Assert.assertEquals(1234567890123456789L, value.getPrimaryAccountNumber());
+    Assert.assertEquals(1015, value.getExpirationDate());
+    Assert.assertEquals(123, value.getServiceCode());
+    Assert.assertEquals("456", value.getDiscretionaryData());
+    Assert.assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void testParseNameFields()
+      throws ParseException {
+    TrackData value = formatter.parse(FieldType.TRACKDATA, Dimension.parse("LLVAR(80)"), 0,
+        "%B1234567890123445^EARIBUG/HUW J.MR^^1200000?".getBytes());
+
+    Assert.assertArrayEquals(new String[]{"EARIBUG", "HUW", "J", "MR"}, value.getName());
+    Assert.assertEquals(0, value.getExpirationDate());
+    Assert.assertEquals(120, value.getServiceCode());
+    Assert.assertEquals("0000", value.getDiscretionaryData());
+    Assert.assertEquals("EARIBUG/HUW J.MR", value.formatName());
+  }
+
+  @Test
+  public void testParseInvalidTracks() {
+    final String[] invalid = {
+        "", "%B1234^N^99011200?", "%B1234^EARIBUG/HUW.^99011200?X", "%B^EARIBUG/HUW.^9901120000",
+        "12345678901234567890=1015123", "1234=1015123A", "1234=101", "9999999999999999999=1015123"};
+    for (final String track : invalid) {
+      try {
+        formatter.parse(FieldType.TRACKDATA, Dimension.parse("LLVAR(80)"), 0, track.getBytes());
+        Assert.fail("Expected ParseException for [" + track + "]");
+      } catch (ParseException expected) {
+        // expected
+      }
+    }
+  }
+
   @Test
   public void testFormatT1() {
     TrackData value = new TrackData(TrackData.Track.TRACK1);